@@ -33,12 +33,17 @@ android {
 }
 
 dependencies {
+    // Signal processing, stream parsing and thresholds, see core/
+    implementation(project(":core"))
+
     // Basic Android dependencies
     implementation("androidx.appcompat:appcompat:1.7.0")
     implementation("com.google.android.material:material:1.12.0")
     implementation("androidx.activity:activity:1.10.1")
     implementation("androidx.constraintlayout:constraintlayout:2.2.1")
+    implementation("androidx.recyclerview:recyclerview:1.3.2")
     implementation("androidx.core:core-ktx:1.10.1")
+    implementation("androidx.work:work-runtime:2.9.1")
     implementation(libs.google.firebase.firestore)
 
     // Testing
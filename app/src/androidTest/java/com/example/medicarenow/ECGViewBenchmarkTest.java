@@ -0,0 +1,168 @@
+package com.example.medicarenow;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Debug;
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.medicarenow.core.EcgWaveform;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the per-frame cost of {@link ECGView} with the previous LinkedList/Path based
+ * implementation by drawing both into an offscreen bitmap.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ECGViewBenchmarkTest {
+    private static final String TAG = "ECGViewBenchmark";
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1200;
+    private static final int WARMUP_FRAMES = 500;
+    private static final int FRAMES = 5000;
+
+    @Test
+    public void ringBufferRendererAllocatesLessThanLegacyRenderer() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        FrameStats legacy = measure(new LegacyECGView(context), null);
+
+        ECGView ecgView = new ECGView(context, null);
+        float[] sample = new float[1];
+        int[] sampleCount = new int[1];
+        FrameStats current = measure(ecgView, () -> {
+            // Same one-sample-per-frame workload the legacy view generates internally
+            sample[0] = EcgWaveform.point(sampleCount[0]++ % 166, 166);
+            ecgView.addSamples(sample, 0, 1);
+        });
+
+        Log.i(TAG, "legacy:  " + legacy);
+        Log.i(TAG, "current: " + current);
+
+        assertTrue("Expected fewer allocated bytes, legacy " + legacy.allocatedBytes + " current "
+                + current.allocatedBytes, current.allocatedBytes < legacy.allocatedBytes);
+        assertTrue("Expected no more collections, legacy " + legacy.gcCount + " current " + current.gcCount,
+                current.gcCount <= legacy.gcCount);
+    }
+
+    private static FrameStats measure(View view, Runnable beforeFrame) {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            if (beforeFrame != null) {
+                beforeFrame.run();
+            }
+            view.draw(canvas);
+        }
+
+        Runtime.getRuntime().gc();
+        long gcBefore = runtimeStat("art.gc.gc-count");
+        long bytesBefore = runtimeStat("art.gc.bytes-allocated");
+        long start = System.nanoTime();
+
+        for (int i = 0; i < FRAMES; i++) {
+            if (beforeFrame != null) {
+                beforeFrame.run();
+            }
+            view.draw(canvas);
+        }
+
+        FrameStats stats = new FrameStats();
+        stats.nanosPerFrame = (System.nanoTime() - start) / FRAMES;
+        stats.gcCount = runtimeStat("art.gc.gc-count") - gcBefore;
+        stats.allocatedBytes = runtimeStat("art.gc.bytes-allocated") - bytesBefore;
+        bitmap.recycle();
+        return stats;
+    }
+
+    private static long runtimeStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    private static class FrameStats {
+        long nanosPerFrame;
+        long gcCount;
+        long allocatedBytes;
+
+        @Override
+        public String toString() {
+            return nanosPerFrame + " ns/frame, " + gcCount + " GCs, " + (allocatedBytes / FRAMES)
+                    + " bytes/frame";
+        }
+    }
+
+    /** The ECGView rendering code before it moved to primitive buffers, kept as the baseline. */
+    private static class LegacyECGView extends View {
+        private static final int MAX_POINTS = 1000;
+        private static final int SAMPLING_RATE_HZ = 200;
+
+        private final Paint paint = new Paint();
+        private final Path path = new Path();
+        private final Queue<Float> ecgData = new LinkedList<>();
+        private final int samplesPerBeat = (60 * SAMPLING_RATE_HZ) / 72;
+        private int sampleCount = 0;
+
+        LegacyECGView(Context context) {
+            super(context);
+            paint.setColor(Color.GREEN);
+            paint.setStrokeWidth(4f);
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setAntiAlias(true);
+            for (int i = 0; i < MAX_POINTS; i++) {
+                ecgData.add(0f);
+            }
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            super.onDraw(canvas);
+
+            float centerY = getHeight() / 2f;
+            float scale = getHeight() * 0.4f;
+            float pixelsPerPoint = (float) getWidth() / MAX_POINTS;
+
+            // Waveform shape does not matter here, only the queue and path handling are measured
+            float t = (float) (sampleCount % samplesPerBeat) / samplesPerBeat;
+            float newPoint = 0.05f * (float) Math.sin(2 * Math.PI * t * 5);
+            sampleCount++;
+
+            ecgData.poll();
+            ecgData.add(newPoint);
+
+            path.reset();
+            int i = 0;
+            for (Float point : ecgData) {
+                float x = i * pixelsPerPoint;
+                float y = centerY - (point * scale);
+                if (i == 0) {
+                    path.moveTo(x, y);
+                } else {
+                    path.lineTo(x, y);
+                }
+                i++;
+            }
+
+            canvas.drawPath(path, paint);
+            postInvalidateDelayed(1000 / SAMPLING_RATE_HZ);
+        }
+    }
+}
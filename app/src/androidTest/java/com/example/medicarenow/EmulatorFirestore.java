@@ -0,0 +1,27 @@
+package com.example.medicarenow;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * The default Firestore instance, pointed at the emulator from firebase.json, which must be
+ * running on the development machine: {@code firebase emulators:start --only firestore}.
+ */
+final class EmulatorFirestore {
+    // The development machine, as seen from the Android emulator
+    private static final String HOST = "10.0.2.2";
+    private static final int PORT = 8080;
+
+    private static FirebaseFirestore db;
+
+    private EmulatorFirestore() {
+    }
+
+    /** Can only be redirected before first use, so every test gets it here. */
+    static synchronized FirebaseFirestore get() {
+        if (db == null) {
+            db = FirebaseFirestore.getInstance();
+            db.useEmulator(HOST, PORT);
+        }
+        return db;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.medicarenow;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/** Pages through 10k recommendations of one patient on the Firestore emulator, see {@link EmulatorFirestore}. */
+@RunWith(AndroidJUnit4.class)
+public class RecommendationPagingEmulatorTest {
+    private static final String TAG = "RecommendationPaging";
+    private static final int RECOMMENDATIONS = 10_000;
+    private static final int PAGE_SIZE = 25;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static FirebaseFirestore db;
+    private static String patientId;
+
+    @BeforeClass
+    public static void seedEmulator() throws Exception {
+        db = EmulatorFirestore.get();
+        patientId = "paging_" + UUID.randomUUID();
+
+        long base = System.currentTimeMillis() - RECOMMENDATIONS * 60_000L;
+        for (int start = 0; start < RECOMMENDATIONS; start += VitalsBatchWriter.MAX_WRITES_PER_BATCH) {
+            WriteBatch batch = db.batch();
+            for (int i = start; i < Math.min(RECOMMENDATIONS, start + VitalsBatchWriter.MAX_WRITES_PER_BATCH); i++) {
+                Map<String, Object> recommendation = new HashMap<>();
+                recommendation.put("pacientID", patientId);
+                recommendation.put("descriere", "Recomandarea " + i);
+                recommendation.put("tipRecomandare", "control");
+                recommendation.put("status", i % 3 == 0 ? "active" : "completed");
+                recommendation.put("progres", (long) (i % 101));
+                // Two recommendations per minute, so the id has to break ties
+                recommendation.put("dataCreare", new Timestamp(new Date(base + (i / 2) * 60_000L)));
+                batch.set(db.collection("recomandari").document(documentId(i)), recommendation);
+            }
+            Tasks.await(batch.commit(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private static String documentId(int i) {
+        return String.format(Locale.US, "%s_%05d", patientId, i);
+    }
+
+    @Test
+    public void countsOnTheServer() throws Exception {
+        DataRepository.Counts counts = Tasks.await(new DataRepository(db).countRecommendations(patientId),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(RECOMMENDATIONS, counts.total);
+        assertEquals((RECOMMENDATIONS + 2) / 3, counts.active);
+    }
+
+    @Test
+    public void pagesThroughEveryRecommendationNewestFirstOnce() throws Exception {
+        DataRepository repository = new DataRepository(db);
+        List<Recommendation> all = new ArrayList<>(firstPage(repository));
+        assertEquals(PAGE_SIZE, all.size());
+
+        long start = System.nanoTime();
+        int pages = 0;
+        List<Recommendation> page;
+        do {
+            page = Tasks.await(repository.loadRecommendations(patientId, all.get(all.size() - 1), null, PAGE_SIZE),
+                    TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            all.addAll(page);
+            pages++;
+        } while (page.size() == PAGE_SIZE);
+        Log.i(TAG, String.format(Locale.US, "%d pages of %d in %d ms, %.1f ms per page", pages, PAGE_SIZE,
+                (System.nanoTime() - start) / 1_000_000, (System.nanoTime() - start) / 1e6 / pages));
+
+        assertEquals(RECOMMENDATIONS, all.size());
+        for (int i = 0; i < RECOMMENDATIONS; i++) {
+            assertEquals(documentId(RECOMMENDATIONS - 1 - i), all.get(i).id);
+        }
+    }
+
+    private List<Recommendation> firstPage(DataRepository repository) throws InterruptedException {
+        List<List<Recommendation>> result = new ArrayList<>();
+        CountDownLatch serverPage = new CountDownLatch(1);
+        ListenerRegistration[] registration = new ListenerRegistration[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                registration[0] = repository.listenRecommendations(patientId, PAGE_SIZE,
+                        new DataRepository.Listener<List<Recommendation>>() {
+                            @Override
+                            public void onResult(List<Recommendation> recommendations, boolean fromCache) {
+                                if (!fromCache && serverPage.getCount() > 0) {
+                                    result.add(recommendations);
+                                    serverPage.countDown();
+                                }
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                Log.e(TAG, "firstPage: Listener failed", e);
+                            }
+                        }));
+        assertTrue(serverPage.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        registration[0].remove();
+        return result.get(0);
+    }
+}
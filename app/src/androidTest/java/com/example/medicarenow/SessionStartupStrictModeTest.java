@@ -0,0 +1,83 @@
+package com.example.medicarenow;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+import android.util.Log;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Starts the screens that check the session with StrictMode detecting disk reads and writes
+ * on the main thread, and fails on any that come from the app's own code.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionStartupStrictModeTest {
+    private static final String TAG = "SessionStrictMode";
+    private static final String PACKAGE = "com.example.medicarenow.";
+
+    private final List<Violation> violations = new CopyOnWriteArrayList<>();
+    private StrictMode.ThreadPolicy previous;
+    private SessionManager session;
+
+    @Before
+    public void logIn() {
+        Context context = ApplicationProvider.getApplicationContext();
+        session = SessionManager.get(context);
+        session.login(new UserProfile("strictmode_user", "strictmode@example.ro", "Strict", "Mode", "USER"));
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            previous = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyListener(Runnable::run, violations::add)
+                    .build());
+        });
+    }
+
+    @After
+    public void logOut() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> StrictMode.setThreadPolicy(previous));
+        session.logout();
+    }
+
+    @Test
+    public void startingScreensDoesNotTouchTheDiskOnTheMainThread() {
+        List<Class<? extends Activity>> screens = Arrays.asList(LoginActivity.class, DashboardActivity.class,
+                HealthDataActivity.class, RecommendationsActivity.class);
+        for (Class<? extends Activity> screen : screens) {
+            try (ActivityScenario<? extends Activity> ignored = ActivityScenario.launch(screen)) {
+                // Violations are reported once the main thread is idle
+                InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+            }
+        }
+
+        List<String> ours = new ArrayList<>();
+        for (Violation violation : violations) {
+            for (StackTraceElement frame : violation.getStackTrace()) {
+                if (frame.getClassName().startsWith(PACKAGE)) {
+                    Log.w(TAG, "Disk access on the main thread", violation);
+                    ours.add(violation.getClass().getSimpleName() + " at " + frame);
+                    break;
+                }
+            }
+        }
+        assertTrue(ours.toString(), ours.isEmpty());
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.medicarenow;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.medicarenow.core.EmailKeys;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Looks users up by email among 20k on the Firestore emulator, see {@link EmulatorFirestore},
+ * through the emails index and, for comparison, with the query login used before, and
+ * checks that accounts from before the index can still log in and cannot be registered again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserLookupEmulatorTest {
+    private static final String TAG = "UserLookup";
+    private static final int USERS = 20_000;
+    private static final int LOOKUPS = 200;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static FirebaseFirestore db;
+    private static String run;
+
+    @BeforeClass
+    public static void seedEmulator() throws Exception {
+        db = EmulatorFirestore.get();
+        run = UUID.randomUUID().toString().substring(0, 8);
+
+        // Two writes per user, the user and its email
+        int perBatch = VitalsBatchWriter.MAX_WRITES_PER_BATCH / 2;
+        for (int start = 0; start < USERS; start += perBatch) {
+            WriteBatch batch = db.batch();
+            for (int i = start; i < Math.min(USERS, start + perBatch); i++) {
+                DocumentReference user = db.collection("users").document();
+                batch.set(user, user(i));
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("userId", user.getId());
+                batch.set(db.collection("emails").document(EmailKeys.documentId(email(i))), entry);
+            }
+            Tasks.await(batch.commit(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private static String email(int i) {
+        return String.format(Locale.US, "user%05d.%s@example.ro", i, run);
+    }
+
+    private static Map<String, Object> user(int i) {
+        Map<String, Object> user = new HashMap<>();
+        user.put("firstName", "Pacient");
+        user.put("lastName", String.valueOf(i));
+        user.put("email", email(i));
+        user.put("password", "$2a$10$notarealhash");
+        user.put("role", "USER");
+        return user;
+    }
+
+    @Test
+    public void findsUsersThroughTheEmailIndex() throws Exception {
+        DataRepository repository = new DataRepository(db);
+        Random random = new Random(42);
+        long[] indexed = new long[LOOKUPS];
+        long[] queried = new long[LOOKUPS];
+        for (int n = 0; n < LOOKUPS; n++) {
+            int i = random.nextInt(USERS);
+
+            long start = System.nanoTime();
+            DocumentSnapshot user = await(repository.findUserByEmail(email(i).toUpperCase(Locale.ROOT)));
+            indexed[n] = System.nanoTime() - start;
+            assertNotNull(user);
+            assertEquals(String.valueOf(i), user.getString("lastName"));
+
+            start = System.nanoTime();
+            assertEquals(1, await(db.collection("users").whereEqualTo("email", email(i)).get(Source.SERVER)).size());
+            queried[n] = System.nanoTime() - start;
+        }
+        Log.i(TAG, "emails index: " + percentiles(indexed) + "; query on users: " + percentiles(queried));
+
+        assertNull(await(repository.findUserByEmail("nobody." + run + "@example.ro")));
+    }
+
+    @Test
+    public void concurrentRegistrationsOfOneEmailLetOnlyOneThrough() throws Exception {
+        DataRepository repository = new DataRepository(db);
+        String email = "twice." + run + "@example.ro";
+        Task<String> first = repository.registerUser(email, user(-1));
+        Task<String> second = repository.registerUser(email.toUpperCase(Locale.ROOT), user(-2));
+
+        int succeeded = 0;
+        for (Task<String> task : Arrays.asList(first, second)) {
+            try {
+                await(task);
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause().toString(), DataRepository.isEmailTaken((Exception) e.getCause()));
+            }
+        }
+        assertEquals(1, succeeded);
+        String winner = first.isSuccessful() ? first.getResult() : second.getResult();
+        assertEquals(winner, await(repository.findUserByEmail(email)).getId());
+    }
+
+    @Test
+    public void legacyUsersAreFoundAndTheirAddressesStayTaken() throws Exception {
+        DataRepository repository = new DataRepository(db);
+        // Stored as typed, without an emails entry, as older versions registered them
+        String lower = "legacy." + run + "@example.ro";
+        String mixed = "Legacy.Mixed." + run + "@Example.ro";
+        Map<String, Object> lowerUser = user(-3);
+        lowerUser.put("email", lower);
+        Map<String, Object> mixedUser = user(-4);
+        mixedUser.put("email", mixed);
+        DocumentReference lowerRef = db.collection("users").document();
+        DocumentReference mixedRef = db.collection("users").document();
+        await(lowerRef.set(lowerUser));
+        await(mixedRef.set(mixedUser));
+
+        assertEquals(lowerRef.getId(), await(repository.findUserByEmail(" Legacy." + run + "@EXAMPLE.ro")).getId());
+
+        EmailIndexMigrationWorker.backfill(db);
+        assertEquals(mixedRef.getId(), await(db.collection("emails").document(EmailKeys.documentId(mixed))
+                .get(Source.SERVER)).getString("userId"));
+        assertEquals(mixedRef.getId(), await(repository.findUserByEmail(mixed.toLowerCase(Locale.ROOT))).getId());
+        for (String email : Arrays.asList(lower, mixed.toLowerCase(Locale.ROOT))) {
+            try {
+                await(repository.registerUser(email, user(-5)));
+                fail("Registered " + email + " twice");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause().toString(), DataRepository.isEmailTaken((Exception) e.getCause()));
+            }
+        }
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format(Locale.US, "median %.1f ms, p95 %.1f ms", sorted[sorted.length / 2] / 1e6,
+                sorted[sorted.length * 95 / 100] / 1e6);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.medicarenow;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/** Counts each reading once in its rollups however often it is saved. */
+@RunWith(AndroidJUnit4.class)
+public class VitalsQueueTest {
+    private VitalsQueue queue;
+    private String patientId;
+
+    @Before
+    public void setUp() {
+        queue = VitalsQueue.get(ApplicationProvider.getApplicationContext());
+        patientId = "queue_" + UUID.randomUUID();
+    }
+
+    private static HealthData reading(long timeMillis) {
+        HealthData data = new HealthData();
+        data.pulse = 72;
+        data.temperature = 36.6f;
+        data.humidity = 45f;
+        data.timeMillis = timeMillis;
+        return data;
+    }
+
+    private List<PendingRollup> changedRollups() {
+        List<PendingRollup> ours = new ArrayList<>();
+        for (PendingRollup rollup : queue.peek(10_000)) {
+            if (rollup.patientId.equals(patientId)) {
+                ours.add(rollup);
+            }
+        }
+        return ours;
+    }
+
+    private void foldAll() {
+        while (queue.fold(200) > 0) {
+            // Until the queue is empty
+        }
+    }
+
+    @Test
+    public void readingSavedAgainWhileQueuedIsIgnored() {
+        HealthData data = reading(System.currentTimeMillis());
+        assertTrue(queue.enqueue(patientId, data));
+        assertFalse(queue.enqueue(patientId, data));
+        foldAll();
+
+        List<PendingRollup> rollups = changedRollups();
+        // Minute and hour bucket for each of the three vitals
+        assertEquals(6, rollups.size());
+        for (PendingRollup rollup : rollups) {
+            assertEquals(rollup.id, 1, rollup.rollup.getCount());
+        }
+        queue.remove(rollups);
+    }
+
+    @Test
+    public void readingSavedAgainAfterItWasFoldedIsIgnored() {
+        HealthData data = reading(System.currentTimeMillis());
+        assertTrue(queue.enqueue(patientId, data));
+        foldAll();
+        // The flush ran between two taps of save
+        assertFalse(queue.enqueue(patientId, data));
+        foldAll();
+
+        List<PendingRollup> rollups = changedRollups();
+        assertEquals(6, rollups.size());
+        for (PendingRollup rollup : rollups) {
+            assertEquals(rollup.id, 1, rollup.rollup.getCount());
+            assertEquals(rollup.id, 1, rollup.version);
+        }
+        queue.remove(rollups);
+    }
+
+    @Test
+    public void keysAreKeptUntilTheirRollupsArePruned() {
+        long time = System.currentTimeMillis() - 3 * 24 * 60 * 60 * 1000L;
+        HealthData data = reading(time);
+        assertTrue(queue.enqueue(patientId, data));
+        foldAll();
+
+        // Not written yet, so neither the buckets nor the key may go
+        queue.pruneWritten(time + 2 * 60 * 60 * 1000L);
+        assertFalse(queue.enqueue(patientId, data));
+
+        queue.remove(changedRollups());
+        queue.pruneWritten(time + 2 * 60 * 60 * 1000L);
+        assertTrue(queue.enqueue(patientId, data));
+        foldAll();
+        queue.remove(changedRollups());
+    }
+}
@@ -1,11 +1,9 @@
-
 package com.example.medicarenow;
 
 import android.Manifest;
 import android.app.Service;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Handler;
@@ -15,27 +13,49 @@ import android.util.Log;
 
 import androidx.annotation.RequiresPermission;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.UUID;
+import com.example.medicarenow.core.DeviceStream;
+import com.example.medicarenow.core.ReconnectPolicy;
+import com.example.medicarenow.core.SampleStream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Streams from any number of Bluetooth sensor devices at once (e.g. an ECG patch and a
+ * thermometer/hygrometer). Each device has its own {@link DeviceStream} with a reader thread,
+ * decoder and per-subscriber buffers; all public methods are called on the main thread.
+ */
 public class BluetoothService extends Service {
     private static final String TAG = "BluetoothService";
-    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
 
     private final IBinder binder = new LocalBinder();
     private BluetoothAdapter bluetoothAdapter;
-    private ConnectThread connectThread;
-    private ConnectedThread connectedThread;
     private Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, DeviceStream> devices = new HashMap<>();
+    // Listeners registered for every device, present and future
+    private final List<BluetoothDataListener> globalListeners = new ArrayList<>();
+    private final Map<String, List<DeviceStream.Subscription>> globalSubscriptions = new HashMap<>();
 
     public interface BluetoothDataListener {
-        void onDataReceived(String data);
+        /**
+         * Called on the main thread with batches of decoded ECG samples. {@code buf} is reused
+         * for the next batch, copy the samples if they are needed after the call.
+         *
+         * @param position index of {@code buf[off]} in the device sample stream; it jumps
+         *                 forward when samples were dropped because the UI fell behind
+         */
+        void onSamples(short[] buf, int off, int len, long position);
         void onConnectionStatusChanged(boolean isConnected);
-    }
 
-    private BluetoothDataListener dataListener;
+        /**
+         * Called on the main thread when {@code lostSamples} samples from {@code position} were
+         * lost, e.g. while the device was reconnecting. The next batch starts after the gap.
+         */
+        default void onGap(long position, long lostSamples) {
+        }
+    }
 
     public class LocalBinder extends Binder {
         BluetoothService getService() {
@@ -54,125 +74,122 @@ public class BluetoothService extends Service {
         bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
     }
 
+    @Override
+    public void onDestroy() {
+        for (DeviceStream stream : devices.values()) {
+            stream.stop();
+        }
+        devices.clear();
+        globalSubscriptions.clear();
+        super.onDestroy();
+    }
+
+    /**
+     * Receives samples from every connected device. Kept for screens that only ever deal
+     * with a single device; use {@link #subscribe} to listen to one device.
+     */
     public void setDataListener(BluetoothDataListener listener) {
-        this.dataListener = listener;
+        for (List<DeviceStream.Subscription> subscriptions : globalSubscriptions.values()) {
+            for (DeviceStream.Subscription subscription : subscriptions) {
+                subscription.unsubscribe();
+            }
+        }
+        globalSubscriptions.clear();
+        globalListeners.clear();
+
+        if (listener != null) {
+            globalListeners.add(listener);
+            for (DeviceStream stream : devices.values()) {
+                subscribeGlobal(stream, listener);
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the samples of one device, delivered on the main thread. Connection
+     * changes are only reported to the listener set with {@link #setDataListener}.
+     *
+     * @return the subscription, or null if the device is not connected through this service
+     */
+    public DeviceStream.Subscription subscribe(String deviceAddress, BluetoothDataListener listener) {
+        DeviceStream stream = devices.get(deviceAddress);
+        if (stream == null) {
+            Log.w(TAG, "subscribe: Unknown device " + deviceAddress);
+            return null;
+        }
+        return stream.subscribe(handler::post, new ListenerConsumer(listener));
     }
 
     @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
     public void connectToDevice(BluetoothDevice device) {
-        if (connectThread != null) {
-            connectThread.cancel();
-            connectThread = null;
+        String address = device.getAddress();
+        disconnectDevice(address);
+
+        // A fresh socket per attempt, the stream keeps reconnecting until disconnectDevice()
+        DeviceStream stream = new DeviceStream(address, () -> new BluetoothTransport(bluetoothAdapter, device),
+                ReconnectPolicy.defaultPolicy(), this::onDeviceStatusChanged);
+        devices.put(address, stream);
+        for (BluetoothDataListener listener : globalListeners) {
+            subscribeGlobal(stream, listener);
         }
-
-        connectThread = new ConnectThread(device);
-        connectThread.start();
+        Log.d(TAG, "connectToDevice: Connecting to " + address + ", " + devices.size() + " device(s)");
+        stream.start();
     }
 
-    private class ConnectThread extends Thread {
-        private final BluetoothSocket mmSocket;
-
-        @RequiresPermission(Manifest.permission.BLUETOOTH_CONNECT)
-        public ConnectThread(BluetoothDevice device) {
-            BluetoothSocket tmp = null;
-            try {
-                tmp = device.createRfcommSocketToServiceRecord(MY_UUID);
-            } catch (IOException e) {
-                Log.e(TAG, "Socket creation failed", e);
-            }
-            mmSocket = tmp;
+    public void disconnectDevice(String deviceAddress) {
+        DeviceStream stream = devices.remove(deviceAddress);
+        globalSubscriptions.remove(deviceAddress);
+        if (stream != null) {
+            stream.stop();
         }
+    }
 
-        @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_CONNECT, Manifest.permission.BLUETOOTH_SCAN})
-        public void run() {
-            bluetoothAdapter.cancelDiscovery();
-
-            try {
-                mmSocket.connect();
-                handler.post(() -> {
-                    if (dataListener != null) {
-                        dataListener.onConnectionStatusChanged(true);
-                    }
-                });
-
-                connectedThread = new ConnectedThread(mmSocket);
-                connectedThread.start();
-
-            } catch (IOException connectException) {
-                try {
-                    mmSocket.close();
-                } catch (IOException closeException) {
-                    Log.e(TAG, "Could not close the client socket", closeException);
-                }
-                handler.post(() -> {
-                    if (dataListener != null) {
-                        dataListener.onConnectionStatusChanged(false);
-                    }
-                });
+    public List<String> getConnectedDevices() {
+        List<String> connected = new ArrayList<>();
+        for (DeviceStream stream : devices.values()) {
+            if (stream.isRunning()) {
+                connected.add(stream.getDeviceId());
             }
         }
+        return connected;
+    }
 
-        public void cancel() {
-            try {
-                mmSocket.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Could not close the client socket", e);
-            }
+    private void subscribeGlobal(DeviceStream stream, BluetoothDataListener listener) {
+        List<DeviceStream.Subscription> subscriptions = globalSubscriptions.get(stream.getDeviceId());
+        if (subscriptions == null) {
+            subscriptions = new ArrayList<>();
+            globalSubscriptions.put(stream.getDeviceId(), subscriptions);
         }
+        subscriptions.add(stream.subscribe(handler::post, new ListenerConsumer(listener)));
     }
 
-    private class ConnectedThread extends Thread {
-        private final BluetoothSocket mmSocket;
-        private final InputStream mmInStream;
-        private final OutputStream mmOutStream;
-
-        public ConnectedThread(BluetoothSocket socket) {
-            mmSocket = socket;
-            InputStream tmpIn = null;
-            OutputStream tmpOut = null;
-
-            try {
-                tmpIn = socket.getInputStream();
-                tmpOut = socket.getOutputStream();
-            } catch (IOException e) {
-                Log.e(TAG, "Error getting streams", e);
+    /** Runs on the device's reader thread. */
+    private void onDeviceStatusChanged(DeviceStream stream, boolean connected) {
+        Log.d(TAG, stream.getDeviceId() + (connected ? " connected" : " disconnected")
+                + ", frames decoded: " + stream.getFramesDecoded() + ", corrupt: " + stream.getCorruptFrames()
+                + ", reconnects: " + stream.getReconnects() + ", samples lost: " + stream.getLostSamples());
+        handler.post(() -> {
+            for (BluetoothDataListener listener : globalListeners) {
+                listener.onConnectionStatusChanged(connected);
             }
+        });
+    }
 
-            mmInStream = tmpIn;
-            mmOutStream = tmpOut;
+    private static class ListenerConsumer implements SampleStream.Consumer {
+        private final BluetoothDataListener listener;
+
+        ListenerConsumer(BluetoothDataListener listener) {
+            this.listener = listener;
         }
 
-        public void run() {
-            byte[] buffer = new byte[1024];
-            int bytes;
-
-            while (true) {
-                try {
-                    bytes = mmInStream.read(buffer);
-                    String incomingMessage = new String(buffer, 0, bytes);
-                    handler.post(() -> {
-                        if (dataListener != null) {
-                            dataListener.onDataReceived(incomingMessage);
-                        }
-                    });
-                } catch (IOException e) {
-                    Log.d(TAG, "Input stream disconnected", e);
-                    handler.post(() -> {
-                        if (dataListener != null) {
-                            dataListener.onConnectionStatusChanged(false);
-                        }
-                    });
-                    break;
-                }
-            }
+        @Override
+        public void onSamples(short[] buf, int off, int len, long position) {
+            listener.onSamples(buf, off, len, position);
         }
 
-        public void cancel() {
-            try {
-                mmSocket.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Could not close the connect socket", e);
-            }
+        @Override
+        public void onGap(long position, long lostSamples) {
+            listener.onGap(position, lostSamples);
         }
     }
 }
@@ -0,0 +1,68 @@
+package com.example.medicarenow;
+
+import android.Manifest;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.util.Log;
+
+import androidx.annotation.RequiresPermission;
+
+import com.example.medicarenow.core.StreamTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/** RFCOMM (serial port profile) link to a paired device. One instance per connection attempt. */
+public class BluetoothTransport implements StreamTransport {
+    private static final String TAG = "BluetoothTransport";
+    private static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    private final BluetoothAdapter adapter;
+    private final BluetoothDevice device;
+    private volatile BluetoothSocket socket;
+    private volatile boolean closed = false;
+
+    public BluetoothTransport(BluetoothAdapter adapter, BluetoothDevice device) {
+        this.adapter = adapter;
+        this.device = device;
+    }
+
+    @Override
+    @RequiresPermission(allOf = {Manifest.permission.BLUETOOTH_CONNECT, Manifest.permission.BLUETOOTH_SCAN})
+    public void connect() throws IOException {
+        adapter.cancelDiscovery();
+        BluetoothSocket tmp = device.createRfcommSocketToServiceRecord(SPP_UUID);
+        socket = tmp;
+        if (closed) {
+            // close() ran before the socket existed
+            close();
+            throw new IOException("Transport closed");
+        }
+        tmp.connect();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        BluetoothSocket current = socket;
+        if (current == null) {
+            throw new IOException("Not connected");
+        }
+        return current.getInputStream();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        BluetoothSocket current = socket;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not close the client socket", e);
+        }
+    }
+}
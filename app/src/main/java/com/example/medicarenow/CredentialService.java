@@ -0,0 +1,138 @@
+package com.example.medicarenow;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.medicarenow.core.CostCalibrator;
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+
+/**
+ * Hashes and checks passwords with bcrypt on background threads, never on the main one.
+ *
+ * At most {@link #THREADS} hashes run at once and {@link #MAX_QUEUED} wait; more are rejected
+ * rather than piling up behind repeated taps. Work whose {@link CancellationToken} is cancelled,
+ * e.g. because its activity was destroyed, is skipped if it has not started and its result is
+ * dropped if it has, since a running hash cannot be interrupted.
+ *
+ * New hashes use the cost calibrated once per device, so that hashing takes about
+ * {@link #TARGET_MILLIS}, see {@link CostCalibrator}; checking uses the cost stored in the hash.
+ */
+class CredentialService {
+    private static final String TAG = "CredentialService";
+    private static final int THREADS = 2;
+    private static final int MAX_QUEUED = 4;
+    private static final long TARGET_MILLIS = 250;
+    // Below 10 brute forcing gets cheap, above 14 logins take seconds on slow phones
+    private static final int MIN_COST = 10;
+    private static final int MAX_COST = 14;
+    private static final int DEFAULT_COST = 12;
+    // Own file, logging out clears the session preferences
+    private static final String PREFS = "credentials";
+    private static final String PREF_COST = "bcrypt_cost";
+
+    private static CredentialService instance;
+
+    private final SharedPreferences prefs;
+    private final ThreadPoolExecutor executor;
+
+    private CredentialService(Context context) {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED), runnable -> {
+                    Thread thread = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }, "credentials");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    static synchronized CredentialService get(Context context) {
+        if (instance == null) {
+            instance = new CredentialService(context.getApplicationContext());
+            instance.calibrateIfNeeded();
+        }
+        return instance;
+    }
+
+    /** Hashes {@code password} at the calibrated cost and clears the array. */
+    Task<String> hash(char[] password, CancellationToken token) {
+        return submit(token, () -> {
+            try {
+                // Read here, the first read of the file waits for it to load from disk
+                int cost = prefs.getInt(PREF_COST, DEFAULT_COST);
+                return BCrypt.withDefaults().hashToString(cost, password);
+            } finally {
+                Arrays.fill(password, '\0');
+            }
+        });
+    }
+
+    /** Whether {@code password} matches {@code hash}; clears the array. */
+    Task<Boolean> verify(char[] password, String hash, CancellationToken token) {
+        return submit(token, () -> {
+            try {
+                return hash != null && BCrypt.verifyer().verify(password, hash).verified;
+            } finally {
+                Arrays.fill(password, '\0');
+            }
+        });
+    }
+
+    private <T> Task<T> submit(CancellationToken token, Callable<T> work) {
+        // Completing a cancelled source is a no-op, so late results are dropped
+        TaskCompletionSource<T> result = new TaskCompletionSource<>(token);
+        try {
+            executor.execute(() -> {
+                if (token.isCancellationRequested()) {
+                    return;
+                }
+                try {
+                    result.trySetResult(work.call());
+                } catch (Exception e) {
+                    result.trySetException(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.trySetException(e);
+        }
+        return result.getTask();
+    }
+
+    private void calibrateIfNeeded() {
+        try {
+            executor.execute(() -> {
+                if (prefs.contains(PREF_COST)) {
+                    return;
+                }
+                char[] sample = "calibration".toCharArray();
+                long start = System.nanoTime();
+                int cost = CostCalibrator.pickCost(c -> {
+                    long begin = System.nanoTime();
+                    BCrypt.withDefaults().hash(c, sample);
+                    return System.nanoTime() - begin;
+                }, TimeUnit.MILLISECONDS.toNanos(TARGET_MILLIS), MIN_COST, MAX_COST);
+                prefs.edit().putInt(PREF_COST, cost).apply();
+                Log.i(TAG, "calibrateIfNeeded: bcrypt cost " + cost + ", calibrated in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "calibrateIfNeeded: Busy, calibrating next time", e);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.example.medicarenow;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
@@ -26,34 +25,35 @@ public class DashboardActivity extends AppCompatActivity {
         logoutButton = findViewById(R.id.logoutButton);
 
         // Check if user is logged in
-        SharedPreferences prefs = getSharedPreferences("MediCareNow", MODE_PRIVATE);
-        String userEmail = prefs.getString("user_email", "");
-        String firstName = prefs.getString("user_first_name", "");
-        String lastName = prefs.getString("user_last_name", "");
-        String userRole = prefs.getString("user_role", "");
-
-        Log.d(TAG,
-                "onCreate: User session - email: " + userEmail + ", firstName: " + firstName + ", role: " + userRole);
+        UserProfile user = SessionManager.get(this).getUser();
 
         // If no user session, redirect to login
-        if (userEmail.isEmpty()) {
+        if (user == null) {
             Log.w(TAG, "onCreate: No user session found, redirecting to login");
             startActivity(new Intent(DashboardActivity.this, LoginActivity.class));
             finish();
             return;
         }
+        Log.d(TAG, "onCreate: User session - email: " + user.email + ", firstName: " + user.firstName
+                + ", role: " + user.role);
 
         // Set welcome message with user's name
-        String welcomeMessage;
-        if (!firstName.isEmpty() && !lastName.isEmpty()) {
-            welcomeMessage = "Welcome, " + firstName + " " + lastName;
-        } else if (!firstName.isEmpty()) {
-            welcomeMessage = "Welcome, " + firstName;
-        } else {
-            welcomeMessage = "Welcome, " + userEmail;
-        }
-        welcomeTextView.setText(welcomeMessage);
-        Log.d(TAG, "onCreate: Welcome message set: " + welcomeMessage);
+        showWelcome(user.firstName, user.lastName, user.email);
+
+        // The profile cached at login, or the server's if the name changed since
+        DataRepository.get().loadUser(user.id, new DataRepository.Listener<UserProfile>() {
+            @Override
+            public void onResult(UserProfile profile, boolean fromCache) {
+                if (!isFinishing() && profile.firstName != null) {
+                    showWelcome(profile.firstName, profile.lastName != null ? profile.lastName : "", user.email);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w(TAG, "onCreate: Could not load user profile", e);
+            }
+        });
 
         viewHealthDataButton.setOnClickListener(v -> {
             Log.d(TAG, "View Health Data button clicked");
@@ -66,14 +66,25 @@ public class DashboardActivity extends AppCompatActivity {
         });
     }
 
+    private void showWelcome(String firstName, String lastName, String userEmail) {
+        String welcomeMessage;
+        if (!firstName.isEmpty() && !lastName.isEmpty()) {
+            welcomeMessage = "Welcome, " + firstName + " " + lastName;
+        } else if (!firstName.isEmpty()) {
+            welcomeMessage = "Welcome, " + firstName;
+        } else {
+            welcomeMessage = "Welcome, " + userEmail;
+        }
+        welcomeTextView.setText(welcomeMessage);
+        Log.d(TAG, "showWelcome: Welcome message set: " + welcomeMessage);
+    }
+
     private void logout() {
         Log.d(TAG, "logout: Starting logout process");
 
-        // Clear user session from SharedPreferences
-        SharedPreferences prefs = getSharedPreferences("MediCareNow", MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.clear(); // Clear all stored user data
-        editor.apply();
+        // Clear all stored user data
+        SessionManager.get(this).logout();
+        DataRepository.get().clear();
 
         Log.d(TAG, "logout: User session cleared");
         Log.d(TAG, "logout: Redirecting to LoginActivity");
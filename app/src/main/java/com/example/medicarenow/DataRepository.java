@@ -0,0 +1,321 @@
+package com.example.medicarenow;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.medicarenow.core.EmailKeys;
+import com.example.medicarenow.core.TtlLruCache;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The one place activities read users and recommendations from Firestore.
+ *
+ * Profiles and recommendations are cached in memory: a profile younger than its TTL is
+ * served without a read, an older one is shown right away and then replaced by the server's.
+ * Recommendations are listened to live, the cached list only fills the screen meanwhile.
+ * Identical requests made while one is still running share its task instead of querying
+ * again. Hit rate, reads and their latency are logged after every read. Listeners run on the
+ * main thread.
+ */
+class DataRepository {
+    private static final String TAG = "DataRepository";
+    private static final int MAX_ENTRIES = 64;
+    private static final long TTL_MILLIS = 2 * 60_000;
+
+    interface Listener<T> {
+        /** Called with the cached value first if there is one, then with each one from Firestore. */
+        void onResult(T value, boolean fromCache);
+
+        void onError(Exception e);
+    }
+
+    private static DataRepository instance;
+
+    private final FirebaseFirestore db;
+    private final TtlLruCache<String, Object> cache = new TtlLruCache<>(MAX_ENTRIES, TTL_MILLIS);
+    private final Map<String, Task<?>> inFlight = new HashMap<>();
+    private long reads = 0;
+    private long joined = 0;
+    private long totalLatencyMillis = 0;
+    private long maxLatencyMillis = 0;
+
+    // Tests pass a Firestore connected to the emulator
+    DataRepository(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    static synchronized DataRepository get() {
+        if (instance == null) {
+            instance = new DataRepository(FirebaseFirestore.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * The user registered with {@code email}, or null, always from the server since login
+     * checks the password hash. Two document reads through the {@code emails} index, whatever
+     * the number of users. Accounts from before the index are found by a query on the address
+     * as typed or lowercased, and indexed, until {@link EmailIndexMigrationWorker} has indexed
+     * them all.
+     */
+    Task<DocumentSnapshot> findUserByEmail(String email) {
+        DocumentReference emailRef = db.collection("emails").document(EmailKeys.documentId(email));
+        return coalesce("users/email/" + emailRef.getId(), () -> emailRef.get(Source.SERVER).continueWithTask(task -> {
+            String userId = task.getResult().getString("userId");
+            if (userId != null) {
+                return db.collection("users").document(userId).get(Source.SERVER)
+                        .continueWith(user -> user.getResult().exists() ? user.getResult() : null);
+            }
+            // Older versions stored the address as typed
+            String normalized = EmailKeys.normalize(email);
+            List<String> addresses = normalized.equals(email)
+                    ? Collections.singletonList(email) : Arrays.asList(email, normalized);
+            return db.collection("users").whereIn("email", addresses).limit(1).get(Source.SERVER)
+                    .continueWith(query -> {
+                        if (query.getResult().isEmpty()) {
+                            return null;
+                        }
+                        DocumentSnapshot user = query.getResult().getDocuments().get(0);
+                        indexEmail(emailRef, user.getId());
+                        return user;
+                    });
+        }));
+    }
+
+    /**
+     * Creates the user, claiming {@code email} in the {@code emails} index in the same
+     * transaction so that of two registrations with the same address only one succeeds; the
+     * other fails with {@link #isEmailTaken}.
+     *
+     * @return the new user's id
+     */
+    Task<String> registerUser(String email, Map<String, Object> user) {
+        DocumentReference emailRef = db.collection("emails").document(EmailKeys.documentId(email));
+        DocumentReference userRef = db.collection("users").document();
+        return db.runTransaction(transaction -> {
+            if (transaction.get(emailRef).exists()) {
+                throw new FirebaseFirestoreException("Email already registered",
+                        FirebaseFirestoreException.Code.ALREADY_EXISTS);
+            }
+            transaction.set(emailRef, emailEntry(userRef.getId()));
+            transaction.set(userRef, user);
+            return userRef.getId();
+        });
+    }
+
+    static boolean isEmailTaken(Exception e) {
+        return e instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.ALREADY_EXISTS;
+    }
+
+    private void indexEmail(DocumentReference emailRef, String userId) {
+        db.runTransaction(transaction -> {
+            if (!transaction.get(emailRef).exists()) {
+                transaction.set(emailRef, emailEntry(userId));
+            }
+            return null;
+        }).addOnFailureListener(e -> Log.w(TAG, "indexEmail: Could not index " + emailRef.getId(), e));
+    }
+
+    static Map<String, Object> emailEntry(String userId) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("userId", userId);
+        return entry;
+    }
+
+    /** Remembers a profile just read or written, so the next screens don't read it again. */
+    void putUser(UserProfile profile) {
+        cache.put(userKey(profile.id), profile, SystemClock.elapsedRealtime());
+    }
+
+    void loadUser(String userId, Listener<UserProfile> listener) {
+        cacheFirst(userKey(userId), () -> db.collection("users").document(userId).get()
+                .continueWith(task -> UserProfile.from(task.getResult())), listener);
+    }
+
+    /** Active and total recommendations of a patient, counted by the server. */
+    static final class Counts {
+        final long active;
+        final long total;
+
+        Counts(long active, long total) {
+            this.active = active;
+            this.total = total;
+        }
+    }
+
+    /**
+     * Keeps {@code listener} up to date with the patient's {@code pageSize} newest
+     * recommendations until the returned registration is removed. The last list this process
+     * saw is delivered first, then Firestore's local copy, then every change on the server.
+     * Each snapshot only re-reads the documents that changed, applied to the previous list.
+     */
+    @SuppressWarnings("unchecked")
+    ListenerRegistration listenRecommendations(String patientId, int pageSize,
+                                               Listener<List<Recommendation>> listener) {
+        String key = "recomandari/" + patientId + "/" + pageSize;
+        List<Recommendation> cached = (List<Recommendation>) cache.get(key, SystemClock.elapsedRealtime());
+        if (cached == null) {
+            cached = (List<Recommendation>) cache.getStale(key);
+        }
+        if (cached != null) {
+            listener.onResult(cached, true);
+        }
+        List<Recommendation> current = new ArrayList<>();
+        return recommendations(patientId)
+                .limit(pageSize)
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        listener.onError(e);
+                        return;
+                    }
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        switch (change.getType()) {
+                            case ADDED:
+                                current.add(change.getNewIndex(), Recommendation.from(change.getDocument()));
+                                break;
+                            case MODIFIED:
+                                current.remove(change.getOldIndex());
+                                current.add(change.getNewIndex(), Recommendation.from(change.getDocument()));
+                                break;
+                            case REMOVED:
+                                current.remove(change.getOldIndex());
+                                break;
+                        }
+                    }
+                    List<Recommendation> recommendations = Collections.unmodifiableList(new ArrayList<>(current));
+                    cache.put(key, recommendations, SystemClock.elapsedRealtime());
+                    listener.onResult(recommendations, snapshot.getMetadata().isFromCache());
+                });
+    }
+
+    /**
+     * Up to {@code pageSize} recommendations older than {@code after}, newest first, from the
+     * server. With {@code before} set, only those newer than it, to fill a gap between pages.
+     */
+    Task<List<Recommendation>> loadRecommendations(String patientId, Recommendation after, Recommendation before,
+                                                   int pageSize) {
+        String key = "recomandari/" + patientId + "/after/" + after.id + "/before/"
+                + (before != null ? before.id : "") + "/" + pageSize;
+        return coalesce(key, () -> {
+            Query query = recommendations(patientId).startAfter(after.dataCreareValue, after.id);
+            if (before != null) {
+                query = query.endBefore(before.dataCreareValue, before.id);
+            }
+            return query.limit(pageSize).get().continueWith(task -> {
+                List<DocumentSnapshot> documents = task.getResult().getDocuments();
+                List<Recommendation> page = new ArrayList<>(documents.size());
+                for (DocumentSnapshot document : documents) {
+                    page.add(Recommendation.from(document));
+                }
+                return page;
+            });
+        });
+    }
+
+    /**
+     * Counts the patient's recommendations with two count() aggregations on the server,
+     * which read one index entry per thousand documents instead of the documents themselves.
+     */
+    Task<Counts> countRecommendations(String patientId) {
+        return coalesce("recomandari/" + patientId + "/count", () -> {
+            Query all = db.collection("recomandari").whereEqualTo("pacientID", patientId);
+            Task<AggregateQuerySnapshot> total = all.count().get(AggregateSource.SERVER);
+            Task<AggregateQuerySnapshot> active = all.whereEqualTo("status", "active").count()
+                    .get(AggregateSource.SERVER);
+            return Tasks.whenAllSuccess(active, total).continueWith(
+                    task -> new Counts(active.getResult().getCount(), total.getResult().getCount()));
+        });
+    }
+
+    /** Forgets everything cached, e.g. on logout. */
+    void clear() {
+        cache.clear();
+    }
+
+    /** Newest first, ties broken by id so that every recommendation has a unique position for cursors. */
+    private Query recommendations(String patientId) {
+        return db.collection("recomandari")
+                .whereEqualTo("pacientID", patientId)
+                .orderBy("dataCreare", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+    }
+
+    private static String userKey(String userId) {
+        return "users/" + userId;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void cacheFirst(String key, Supplier<Task<T>> load, Listener<T> listener) {
+        T fresh = (T) cache.get(key, SystemClock.elapsedRealtime());
+        if (fresh != null) {
+            listener.onResult(fresh, true);
+            return;
+        }
+        T stale = (T) cache.getStale(key);
+        if (stale != null) {
+            listener.onResult(stale, true);
+        }
+        coalesce(key, load).addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                cache.put(key, task.getResult(), SystemClock.elapsedRealtime());
+                listener.onResult(task.getResult(), false);
+            } else {
+                listener.onError(task.getException());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Task<T> coalesce(String key, Supplier<Task<T>> load) {
+        synchronized (inFlight) {
+            Task<T> running = (Task<T>) inFlight.get(key);
+            if (running != null) {
+                joined++;
+                return running;
+            }
+            long start = SystemClock.elapsedRealtime();
+            Task<T> task = load.get();
+            inFlight.put(key, task);
+            task.addOnCompleteListener(done -> {
+                synchronized (inFlight) {
+                    inFlight.remove(key);
+                    recordRead(key, SystemClock.elapsedRealtime() - start);
+                }
+            });
+            return task;
+        }
+    }
+
+    // Holding inFlight
+    private void recordRead(String key, long latencyMillis) {
+        reads++;
+        totalLatencyMillis += latencyMillis;
+        maxLatencyMillis = Math.max(maxLatencyMillis, latencyMillis);
+        Log.d(TAG, String.format(Locale.US,
+                "recordRead: %s in %d ms; %d reads, %d joined, mean %d ms, max %d ms, cache hit rate %.0f%%",
+                key, latencyMillis, reads, joined, totalLatencyMillis / reads, maxLatencyMillis,
+                cache.hitRate() * 100));
+    }
+}
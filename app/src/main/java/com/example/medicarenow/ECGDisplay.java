@@ -0,0 +1,17 @@
+package com.example.medicarenow;
+
+/**
+ * Common feed API of the ECG renderers, so the monitoring screen can switch between the
+ * main-thread {@link ECGView} and the render-thread {@link ECGSurfaceView}.
+ * All methods are called on the main thread.
+ */
+public interface ECGDisplay {
+
+    /** Resizes the display for the device sample rate. Clears the traces. */
+    void setSampleRate(int sampleRateHz);
+
+    void setHeartRate(int bpm);
+
+    /** Appends samples of the first lead. */
+    void addSamples(float[] samples, int off, int len);
+}
@@ -1,36 +1,87 @@
 package com.example.medicarenow;
 
+import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
+import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.medicarenow.core.EcgRecorder;
+import com.example.medicarenow.core.FilterChain;
+import com.example.medicarenow.core.HrvCalculator;
+import com.example.medicarenow.core.QrsDetector;
+import com.example.medicarenow.core.SimulatedEcgSource;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
 public class ECGMonitoringActivity extends AppCompatActivity {
+    private static final String TAG = "ECGMonitoringActivity";
+    // Set to true to draw on a dedicated render thread, e.g. when monitoring several leads
+    public static final String EXTRA_USE_SURFACE_VIEW = "use_surface_view";
     private static final int UPDATE_INTERVAL_MS = 1000;
+    private static final int SAMPLING_RATE_HZ = 200;
+    // How often the simulated device delivers a batch of samples
+    private static final int SAMPLE_BATCH_INTERVAL_MS = 20;
+    private static final int MAINS_FREQUENCY_HZ = 50;
+    // Standard short-term HRV window
+    private static final long HRV_WINDOW_MS = 5 * 60 * 1000L;
+    // Recorded at microvolt resolution, the waveform is in millivolts
+    private static final int RECORDING_COUNTS_PER_MV = 1000;
+    // Chunks fill up every 80 s at 200 Hz, checking more often only catches retries sooner
+    private static final int UPLOAD_INTERVAL_MS = 30_000;
 
-    private ECGView ecgView;
+    private ECGDisplay ecgView;
     private TextView ecgStatus;
     private TextView heartRateText;
+    private TextView hrvText;
     private Handler handler;
     private int simulatedHeartRate = 72;
     private boolean isRunning = false;
+    private final SimulatedEcgSource ecgSource = new SimulatedEcgSource(SAMPLING_RATE_HZ, simulatedHeartRate);
+    private final float[] sampleBuffer = new float[SAMPLING_RATE_HZ];
+    private final FilterChain filterChain = FilterChain.forEcg(SAMPLING_RATE_HZ, MAINS_FREQUENCY_HZ);
+    private QrsDetector qrsDetector;
+    private final HrvCalculator hrvCalculator = new HrvCalculator(HRV_WINDOW_MS);
+    private EcgRecorder recorder;
+    private final short[] recordBuffer = new short[SAMPLING_RATE_HZ];
+    private long recordedSkipped = 0;
+    private EcgUploads uploads;
+    // Empty while nobody is logged in
+    private String userId;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_ecg_monitoring);
 
-        ecgView = findViewById(R.id.ecgView);
+        ecgView = createECGDisplay();
         ecgStatus = findViewById(R.id.ecgStatus);
         heartRateText = findViewById(R.id.heartRateText);
+        hrvText = findViewById(R.id.hrvText);
         Button backButton = findViewById(R.id.backButton);
+        Button reviewButton = findViewById(R.id.reviewButton);
 
-        // Initialize with default heart rate
-        heartRateText.setText("Heart Rate: " + simulatedHeartRate + " BPM");
-        ecgView.setHeartRate(simulatedHeartRate);
+        // Heart rate is measured from the signal once the detector has seen a few beats
+        heartRateText.setText("Heart Rate: -- BPM");
+        ecgView.setSampleRate(SAMPLING_RATE_HZ);
+        qrsDetector = new QrsDetector(SAMPLING_RATE_HZ, (sampleIndex, rrMillis) -> onBeatDetected(rrMillis));
+
+        // Recordings are uploaded for the logged in patient, including their earlier unfinished ones
+        userId = SessionManager.get(this).getUserId();
+        if (!userId.isEmpty()) {
+            uploads = new EcgUploads(FirebaseFirestore.getInstance(), userId);
+            uploads.resumeAll(getFilesDir());
+        }
 
         // Simulate connection process
         ecgStatus.setText("Connecting to ECG device...");
@@ -40,11 +91,38 @@ public class ECGMonitoringActivity extends AppCompatActivity {
         }, 2000);
 
         backButton.setOnClickListener(v -> finish());
+        reviewButton.setOnClickListener(v -> {
+            Intent intent = new Intent(ECGMonitoringActivity.this, ECGReviewActivity.class);
+            if (recorder != null) {
+                intent.putExtra(ECGReviewActivity.EXTRA_RECORDING_DIR, recorder.getDirectory().getPath());
+            }
+            startActivity(intent);
+        });
+    }
+
+    private ECGDisplay createECGDisplay() {
+        ECGView layoutView = findViewById(R.id.ecgView);
+        if (!getIntent().getBooleanExtra(EXTRA_USE_SURFACE_VIEW, false)) {
+            return layoutView;
+        }
+
+        // Take the place of the layout's ECGView so the views positioned below it stay put
+        ECGSurfaceView surfaceView = new ECGSurfaceView(this);
+        ViewGroup parent = (ViewGroup) layoutView.getParent();
+        int index = parent.indexOfChild(layoutView);
+        ViewGroup.LayoutParams params = layoutView.getLayoutParams();
+        parent.removeViewAt(index);
+        surfaceView.setId(R.id.ecgView);
+        parent.addView(surfaceView, index, params);
+        return surfaceView;
     }
 
     private void startECGSimulation() {
         isRunning = true;
         handler = new Handler();
+        if (recorder == null) {
+            startRecording();
+        }
 
         final Runnable updateSimulation = new Runnable() {
             @Override
@@ -53,17 +131,107 @@ public class ECGMonitoringActivity extends AppCompatActivity {
 
                 // Simulate natural heart rate variations (±5 BPM)
                 simulatedHeartRate = 70 + (int)(Math.random() * 10);
-
-                // Update UI
-                heartRateText.setText("Heart Rate: " + simulatedHeartRate + " BPM");
-                ecgView.setHeartRate(simulatedHeartRate);
+                ecgSource.setHeartRate(simulatedHeartRate);
 
                 // Schedule next update
                 handler.postDelayed(this, UPDATE_INTERVAL_MS);
             }
         };
 
+        // Feeds the view at the device rate, independently of how often it redraws
+        final Runnable deliverSamples = new Runnable() {
+            @Override
+            public void run() {
+                if (!isRunning) return;
+
+                int count = ecgSource.read(System.nanoTime(), sampleBuffer, 0, sampleBuffer.length);
+                record(sampleBuffer, count);
+                filterChain.process(sampleBuffer, 0, count);
+                ecgView.addSamples(sampleBuffer, 0, count);
+                qrsDetector.process(sampleBuffer, 0, count);
+
+                handler.postDelayed(this, SAMPLE_BATCH_INTERVAL_MS);
+            }
+        };
+
+        final Runnable pumpUploads = new Runnable() {
+            @Override
+            public void run() {
+                if (!isRunning) return;
+
+                if (uploads != null) {
+                    uploads.pump();
+                }
+                handler.postDelayed(this, UPLOAD_INTERVAL_MS);
+            }
+        };
+
         handler.post(updateSimulation);
+        handler.post(deliverSamples);
+        handler.postDelayed(pumpUploads, UPLOAD_INTERVAL_MS);
+    }
+
+    /** Each monitoring session is recorded to its own directory under the patient's recordings. */
+    private void startRecording() {
+        String sessionId = "ecg-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File directory = new File(EcgUploads.recordingsDir(getFilesDir(), userId), sessionId);
+        try {
+            recorder = new EcgRecorder(directory, sessionId, System.currentTimeMillis(), SAMPLING_RATE_HZ,
+                    RECORDING_COUNTS_PER_MV);
+            Log.d(TAG, "startRecording: Recording to " + directory);
+            if (uploads != null) {
+                uploads.addLive(directory);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "startRecording: Cannot create recording", e);
+        }
+    }
+
+    /** Appends the raw, unfiltered samples; time spent paused is recorded as a gap. */
+    private void record(float[] samples, int count) {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            long skipped = ecgSource.getSamplesSkipped();
+            if (skipped > recordedSkipped) {
+                recorder.appendGap(skipped - recordedSkipped);
+                recordedSkipped = skipped;
+            }
+            for (int i = 0; i < count; i++) {
+                float counts = samples[i] * RECORDING_COUNTS_PER_MV;
+                recordBuffer[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, counts));
+            }
+            recorder.append(recordBuffer, 0, count);
+        } catch (IOException e) {
+            Log.e(TAG, "record: Recording stopped", e);
+            stopRecording();
+        }
+    }
+
+    private void stopRecording() {
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            Log.e(TAG, "stopRecording: Error closing recording", e);
+        }
+        if (uploads != null) {
+            uploads.finish(recorder.getDirectory());
+        }
+        recorder = null;
+    }
+
+    private void onBeatDetected(int rrMillis) {
+        int heartRate = qrsDetector.getHeartRate();
+        if (heartRate > 0) {
+            heartRateText.setText("Heart Rate: " + heartRate + " BPM");
+            ecgView.setHeartRate(heartRate);
+        }
+
+        if (rrMillis > 0 && hrvCalculator.addInterval(rrMillis) && hrvCalculator.getIntervalCount() > 2) {
+            hrvText.setText(String.format(Locale.getDefault(), "HRV: RMSSD %.0f ms · SDNN %.0f ms · pNN50 %.0f%%",
+                    hrvCalculator.getRmssd(), hrvCalculator.getSdnn(), hrvCalculator.getPnn50()));
+        }
     }
 
     @Override
@@ -73,6 +241,24 @@ public class ECGMonitoringActivity extends AppCompatActivity {
         if (handler != null) {
             handler.removeCallbacksAndMessages(null);
         }
+        if (recorder != null) {
+            try {
+                recorder.flush();
+            } catch (IOException e) {
+                Log.e(TAG, "onPause: Error flushing recording", e);
+            }
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (recorder != null) {
+            stopRecording();
+        }
+        if (uploads != null) {
+            uploads.shutdown();
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -83,4 +269,4 @@ public class ECGMonitoringActivity extends AppCompatActivity {
             startECGSimulation();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.example.medicarenow;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.medicarenow.core.EcgRecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/** Shows the most recent ECG recording, or the one passed in {@link #EXTRA_RECORDING_DIR}. */
+public class ECGReviewActivity extends AppCompatActivity {
+    private static final String TAG = "ECGReviewActivity";
+    public static final String EXTRA_RECORDING_DIR = "recording_dir";
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_ecg_review);
+
+        TextView statusText = findViewById(R.id.reviewStatus);
+        ECGReviewView reviewView = findViewById(R.id.reviewView);
+        Button backButton = findViewById(R.id.reviewBackButton);
+        backButton.setOnClickListener(v -> finish());
+
+        File directory = getRecordingDirectory();
+        if (directory == null) {
+            statusText.setText("No recordings yet");
+            return;
+        }
+        EcgRecording recording;
+        try {
+            // Only maps the small index; the view reads the samples on its loader thread and closes it
+            recording = EcgRecording.open(directory);
+        } catch (IOException e) {
+            Log.e(TAG, "onCreate: Cannot open recording " + directory, e);
+            statusText.setText("Cannot open recording");
+            return;
+        }
+
+        long minutes = recording.getDurationMillis() / 60_000;
+        statusText.setText(String.format(Locale.getDefault(), "%s · %d h %02d min · pinch to zoom",
+                recording.getSessionId(), minutes / 60, minutes % 60));
+        reviewView.setRecording(recording);
+    }
+
+    private File getRecordingDirectory() {
+        String path = getIntent().getStringExtra(EXTRA_RECORDING_DIR);
+        if (path != null) {
+            return new File(path);
+        }
+        // Session directories are named by start time, so the last one is the newest
+        File[] sessions = EcgUploads.recordingsDir(getFilesDir(), SessionManager.get(this).getUserId())
+                .listFiles(File::isDirectory);
+        if (sessions == null || sessions.length == 0) {
+            return null;
+        }
+        File newest = sessions[0];
+        for (File session : sessions) {
+            if (session.getName().compareTo(newest.getName()) > 0) {
+                newest = session;
+            }
+        }
+        return newest;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.medicarenow;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import com.example.medicarenow.core.EcgRecording;
+import com.example.medicarenow.core.MinMaxPyramid;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Pan and zoom through a recorded ECG session, from a few seconds up to the whole day.
+ *
+ * Each pixel column is drawn as a vertical line from the lowest to the highest sample it
+ * covers, read from the recording's {@link MinMaxPyramid}. A frame therefore reads about
+ * one bucket per column at any zoom. Reads happen on a loader thread; the main thread only
+ * swaps in the finished columns and draws them.
+ */
+public class ECGReviewView extends View {
+    private static final String TAG = "ECGReviewView";
+    private static final int MIN_VISIBLE_SECONDS = 2;
+
+    private Paint paint;
+    private Paint labelPaint;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
+
+    private EcgRecording recording;
+    private MinMaxPyramid pyramid;
+    // Visible range, in samples
+    private double startSample = 0;
+    private double visibleSamples = 1;
+
+    private HandlerThread loaderThread;
+    private Handler loader;
+    // Shared with the loader thread, guarded by lock: the range to load and the loaded columns
+    private final Object lock = new Object();
+    private long requestedFrom;
+    private long requestedTo;
+    private int requestedColumns;
+    private short[] loadMin = new short[0];
+    private short[] loadMax = new short[0];
+    private short[] drawMin = new short[0];
+    private short[] drawMax = new short[0];
+    private int drawColumns = 0;
+    private String rangeLabel = "";
+    private float[] linePoints = new float[0];
+    private final Runnable loadTask = this::load;
+
+    private final GestureDetector gestureDetector;
+    private final ScaleGestureDetector scaleDetector;
+
+    public ECGReviewView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                setVisibleRange(startSample + distanceX * visibleSamples / getWidth(), visibleSamples);
+                return true;
+            }
+        });
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                // Keep the sample under the fingers in place
+                double focusSample = startSample + detector.getFocusX() * visibleSamples / getWidth();
+                double visible = visibleSamples / detector.getScaleFactor();
+                setVisibleRange(focusSample - detector.getFocusX() * visible / getWidth(), visible);
+                return true;
+            }
+        });
+    }
+
+    private void init() {
+        paint = new Paint();
+        paint.setColor(Color.GREEN);
+        paint.setStrokeWidth(1f);
+        paint.setStyle(Paint.Style.STROKE);
+
+        labelPaint = new Paint();
+        labelPaint.setColor(Color.GREEN);
+        labelPaint.setTextSize(36f);
+        labelPaint.setAntiAlias(true);
+    }
+
+    /**
+     * Shows the whole recording. Call once, before the view is attached; the view closes the
+     * recording once it is detached.
+     */
+    public void setRecording(EcgRecording recording) {
+        this.recording = recording;
+        pyramid = new MinMaxPyramid(recording);
+        setVisibleRange(0, Math.max(1, recording.getSampleCount()));
+    }
+
+    public void setVisibleRange(double startSample, double visibleSamples) {
+        if (recording == null) {
+            return;
+        }
+        long total = Math.max(1, recording.getSampleCount());
+        double minimum = (double) recording.getSampleRate() * MIN_VISIBLE_SECONDS;
+        this.visibleSamples = Math.max(Math.min(minimum, total), Math.min(visibleSamples, total));
+        this.startSample = Math.max(0, Math.min(startSample, total - this.visibleSamples));
+        requestLoad();
+    }
+
+    private void requestLoad() {
+        synchronized (lock) {
+            requestedFrom = (long) startSample;
+            requestedTo = (long) (startSample + visibleSamples);
+            requestedColumns = getWidth();
+        }
+        if (loader != null) {
+            // Only the latest range matters, drop a load that has not started yet
+            loader.removeCallbacks(loadTask);
+            loader.post(loadTask);
+        }
+    }
+
+    /** Runs on the loader thread. */
+    private void load() {
+        long from;
+        long to;
+        int columns;
+        synchronized (lock) {
+            from = requestedFrom;
+            to = requestedTo;
+            columns = requestedColumns;
+        }
+        if (columns == 0 || pyramid == null) {
+            return;
+        }
+        if (loadMin.length != columns) {
+            loadMin = new short[columns];
+            loadMax = new short[columns];
+        }
+        try {
+            pyramid.render(from, to, columns, loadMin, loadMax);
+        } catch (IOException e) {
+            Log.e(TAG, "load: Error reading recording", e);
+            return;
+        }
+        String label = timeFormat.format(new Date(recording.timeOfSample(from))) + " - "
+                + timeFormat.format(new Date(recording.timeOfSample(to)));
+
+        synchronized (lock) {
+            short[] min = drawMin;
+            short[] max = drawMax;
+            drawMin = loadMin;
+            drawMax = loadMax;
+            drawColumns = columns;
+            rangeLabel = label;
+            loadMin = min;
+            loadMax = max;
+        }
+        postInvalidateOnAnimation();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled |= gestureDetector.onTouchEvent(event);
+        return handled || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        requestLoad();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        loaderThread = new HandlerThread("ECGReviewLoader");
+        loaderThread.start();
+        loader = new Handler(loaderThread.getLooper());
+        requestLoad();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        loader.removeCallbacks(loadTask);
+        // The pyramid and recording are only read on the loader thread, close them there after the last load
+        if (pyramid != null) {
+            MinMaxPyramid detachedPyramid = pyramid;
+            EcgRecording detachedRecording = recording;
+            loader.post(() -> {
+                closePyramid(detachedPyramid);
+                detachedRecording.close();
+            });
+        }
+        loaderThread.quitSafely();
+        loader = null;
+        loaderThread = null;
+    }
+
+    private static void closePyramid(MinMaxPyramid pyramid) {
+        try {
+            pyramid.close();
+        } catch (IOException e) {
+            Log.w(TAG, "closePyramid: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (recording == null) {
+            return;
+        }
+
+        float centerY = getHeight() / 2f;
+        float scale = getHeight() * 0.4f / recording.getCountsPerMillivolt();
+        int p = 0;
+        synchronized (lock) {
+            if (linePoints.length < drawColumns * 4) {
+                linePoints = new float[drawColumns * 4];
+            }
+            for (int c = 0; c < drawColumns; c++) {
+                if (drawMax[c] == EcgRecording.GAP) {
+                    continue;
+                }
+                float top = centerY - drawMax[c] * scale;
+                linePoints[p++] = c + 0.5f;
+                linePoints[p++] = top;
+                linePoints[p++] = c + 0.5f;
+                // At least one pixel tall so flat stretches stay visible
+                linePoints[p++] = Math.max(centerY - drawMin[c] * scale, top + 1);
+            }
+            canvas.drawLines(linePoints, 0, p, paint);
+            canvas.drawText(rangeLabel, 16f, labelPaint.getTextSize() + 8f, labelPaint);
+        }
+    }
+}
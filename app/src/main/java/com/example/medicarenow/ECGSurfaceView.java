@@ -0,0 +1,325 @@
+package com.example.medicarenow;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+/**
+ * Multi-lead ECG monitor that renders on its own thread.
+ *
+ * Traces are drawn as a sweep: a cursor moves left to right, writing new samples over the
+ * previous pass with a short blank gap in front of it. Each vsync only the columns the cursor
+ * moved over (plus the gap) are locked and redrawn, so the cost per frame is proportional to
+ * the number of new samples, not to the screen width or the number of leads.
+ *
+ * Samples are pushed on the main thread and picked up by the render thread once per frame.
+ */
+public class ECGSurfaceView extends SurfaceView implements SurfaceHolder.Callback, ECGDisplay {
+    private static final String TAG = "ECGSurfaceView";
+    private static final int DEFAULT_SAMPLING_RATE_HZ = 200;
+    private static final int WINDOW_SECONDS = 5;
+    private static final float ERASE_GAP_SECONDS = 0.2f;
+    private static final float LABEL_TEXT_SIZE = 36f;
+
+    // Shared between the main thread and the render thread, guarded by lock
+    private final Object lock = new Object();
+    private int sampleRateHz = DEFAULT_SAMPLING_RATE_HZ;
+    private int leadCount = 1;
+    private float[][] pending = new float[1][DEFAULT_SAMPLING_RATE_HZ];
+    private int[] pendingCount = new int[1];
+    private boolean configChanged = true;
+    private String heartRateLabel = "";
+    private boolean labelChanged = false;
+
+    private HandlerThread renderThread;
+    private Renderer renderer;
+
+    public ECGSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public ECGSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        getHolder().addCallback(this);
+    }
+
+    @Override
+    public void setSampleRate(int sampleRateHz) {
+        synchronized (lock) {
+            this.sampleRateHz = sampleRateHz;
+            resizePending();
+        }
+    }
+
+    /** Number of traces stacked vertically. Clears the traces. */
+    public void setLeadCount(int leadCount) {
+        synchronized (lock) {
+            this.leadCount = leadCount;
+            resizePending();
+        }
+    }
+
+    @Override
+    public void setHeartRate(int bpm) {
+        synchronized (lock) {
+            heartRateLabel = bpm + " BPM";
+            labelChanged = true;
+        }
+    }
+
+    @Override
+    public void addSamples(float[] samples, int off, int len) {
+        addSamples(0, samples, off, len);
+    }
+
+    /**
+     * Appends samples of one lead. Up to one second of samples is kept per lead between two
+     * frames; if the render thread falls further behind the oldest ones are discarded.
+     */
+    public void addSamples(int lead, float[] samples, int off, int len) {
+        synchronized (lock) {
+            float[] buffer = pending[lead];
+            int count = pendingCount[lead];
+            if (len >= buffer.length) {
+                System.arraycopy(samples, off + len - buffer.length, buffer, 0, buffer.length);
+                count = buffer.length;
+            } else {
+                int overflow = count + len - buffer.length;
+                if (overflow > 0) {
+                    System.arraycopy(buffer, overflow, buffer, 0, count - overflow);
+                    count -= overflow;
+                }
+                System.arraycopy(samples, off, buffer, count, len);
+                count += len;
+            }
+            pendingCount[lead] = count;
+        }
+    }
+
+    private void resizePending() {
+        pending = new float[leadCount][sampleRateHz];
+        pendingCount = new int[leadCount];
+        configChanged = true;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        renderThread = new HandlerThread(TAG);
+        renderThread.start();
+        renderer = new Renderer(holder);
+        new Handler(renderThread.getLooper()).post(renderer::start);
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        Renderer current = renderer;
+        new Handler(renderThread.getLooper()).post(() -> current.resize(width, height));
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // The surface must not be touched once this returns, so wait for the render thread
+        Renderer current = renderer;
+        new Handler(renderThread.getLooper()).post(current::stop);
+        renderThread.quitSafely();
+        try {
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        renderThread = null;
+        renderer = null;
+    }
+
+    /** Owns all drawing state; every method runs on the render thread. */
+    private class Renderer implements Choreographer.FrameCallback {
+        private final SurfaceHolder holder;
+        private final Paint tracePaint = new Paint();
+        private final Paint labelPaint = new Paint();
+        private final Rect dirty = new Rect();
+
+        private boolean running = false;
+        private int width = 0;
+        private int height = 0;
+        private boolean fullRedraw = true;
+
+        // One sweep worth of samples per lead, indexed by column position
+        private float[][] sweep = new float[0][0];
+        private float[][] newSamples = new float[0][0];
+        private int[] newCount = new int[0];
+        private float[] linePoints = new float[0];
+        private int sweepLength = 1;
+        private int gapLength = 0;
+        private int cursor = 0;
+        private String label = "";
+
+        Renderer(SurfaceHolder holder) {
+            this.holder = holder;
+            tracePaint.setColor(Color.GREEN);
+            tracePaint.setStrokeWidth(4f);
+            tracePaint.setStyle(Paint.Style.STROKE);
+            tracePaint.setAntiAlias(true);
+            labelPaint.setColor(Color.GREEN);
+            labelPaint.setTextSize(LABEL_TEXT_SIZE);
+            labelPaint.setAntiAlias(true);
+        }
+
+        void start() {
+            running = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        void resize(int width, int height) {
+            this.width = width;
+            this.height = height;
+            fullRedraw = true;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running) {
+                return;
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+
+            int oldCursor = cursor;
+            boolean labelDirty = takePendingSamples();
+            int advanced = appendToSweep();
+            if (width == 0 || height == 0 || (advanced == 0 && !labelDirty && !fullRedraw)) {
+                return;
+            }
+
+            int firstColumn;
+            int lastColumn;
+            if (fullRedraw || oldCursor + advanced + gapLength >= sweepLength) {
+                // Wrapped around the right edge; simpler to redraw the whole width
+                dirty.set(0, 0, width, height);
+                firstColumn = 0;
+                lastColumn = sweepLength - 1;
+            } else {
+                firstColumn = Math.max(0, oldCursor - 1);
+                lastColumn = oldCursor + advanced + gapLength;
+                int stroke = (int) Math.ceil(tracePaint.getStrokeWidth());
+                dirty.set(Math.max(0, columnX(firstColumn) - stroke), 0,
+                        Math.min(width, columnX(lastColumn) + stroke + 1), height);
+            }
+            if (labelDirty) {
+                dirty.union(0, 0, (int) labelPaint.measureText(label) + 32, (int) (LABEL_TEXT_SIZE * 1.5f));
+            }
+
+            Canvas canvas = holder.lockCanvas(dirty);
+            if (canvas == null) {
+                return;
+            }
+            try {
+                // lockCanvas may grow the dirty rect; redraw every column it now covers
+                firstColumn = Math.min(firstColumn, Math.max(0, xToColumn(dirty.left) - 1));
+                lastColumn = Math.max(lastColumn, Math.min(sweepLength - 1, xToColumn(dirty.right) + 1));
+                canvas.drawColor(Color.BLACK);
+                drawColumns(canvas, firstColumn, lastColumn);
+                canvas.drawText(label, 16f, LABEL_TEXT_SIZE + 8f, labelPaint);
+                fullRedraw = false;
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+        }
+
+        /** Copies what the main thread queued since the last frame. Returns true if the label changed. */
+        private boolean takePendingSamples() {
+            synchronized (lock) {
+                if (configChanged) {
+                    configure(leadCount, sampleRateHz);
+                    configChanged = false;
+                }
+                for (int lead = 0; lead < pending.length; lead++) {
+                    System.arraycopy(pending[lead], 0, newSamples[lead], 0, pendingCount[lead]);
+                    newCount[lead] = pendingCount[lead];
+                    pendingCount[lead] = 0;
+                }
+                boolean changed = labelChanged;
+                label = heartRateLabel;
+                labelChanged = false;
+                return changed;
+            }
+        }
+
+        private void configure(int leads, int sampleRate) {
+            sweepLength = sampleRate * WINDOW_SECONDS;
+            gapLength = (int) (sampleRate * ERASE_GAP_SECONDS);
+            sweep = new float[leads][sweepLength];
+            newSamples = new float[leads][sampleRate];
+            newCount = new int[leads];
+            linePoints = new float[sweepLength * 4];
+            cursor = 0;
+            fullRedraw = true;
+        }
+
+        /** Writes new samples at the cursor and returns how many columns it moved. */
+        private int appendToSweep() {
+            int advanced = 0;
+            for (int lead = 0; lead < sweep.length; lead++) {
+                advanced = Math.max(advanced, newCount[lead]);
+            }
+            advanced = Math.min(advanced, sweepLength);
+            for (int lead = 0; lead < sweep.length; lead++) {
+                float[] trace = sweep[lead];
+                int count = Math.min(newCount[lead], advanced);
+                int start = advanced - count;
+                for (int i = 0; i < advanced; i++) {
+                    int column = (cursor + i) % sweepLength;
+                    // Leads that delivered fewer samples hold their last value
+                    float previous = trace[(column + sweepLength - 1) % sweepLength];
+                    trace[column] = i < start ? previous : newSamples[lead][i - start];
+                }
+            }
+            cursor = (cursor + advanced) % sweepLength;
+            return advanced;
+        }
+
+        private void drawColumns(Canvas canvas, int firstColumn, int lastColumn) {
+            float band = (float) height / sweep.length;
+            for (int lead = 0; lead < sweep.length; lead++) {
+                float[] trace = sweep[lead];
+                float centerY = band * (lead + 0.5f);
+                float scale = band * 0.4f;
+                int p = 0;
+                for (int column = Math.max(1, firstColumn); column <= lastColumn; column++) {
+                    if (inEraseGap(column) || inEraseGap(column - 1)) {
+                        continue;
+                    }
+                    linePoints[p++] = columnX(column - 1);
+                    linePoints[p++] = centerY - trace[column - 1] * scale;
+                    linePoints[p++] = columnX(column);
+                    linePoints[p++] = centerY - trace[column] * scale;
+                }
+                canvas.drawLines(linePoints, 0, p, tracePaint);
+            }
+        }
+
+        private boolean inEraseGap(int column) {
+            int distance = (column - cursor + sweepLength) % sweepLength;
+            return distance < gapLength;
+        }
+
+        private int columnX(int column) {
+            return (int) ((long) column * width / sweepLength);
+        }
+
+        private int xToColumn(int x) {
+            return (int) ((long) x * sweepLength / Math.max(1, width));
+        }
+    }
+}
@@ -4,22 +4,34 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.View;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
-public class ECGView extends View {
-    private static final int MAX_POINTS = 1000;
-    private static final int SAMPLING_RATE_HZ = 200;
+/**
+ * Scrolling ECG strip. Samples are pushed in at the device rate with {@link #addSamples} and
+ * the view redraws at most once per vsync, absorbing every sample that arrived since the
+ * previous frame. The visible window always covers {@link #WINDOW_SECONDS} of signal, so the
+ * sweep speed does not depend on the frame rate.
+ */
+public class ECGView extends View implements ECGDisplay {
+    private static final int DEFAULT_SAMPLING_RATE_HZ = 200;
+    private static final int WINDOW_SECONDS = 5;
 
     private Paint paint;
-    private Path path;
-    private Queue<Float> ecgData;
-    private int samplesPerBeat = (60 * SAMPLING_RATE_HZ) / 72; // Default 72 BPM
-    private int sampleCount = 0;
+    private Paint labelPaint;
+    // Circular buffer of the visible window, ecgData[writeIndex] is the oldest sample
+    private float[] ecgData;
+    private int writeIndex = 0;
+    // Line segments (x0, y0, x1, y1) handed to Canvas.drawLines, rebuilt in place every frame
+    private float[] linePoints;
+    private String heartRateLabel = "";
+
+    private boolean frameScheduled = false;
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> {
+        frameScheduled = false;
+        invalidate();
+    };
 
     public ECGView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -33,86 +45,88 @@ public class ECGView extends View {
         paint.setStyle(Paint.Style.STROKE);
         paint.setAntiAlias(true);
 
-        path = new Path();
-        ecgData = new LinkedList<>();
+        labelPaint = new Paint();
+        labelPaint.setColor(Color.GREEN);
+        labelPaint.setTextSize(36f);
+        labelPaint.setAntiAlias(true);
 
-        // Initialize with flat line
-        for (int i = 0; i < MAX_POINTS; i++) {
-            ecgData.add(0f);
-        }
+        setSampleRate(DEFAULT_SAMPLING_RATE_HZ);
     }
 
-    public void setHeartRate(int bpm) {
-        samplesPerBeat = (60 * SAMPLING_RATE_HZ) / bpm;
+    @Override
+    public void setSampleRate(int sampleRateHz) {
+        int points = sampleRateHz * WINDOW_SECONDS;
+        ecgData = new float[points];
+        linePoints = new float[(points - 1) * 4];
+        writeIndex = 0;
         invalidate();
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+    public void setHeartRate(int bpm) {
+        heartRateLabel = bpm + " BPM";
+        invalidate();
+    }
 
-        float width = getWidth();
-        float height = getHeight();
-        float centerY = height / 2;
-        float scale = height * 0.4f;
-        float pixelsPerPoint = width / MAX_POINTS;
-
-        // Generate new ECG point
-        float newPoint = generateECGPoint(sampleCount % samplesPerBeat);
-        sampleCount++;
-
-        // Update data queue
-        ecgData.poll();
-        ecgData.add(newPoint);
-
-        // Draw the path
-        path.reset();
-        int i = 0;
-        for (Float point : ecgData) {
-            float x = i * pixelsPerPoint;
-            float y = centerY - (point * scale);
-
-            if (i == 0) {
-                path.moveTo(x, y);
-            } else {
-                path.lineTo(x, y);
+    /** The trace is redrawn on the next vsync. */
+    @Override
+    public void addSamples(float[] samples, int off, int len) {
+        int points = ecgData.length;
+        for (int i = off; i < off + len; i++) {
+            ecgData[writeIndex] = samples[i];
+            if (++writeIndex == points) {
+                writeIndex = 0;
             }
-            i++;
         }
-
-        canvas.drawPath(path, paint);
-        postInvalidateDelayed(1000 / SAMPLING_RATE_HZ);
+        scheduleFrame();
     }
 
-    private float generateECGPoint(int sampleInBeat) {
-        float t = (float)sampleInBeat / samplesPerBeat;
-
-        // ECG waveform components
-        float pWave = 0, qrsComplex = 0, tWave = 0;
+    private void scheduleFrame() {
+        if (!frameScheduled && isAttachedToWindow()) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    }
 
-        // P Wave
-        if (t >= 0.1 && t <= 0.2) {
-            pWave = (float)(0.25 * Math.sin(Math.PI * (t - 0.1) / 0.1));
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            frameScheduled = false;
         }
+    }
 
-        // QRS Complex
-        if (t >= 0.25 && t <= 0.35) {
-            if (t <= 0.27) {
-                qrsComplex = -0.5f * (t - 0.25f)/0.02f;
-            }
-            else if (t <= 0.30) {
-                qrsComplex = 1.0f - 2.5f * (t - 0.27f);
-            }
-            else {
-                qrsComplex = -0.3f + 3.0f * (t - 0.30f)/0.05f;
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        int points = ecgData.length;
+        float width = getWidth();
+        float height = getHeight();
+        float centerY = height / 2;
+        float scale = height * 0.4f;
+        float pixelsPerPoint = width / points;
+
+        // Build the segments from the oldest to the newest sample
+        int index = writeIndex;
+        float prevY = centerY - (ecgData[index] * scale);
+        int p = 0;
+        for (int i = 1; i < points; i++) {
+            index++;
+            if (index == points) {
+                index = 0;
             }
-        }
+            float y = centerY - (ecgData[index] * scale);
 
-        // T Wave
-        if (t >= 0.4 && t <= 0.6) {
-            tWave = (float)(0.3 * Math.sin(Math.PI * (t - 0.4) / 0.2));
+            linePoints[p++] = (i - 1) * pixelsPerPoint;
+            linePoints[p++] = prevY;
+            linePoints[p++] = i * pixelsPerPoint;
+            linePoints[p++] = y;
+            prevY = y;
         }
 
-        return pWave + qrsComplex + tWave + 0.05f * (float)Math.sin(2 * Math.PI * t * 5);
+        canvas.drawLines(linePoints, 0, p, paint);
+        canvas.drawText(heartRateLabel, 16f, labelPaint.getTextSize() + 8f, labelPaint);
     }
-}
\ No newline at end of file
+}
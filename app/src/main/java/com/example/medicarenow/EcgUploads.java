@@ -0,0 +1,171 @@
+package com.example.medicarenow;
+
+import android.util.Log;
+
+import com.example.medicarenow.core.EcgRecording;
+import com.example.medicarenow.core.EcgUploader;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Uploads a patient's recordings, kept under files/recordings/&lt;patient id&gt;, to Firestore
+ * in the background.
+ *
+ * Recordings made while nobody was logged in go to their own directory and are never
+ * uploaded, nor are another patient's, so a shared phone cannot attribute one patient's ECG
+ * to another.
+ *
+ * Recordings whose upload was interrupted, by a crash or by losing the network, continue
+ * from their last acknowledged chunk. All reads, encoding and Firestore callbacks happen on
+ * one background thread.
+ */
+class EcgUploads {
+    private static final String TAG = "EcgUploads";
+    // Firestore ids are 20 characters, so no patient has this one
+    private static final String UNASSIGNED = "unassigned";
+
+    // Shared by all instances and never shut down, Firestore may still deliver callbacks to it
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+    private final String patientId;
+    private final FirestoreEcgSink sink;
+    // Only touched on EXECUTOR
+    private final List<Upload> uploads = new ArrayList<>();
+
+    private static class Upload {
+        final EcgRecording recording;
+        final EcgUploader uploader;
+        boolean live;
+
+        Upload(EcgRecording recording, EcgUploader uploader, boolean live) {
+            this.recording = recording;
+            this.uploader = uploader;
+            this.live = live;
+        }
+    }
+
+    EcgUploads(FirebaseFirestore db, String patientId) {
+        this.patientId = patientId;
+        sink = new FirestoreEcgSink(db, patientId, EXECUTOR);
+    }
+
+    /** The directory holding the recordings of {@code patientId}, or of nobody if it is empty. */
+    static File recordingsDir(File filesDir, String patientId) {
+        return new File(new File(filesDir, "recordings"), patientId.isEmpty() ? UNASSIGNED : patientId);
+    }
+
+    /** Picks up every finished recording of this patient that is not fully uploaded. */
+    void resumeAll(File filesDir) {
+        File recordingsDir = recordingsDir(filesDir, patientId);
+        EXECUTOR.execute(() -> {
+            File[] sessions = recordingsDir.listFiles(File::isDirectory);
+            if (sessions == null) {
+                return;
+            }
+            for (File session : sessions) {
+                if (find(session) == null) {
+                    open(session, false);
+                }
+            }
+            pumpAll();
+        });
+    }
+
+    /** Uploads a recording that is still being written, as its chunks fill up. */
+    void addLive(File directory) {
+        EXECUTOR.execute(() -> {
+            Upload upload = find(directory);
+            if (upload != null) {
+                upload.live = true;
+            } else {
+                open(directory, true);
+            }
+        });
+    }
+
+    /** Uploads the rest of a recording, including its last partial chunk, once it is closed. */
+    void finish(File directory) {
+        EXECUTOR.execute(() -> {
+            Upload upload = find(directory);
+            if (upload != null) {
+                upload.live = false;
+            }
+            pumpAll();
+        });
+    }
+
+    /** Writes whatever is pending and retries failed writes; call periodically. */
+    void pump() {
+        EXECUTOR.execute(this::pumpAll);
+    }
+
+    private void open(File directory, boolean live) {
+        EcgRecording recording;
+        try {
+            recording = EcgRecording.open(directory);
+        } catch (IOException e) {
+            Log.w(TAG, "open: Skipping " + directory + ": " + e.getMessage());
+            return;
+        }
+        try {
+            EcgUploader uploader = new EcgUploader(recording, sink);
+            if (!live && uploader.isComplete()) {
+                uploader.close();
+                recording.close();
+                return;
+            }
+            uploads.add(new Upload(recording, uploader, live));
+            Log.d(TAG, "open: Uploading " + recording.getSessionId() + " from chunk " + uploader.getCheckpoint());
+        } catch (IOException e) {
+            Log.e(TAG, "open: Cannot upload " + directory, e);
+            recording.close();
+        }
+    }
+
+    private void pumpAll() {
+        Iterator<Upload> iterator = uploads.iterator();
+        while (iterator.hasNext()) {
+            Upload upload = iterator.next();
+            try {
+                upload.uploader.pump(!upload.live);
+            } catch (IOException e) {
+                Log.e(TAG, "pumpAll: Error reading " + upload.recording.getSessionId(), e);
+            }
+            if (!upload.live && upload.uploader.isComplete()) {
+                Log.d(TAG, "pumpAll: Uploaded " + upload.recording.getSessionId());
+                upload.uploader.close();
+                upload.recording.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    private Upload find(File directory) {
+        for (Upload upload : uploads) {
+            if (upload.recording.getDirectory().equals(directory)) {
+                return upload;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops uploading. Writes already handed to Firestore still complete from its local
+     * cache; the rest is picked up by the next {@link #resumeAll}.
+     */
+    void shutdown() {
+        EXECUTOR.execute(() -> {
+            for (Upload upload : uploads) {
+                upload.uploader.close();
+                upload.recording.close();
+            }
+            uploads.clear();
+        });
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.medicarenow;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.medicarenow.core.EmailKeys;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One-off backfill of the {@code emails} index for users registered before it existed, so
+ * that they are found whatever the case of the address typed at login, and registering their
+ * address again fails on the index alone.
+ *
+ * The first device to finish marks {@code migrations/email_index} as done, later ones stop
+ * after reading that document. Of legacy users whose addresses differ only in case, the one
+ * with the lowest id keeps the address.
+ */
+public class EmailIndexMigrationWorker extends Worker {
+    private static final String TAG = "EmailIndexMigration";
+    // Each user may need a read and a write of its email in one transaction
+    private static final int BATCH_SIZE = 250;
+    private static final long TIMEOUT_SECONDS = 60;
+    // Own file, logging out clears the session preferences
+    private static final String PREFS = "email_index_migration";
+    private static final String KEY_DONE = "emails_indexed";
+
+    public EmailIndexMigrationWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the backfill. The worker checks whether it already completed, so callers on
+     * the main thread do not read preferences from disk.
+     */
+    static void scheduleOnce(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(EmailIndexMigrationWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork("email_index_migration",
+                ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        SharedPreferences prefs = getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(KEY_DONE, false)) {
+            return Result.success();
+        }
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        DocumentReference marker = db.collection("migrations").document("email_index");
+        try {
+            DocumentSnapshot status = Tasks.await(marker.get(Source.SERVER), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!Boolean.TRUE.equals(status.getBoolean("done"))) {
+                Log.d(TAG, "doWork: Indexed " + backfill(db) + " emails");
+                Map<String, Object> done = new HashMap<>();
+                done.put("done", true);
+                Tasks.await(marker.set(done), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "doWork: Migration interrupted, retrying later", e);
+            return Result.retry();
+        }
+
+        prefs.edit()
+                .putBoolean(KEY_DONE, true)
+                .apply();
+        return Result.success();
+    }
+
+    /**
+     * Adds an {@code emails} entry for every user that has none, page by page in id order.
+     * Blocks, call it off the main thread.
+     *
+     * @return the number of entries added
+     */
+    static int backfill(FirebaseFirestore db) throws Exception {
+        int indexed = 0;
+        DocumentSnapshot last = null;
+        while (true) {
+            Query query = db.collection("users").orderBy(FieldPath.documentId()).limit(BATCH_SIZE);
+            QuerySnapshot page = Tasks.await((last == null ? query : query.startAfter(last)).get(Source.SERVER),
+                    TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (page.isEmpty()) {
+                return indexed;
+            }
+            last = page.getDocuments().get(page.size() - 1);
+
+            // The first user of the page with an address keeps it
+            Map<String, String> owners = new LinkedHashMap<>();
+            for (DocumentSnapshot user : page.getDocuments()) {
+                String email = user.getString("email");
+                if (email != null && EmailKeys.isValid(email)) {
+                    owners.putIfAbsent(EmailKeys.documentId(email), user.getId());
+                }
+            }
+            // Read in parallel first, so the transaction only touches the missing entries
+            List<DocumentReference> refs = new ArrayList<>();
+            List<Task<DocumentSnapshot>> reads = new ArrayList<>();
+            for (String key : owners.keySet()) {
+                DocumentReference ref = db.collection("emails").document(key);
+                refs.add(ref);
+                reads.add(ref.get(Source.SERVER));
+            }
+            Tasks.await(Tasks.whenAll(reads), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            List<DocumentReference> missing = new ArrayList<>();
+            for (int i = 0; i < refs.size(); i++) {
+                if (!reads.get(i).getResult().exists()) {
+                    missing.add(refs.get(i));
+                }
+            }
+            if (missing.isEmpty()) {
+                continue;
+            }
+            // Registrations may have claimed some of them since, those keep their entry
+            indexed += Tasks.await(db.runTransaction(transaction -> {
+                List<DocumentReference> absent = new ArrayList<>();
+                for (DocumentReference ref : missing) {
+                    if (!transaction.get(ref).exists()) {
+                        absent.add(ref);
+                    }
+                }
+                for (DocumentReference ref : absent) {
+                    transaction.set(ref, DataRepository.emailEntry(owners.get(ref.getId())));
+                }
+                return absent.size();
+            }), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+}
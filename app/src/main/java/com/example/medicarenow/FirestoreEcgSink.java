@@ -0,0 +1,60 @@
+package com.example.medicarenow;
+
+import com.example.medicarenow.core.EcgChunk;
+import com.example.medicarenow.core.EcgUploader;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Stores uploaded ECG chunks in the {@code ecg_segmente} collection, one document per chunk.
+ *
+ * The document id is the patient, the session id and the chunk index, so writing a chunk
+ * again after an interrupted upload replaces the document instead of adding a duplicate, and
+ * sessions of different patients that started in the same second do not collide.
+ */
+class FirestoreEcgSink implements EcgUploader.ChunkSink {
+    static final String COLLECTION = "ecg_segmente";
+
+    private final FirebaseFirestore db;
+    private final String patientId;
+    private final Executor callbackExecutor;
+
+    /** Callbacks run on {@code callbackExecutor}, keep it off the main thread. */
+    FirestoreEcgSink(FirebaseFirestore db, String patientId, Executor callbackExecutor) {
+        this.db = db;
+        this.patientId = patientId;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    static String documentId(String patientId, String sessionId, long chunkIndex) {
+        return String.format(Locale.US, "%s_%s_%06d", patientId, sessionId, chunkIndex);
+    }
+
+    @Override
+    public void write(EcgChunk chunk, EcgUploader.Callback callback) {
+        Map<String, Object> segment = new HashMap<>();
+        segment.put("pacientID", patientId);
+        segment.put("sesiune", chunk.getSessionId());
+        segment.put("segment", chunk.getIndex());
+        segment.put("primulEsantion", chunk.getFirstSample());
+        segment.put("numarEsantioane", chunk.getSampleCount());
+        segment.put("timestamp", new Timestamp(new Date(chunk.getStartTimeMillis())));
+        segment.put("frecventa", chunk.getSampleRate());
+        segment.put("unitatiPerMv", chunk.getCountsPerMillivolt());
+        segment.put("esantioanePerBloc", chunk.getBlockSamples());
+        segment.put("date", Blob.fromBytes(chunk.getData()));
+
+        db.collection(COLLECTION)
+                .document(documentId(patientId, chunk.getSessionId(), chunk.getIndex()))
+                .set(segment)
+                .addOnSuccessListener(callbackExecutor, unused -> callback.onSuccess())
+                .addOnFailureListener(callbackExecutor, callback::onFailure);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.medicarenow;
+
+/** One reading of the patient's vitals. */
+class HealthData {
+    int pulse;
+    float temperature;
+    float humidity;
+    // When the reading was taken
+    long timeMillis;
+}
@@ -1,7 +1,7 @@
 package com.example.medicarenow;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.database.SQLException;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
@@ -10,18 +10,14 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.example.medicarenow.core.VitalThresholds;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 
 public class HealthDataActivity extends AppCompatActivity {
 
     private TextView pulseTextView, tempTextView, humidityTextView, statusTextView;
-    private FirebaseFirestore db;
+    private VitalsQueue vitalsQueue;
     private Button saveDataButton, recommendationsButton, ecgButton;
     private HealthData currentHealthData;
     private String currentUserId;
@@ -33,15 +29,12 @@ public class HealthDataActivity extends AppCompatActivity {
         Log.d(TAG, "onCreate: Starting HealthDataActivity");
         setContentView(R.layout.activity_health_data);
 
-        db = FirebaseFirestore.getInstance();
-        Log.d(TAG, "onCreate: Firestore instance initialized");
+        vitalsQueue = VitalsQueue.get(this);
 
         // Check user session
-        SharedPreferences prefs = getSharedPreferences("MediCareNow", MODE_PRIVATE);
-        currentUserId = prefs.getString("user_id", "");
-        String userEmail = prefs.getString("user_email", "");
+        currentUserId = SessionManager.get(this).getUserId();
 
-        Log.d(TAG, "onCreate: Current user ID: " + currentUserId + ", email: " + userEmail);
+        Log.d(TAG, "onCreate: Current user ID: " + currentUserId);
 
         if (currentUserId.isEmpty()) {
             Log.w(TAG, "onCreate: No user session found, redirecting to login");
@@ -51,6 +44,11 @@ public class HealthDataActivity extends AppCompatActivity {
             return;
         }
 
+        // Readings queued before the app was last closed
+        VitalsFlushWorker.schedule(this);
+        // Documents saved by older versions with text timestamps
+        TimestampMigrationWorker.scheduleOnce(this, currentUserId);
+
         // Initialize UI elements
         initializeUI();
 
@@ -79,7 +77,6 @@ public class HealthDataActivity extends AppCompatActivity {
             Log.d(TAG, "Save data button clicked");
             if (currentHealthData != null) {
                 saveToDatabase(currentHealthData);
-                Toast.makeText(this, "Data saved successfully", Toast.LENGTH_SHORT).show();
             } else {
                 Log.w(TAG, "No data to save");
                 Toast.makeText(this, "No data to save", Toast.LENGTH_SHORT).show();
@@ -109,6 +106,7 @@ public class HealthDataActivity extends AppCompatActivity {
         currentHealthData.pulse = 75;
         currentHealthData.temperature = 36.8f;
         currentHealthData.humidity = 45.2f;
+        currentHealthData.timeMillis = System.currentTimeMillis();
 
         updateUI(currentHealthData);
         checkThresholds(currentHealthData);
@@ -126,44 +124,15 @@ public class HealthDataActivity extends AppCompatActivity {
     }
 
     private void checkThresholds(HealthData data) {
-        // Threshold values for alerts
-        int MAX_PULSE = 100;
-        int MIN_PULSE = 60;
-        float MAX_TEMP = 37.5f;
-        float MIN_TEMP = 36.0f;
-        float MAX_HUMIDITY = 70.0f;
-        float MIN_HUMIDITY = 30.0f;
-
-        StringBuilder alertMessage = new StringBuilder();
-
-        if (data.pulse > MAX_PULSE) {
-            alertMessage.append("High pulse! ");
-            Log.w(TAG, "checkThresholds: High pulse detected: " + data.pulse);
-        } else if (data.pulse < MIN_PULSE) {
-            alertMessage.append("Low pulse! ");
-            Log.w(TAG, "checkThresholds: Low pulse detected: " + data.pulse);
-        }
-
-        if (data.temperature > MAX_TEMP) {
-            alertMessage.append("High temperature! ");
-            Log.w(TAG, "checkThresholds: High temperature detected: " + data.temperature);
-        } else if (data.temperature < MIN_TEMP) {
-            alertMessage.append("Low temperature! ");
-            Log.w(TAG, "checkThresholds: Low temperature detected: " + data.temperature);
-        }
-
-        if (data.humidity > MAX_HUMIDITY) {
-            alertMessage.append("High humidity! ");
-            Log.w(TAG, "checkThresholds: High humidity detected: " + data.humidity);
-        } else if (data.humidity < MIN_HUMIDITY) {
-            alertMessage.append("Low humidity! ");
-            Log.w(TAG, "checkThresholds: Low humidity detected: " + data.humidity);
-        }
-
-        if (alertMessage.length() > 0) {
-            Toast.makeText(this, alertMessage.toString(), Toast.LENGTH_LONG).show();
-            statusTextView.setText("ALERT: " + alertMessage.toString());
-            Log.i(TAG, "checkThresholds: Alert triggered: " + alertMessage.toString());
+        int alerts = VitalThresholds.check(data.pulse, data.temperature, data.humidity);
+
+        if (alerts != 0) {
+            String alertMessage = VitalThresholds.describe(alerts);
+            Log.w(TAG, "checkThresholds: Out of range values, pulse: " + data.pulse + ", temp: " + data.temperature
+                    + ", humidity: " + data.humidity);
+            Toast.makeText(this, alertMessage, Toast.LENGTH_LONG).show();
+            statusTextView.setText("ALERT: " + alertMessage);
+            Log.i(TAG, "checkThresholds: Alert triggered: " + alertMessage);
         } else {
             statusTextView.setText("Status: All values normal");
         }
@@ -175,60 +144,19 @@ public class HealthDataActivity extends AppCompatActivity {
             return;
         }
 
-        String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
-        Log.d(TAG, "saveToDatabase: Saving data for user: " + currentUserId + " at timestamp: " + timestamp);
-
-        // Save pulse data
-        Map<String, Object> pulseRecord = new HashMap<>();
-        pulseRecord.put("valoare", data.pulse);
-        pulseRecord.put("timestamp", timestamp);
-        pulseRecord.put("pacientID", currentUserId);
-
-        db.collection("puls")
-                .add(pulseRecord)
-                .addOnSuccessListener(documentReference -> {
-                    Log.d(TAG, "saveToDatabase: Pulse data saved with ID: " + documentReference.getId());
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "saveToDatabase: Error saving pulse data", e);
-                });
-
-        // Save humidity data
-        Map<String, Object> humidityRecord = new HashMap<>();
-        humidityRecord.put("valoare", data.humidity);
-        humidityRecord.put("timestamp", timestamp);
-        humidityRecord.put("pacientID", currentUserId);
-
-        db.collection("umiditate")
-                .add(humidityRecord)
-                .addOnSuccessListener(documentReference -> {
-                    Log.d(TAG, "saveToDatabase: Humidity data saved with ID: " + documentReference.getId());
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "saveToDatabase: Error saving humidity data", e);
-                });
-
-        // Save complete health data
-        Map<String, Object> healthRecord = new HashMap<>();
-        healthRecord.put("temperatura", data.temperature);
-        healthRecord.put("puls", data.pulse);
-        healthRecord.put("umiditate", data.humidity);
-        healthRecord.put("timestamp", timestamp);
-        healthRecord.put("pacientID", currentUserId);
-
-        db.collection("valori_normale")
-                .add(healthRecord)
-                .addOnSuccessListener(documentReference -> {
-                    Log.d(TAG, "saveToDatabase: Complete health data saved with ID: " + documentReference.getId());
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "saveToDatabase: Error saving complete health data", e);
-                });
-    }
-
-    private static class HealthData {
-        int pulse;
-        float temperature;
-        float humidity;
+        // Stored on the phone right away, VitalsFlushWorker writes it to Firestore once online
+        try {
+            if (!vitalsQueue.enqueue(currentUserId, data)) {
+                Log.d(TAG, "saveToDatabase: Reading already saved");
+                Toast.makeText(this, "This reading is already saved", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        } catch (SQLException e) {
+            Log.e(TAG, "saveToDatabase: Error saving health data", e);
+            Toast.makeText(this, "Error saving data", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        VitalsFlushWorker.schedule(this);
+        Toast.makeText(this, "Data saved successfully", Toast.LENGTH_SHORT).show();
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,6 @@
 package com.example.medicarenow;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
@@ -10,20 +9,20 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.medicarenow.core.EmailKeys;
+import com.google.android.gms.tasks.CancellationTokenSource;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
-
-import at.favre.lib.crypto.bcrypt.BCrypt;
+import com.google.firebase.firestore.DocumentSnapshot;
 
 public class LoginActivity extends AppCompatActivity {
 
     private EditText emailEditText, passwordEditText;
     private Button loginButton, registerButton;
-    private FirebaseFirestore db;
+    private DataRepository repository;
+    private CredentialService credentials;
+    // Cancelled with the activity, so a slow password check doesn't outlive it
+    private final CancellationTokenSource cancellation = new CancellationTokenSource();
     private static final String TAG = "LoginActivity";
 
     @Override
@@ -32,8 +31,8 @@ public class LoginActivity extends AppCompatActivity {
         Log.d(TAG, "onCreate: Starting LoginActivity");
         setContentView(R.layout.activity_login);
 
-        db = FirebaseFirestore.getInstance();
-        Log.d(TAG, "onCreate: Firestore instance initialized");
+        repository = DataRepository.get();
+        credentials = CredentialService.get(this);
 
         emailEditText = findViewById(R.id.emailEditText);
         passwordEditText = findViewById(R.id.passwordEditText);
@@ -52,11 +51,7 @@ public class LoginActivity extends AppCompatActivity {
         });
 
         // Check if user is already logged in
-        SharedPreferences prefs = getSharedPreferences("MediCareNow", MODE_PRIVATE);
-        String loggedInUser = prefs.getString("user_email", "");
-        Log.d(TAG, "onCreate: Checking existing session for user: " + loggedInUser);
-
-        if (!loggedInUser.isEmpty()) {
+        if (SessionManager.get(this).isLoggedIn()) {
             Log.d(TAG, "onCreate: User already logged in, redirecting to Dashboard");
             startActivity(new Intent(LoginActivity.this, DashboardActivity.class));
             finish();
@@ -65,6 +60,12 @@ public class LoginActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        cancellation.cancel();
+    }
+
     private void loginUser() {
         String email = emailEditText.getText().toString().trim();
         String password = passwordEditText.getText().toString().trim();
@@ -78,77 +79,86 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
 
-        Log.d(TAG, "loginUser: Starting Firestore query for email: " + email);
+        if (!EmailKeys.isValid(email)) {
+            Log.w(TAG, "loginUser: Invalid email: " + email);
+            Toast.makeText(this, "Invalid email", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-        // Query Firestore for user with matching email
-        db.collection("users")
-                .whereEqualTo("email", email)
-                .get()
-                .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
+        Log.d(TAG, "loginUser: Looking up user for email: " + email);
+
+        // One document read through the emails index instead of a query over all users
+        repository.findUserByEmail(email)
+                .addOnCompleteListener(new OnCompleteListener<DocumentSnapshot>() {
                     @Override
-                    public void onComplete(Task<QuerySnapshot> task) {
-                        Log.d(TAG, "loginUser: Firestore query completed");
+                    public void onComplete(Task<DocumentSnapshot> task) {
+                        Log.d(TAG, "loginUser: Firestore lookup completed");
 
                         if (task.isSuccessful()) {
-                            QuerySnapshot result = task.getResult();
-                            Log.d(TAG, "loginUser: Query successful, found " + result.size() + " documents");
+                            DocumentSnapshot document = task.getResult();
 
-                            if (result.isEmpty()) {
+                            if (document == null) {
                                 Log.w(TAG, "loginUser: No user found with email: " + email);
                                 Toast.makeText(LoginActivity.this, "User not found", Toast.LENGTH_SHORT).show();
                                 return;
                             }
 
-                            for (QueryDocumentSnapshot document : result) {
-                                Log.d(TAG, "loginUser: Processing document ID: " + document.getId());
-
-                                String storedPassword = document.getString("password");
-                                String firstName = document.getString("firstName");
-                                String lastName = document.getString("lastName");
-                                String role = document.getString("role");
-
-                                Log.d(TAG, "loginUser: Retrieved user data - firstName: " + firstName + ", lastName: "
-                                        + lastName + ", role: " + role);
-                                Log.d(TAG, "loginUser: Stored password hash length: "
-                                        + (storedPassword != null ? storedPassword.length() : "null"));
-
-                                // Verify password using BCrypt
-                                Log.d(TAG, "loginUser: Starting password verification");
-                                BCrypt.Result bcryptResult = BCrypt.verifyer().verify(password.toCharArray(),
-                                        storedPassword);
-                                Log.d(TAG, "loginUser: Password verification result: " + bcryptResult.verified);
-
-                                if (bcryptResult.verified) {
-                                    Log.i(TAG, "loginUser: Login successful for user: " + email);
-                                    Toast.makeText(LoginActivity.this, "Login successful", Toast.LENGTH_SHORT).show();
-
-                                    // Save user session
-                                    Log.d(TAG, "loginUser: Saving user session");
-                                    SharedPreferences prefs = getSharedPreferences("MediCareNow", MODE_PRIVATE);
-                                    SharedPreferences.Editor editor = prefs.edit();
-                                    editor.putString("user_email", email);
-                                    editor.putString("user_first_name", firstName);
-                                    editor.putString("user_last_name", lastName);
-                                    editor.putString("user_role", role);
-                                    editor.putString("user_id", document.getId());
-                                    editor.apply();
-                                    Log.d(TAG, "loginUser: User session saved successfully");
-
-                                    Log.d(TAG, "loginUser: Redirecting to Dashboard");
-                                    startActivity(new Intent(LoginActivity.this, DashboardActivity.class));
-                                    finish();
-                                } else {
-                                    Log.w(TAG, "loginUser: Password verification failed for user: " + email);
-                                    Toast.makeText(LoginActivity.this, "Invalid password", Toast.LENGTH_SHORT).show();
-                                }
-                                return; // Only process first matching user
-                            }
+                            Log.d(TAG, "loginUser: Processing document ID: " + document.getId());
+
+                            String storedPassword = document.getString("password");
+                            String firstName = document.getString("firstName");
+                            String lastName = document.getString("lastName");
+                            String role = document.getString("role");
+
+                            Log.d(TAG, "loginUser: Retrieved user data - firstName: " + firstName + ", lastName: "
+                                    + lastName + ", role: " + role);
+                            Log.d(TAG, "loginUser: Stored password hash length: "
+                                    + (storedPassword != null ? storedPassword.length() : "null"));
+
+                            // Verify password using BCrypt, off the main thread
+                            verifyPassword(document, email, password);
                         } else {
-                            Log.e(TAG, "loginUser: Firestore query failed", task.getException());
+                            Log.e(TAG, "loginUser: Firestore lookup failed", task.getException());
                             Toast.makeText(LoginActivity.this, "Login failed: " + task.getException().getMessage(),
                                     Toast.LENGTH_SHORT).show();
                         }
                     }
                 });
     }
+
+    private void verifyPassword(DocumentSnapshot document, String email, String password) {
+        Log.d(TAG, "verifyPassword: Starting password verification");
+        String storedPassword = document.getString("password");
+        credentials.verify(password.toCharArray(), storedPassword, cancellation.getToken())
+                .addOnCompleteListener(this, task -> {
+                    if (task.isCanceled()) {
+                        return;
+                    }
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "verifyPassword: Password verification failed", task.getException());
+                        Toast.makeText(LoginActivity.this, "Login failed, try again", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    Log.d(TAG, "verifyPassword: Password verification result: " + task.getResult());
+
+                    if (task.getResult()) {
+                        Log.i(TAG, "verifyPassword: Login successful for user: " + email);
+                        Toast.makeText(LoginActivity.this, "Login successful", Toast.LENGTH_SHORT).show();
+
+                        // Save user session
+                        Log.d(TAG, "verifyPassword: Saving user session");
+                        UserProfile user = UserProfile.from(document);
+                        SessionManager.get(this).login(user);
+                        repository.putUser(user);
+                        Log.d(TAG, "verifyPassword: User session saved successfully");
+
+                        Log.d(TAG, "verifyPassword: Redirecting to Dashboard");
+                        startActivity(new Intent(LoginActivity.this, DashboardActivity.class));
+                        finish();
+                    } else {
+                        Log.w(TAG, "verifyPassword: Password verification failed for user: " + email);
+                        Toast.makeText(LoginActivity.this, "Invalid password", Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.example.medicarenow;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+
+public class MediCareNowApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Debug builds log disk access on the main thread, e.g. reading preferences in onCreate
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+        // Loaded in the background while the first activity inflates its layout
+        SessionManager.get(this);
+        // Indexes accounts from before the emails index, so they log in whatever case is typed
+        EmailIndexMigrationWorker.scheduleOnce(this);
+    }
+}
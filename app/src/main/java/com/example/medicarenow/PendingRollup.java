@@ -0,0 +1,23 @@
+package com.example.medicarenow;
+
+import com.example.medicarenow.core.VitalRollup;
+
+/** A rollup stored in {@link VitalsQueue}, with the version that is or will be written to Firestore. */
+class PendingRollup {
+    // Also the Firestore document id
+    final String id;
+    final String patientId;
+    final String metric;
+    final VitalRollup rollup;
+    final long version;
+    final long pushedVersion;
+
+    PendingRollup(String id, String patientId, String metric, VitalRollup rollup, long version, long pushedVersion) {
+        this.id = id;
+        this.patientId = patientId;
+        this.metric = metric;
+        this.rollup = rollup;
+        this.version = version;
+        this.pushedVersion = pushedVersion;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.medicarenow;
+
+/** A reading waiting in {@link VitalsQueue} to be folded into its rollups. */
+class QueuedReading {
+    final long id;
+    final String patientId;
+    final HealthData data;
+
+    QueuedReading(long id, String patientId, HealthData data) {
+        this.id = id;
+        this.patientId = patientId;
+        this.data = data;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.medicarenow;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/** A doctor's recommendation for a patient, one document in {@code recomandari}. */
+class Recommendation {
+    final String id;
+    final String descriere;
+    final String tipRecomandare;
+    final String status;
+    final String medicID;
+    final Long progres;
+    final Timestamp dataCreare;
+    // dataCreare as stored, whatever its type, to continue a query after this recommendation
+    final Object dataCreareValue;
+
+    Recommendation(String id, String descriere, String tipRecomandare, String status, String medicID, Long progres,
+                   Object dataCreareValue) {
+        this.id = id;
+        this.descriere = descriere;
+        this.tipRecomandare = tipRecomandare;
+        this.status = status;
+        this.medicID = medicID;
+        this.progres = progres;
+        this.dataCreare = dataCreareValue instanceof Timestamp ? (Timestamp) dataCreareValue : null;
+        this.dataCreareValue = dataCreareValue;
+    }
+
+    static Recommendation from(DocumentSnapshot document) {
+        return new Recommendation(document.getId(), document.getString("descriere"),
+                document.getString("tipRecomandare"), document.getString("status"), document.getString("medicID"),
+                document.getLong("progres"), document.get("dataCreare"));
+    }
+
+    boolean isActive() {
+        return "active".equals(status);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.medicarenow;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A patient's recommendations, newest first, a page at a time.
+ *
+ * The newest page is listened to live, so new recommendations and edits from the doctor show
+ * up right away. Older pages are read once each, on request, continuing after the last
+ * recommendation shown. When new recommendations push some out of the live page, the
+ * recommendations between the live page and the older ones are read again so that none go
+ * missing. Call from the main thread; nothing is delivered after {@link #stop()}.
+ */
+class RecommendationFeed {
+    private static final String TAG = "RecommendationFeed";
+
+    interface Listener {
+        /**
+         * @param hasMore   whether {@link #loadMore()} can add older recommendations
+         * @param fromServer the server reported a change to the newest page, or its first state
+         */
+        void onChanged(List<Recommendation> recommendations, boolean hasMore, boolean fromServer);
+
+        void onError(Exception e);
+    }
+
+    private final DataRepository repository;
+    private final String patientId;
+    private final int pageSize;
+    private final Listener listener;
+    private List<Recommendation> live = Collections.emptyList();
+    private final List<Recommendation> older = new ArrayList<>();
+    private boolean olderExhausted = false;
+    private boolean loading = false;
+    private boolean stopped = false;
+    private ListenerRegistration registration;
+
+    RecommendationFeed(DataRepository repository, String patientId, int pageSize, Listener listener) {
+        this.repository = repository;
+        this.patientId = patientId;
+        this.pageSize = pageSize;
+        this.listener = listener;
+    }
+
+    void start() {
+        registration = repository.listenRecommendations(patientId, pageSize,
+                new DataRepository.Listener<List<Recommendation>>() {
+                    @Override
+                    public void onResult(List<Recommendation> recommendations, boolean fromCache) {
+                        live = recommendations;
+                        if (!fromCache && !older.isEmpty() && live.size() == pageSize) {
+                            fillGap();
+                        }
+                        publish(!fromCache);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        listener.onError(e);
+                    }
+                });
+    }
+
+    void stop() {
+        stopped = true;
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    /** Reads the next older page, unless one is being read or there are no more. */
+    void loadMore() {
+        if (loading || !hasMore()) {
+            return;
+        }
+        Recommendation last = older.isEmpty() ? live.get(live.size() - 1) : older.get(older.size() - 1);
+        loading = true;
+        repository.loadRecommendations(patientId, last, null, pageSize).addOnCompleteListener(task -> {
+            loading = false;
+            if (stopped) {
+                return;
+            }
+            if (!task.isSuccessful()) {
+                listener.onError(task.getException());
+                return;
+            }
+            List<Recommendation> page = task.getResult();
+            Log.d(TAG, "loadMore: " + page.size() + " recommendations after " + last.id);
+            older.addAll(page);
+            olderExhausted = page.size() < pageSize;
+            publish(false);
+        });
+    }
+
+    private boolean hasMore() {
+        // A live page that is not full already holds everything
+        return live.size() == pageSize && !olderExhausted;
+    }
+
+    /** Reads what lies between the end of the live page and the first older page. */
+    private void fillGap() {
+        fillGap(live.get(live.size() - 1), older.get(0), new ArrayList<>());
+    }
+
+    /** Reads the gap a page at a time after {@code after}, until a page ends before {@code olderFirst}. */
+    private void fillGap(Recommendation after, Recommendation olderFirst, List<Recommendation> gap) {
+        repository.loadRecommendations(patientId, after, olderFirst, pageSize).addOnCompleteListener(task -> {
+            if (stopped) {
+                return;
+            }
+            if (!task.isSuccessful()) {
+                listener.onError(task.getException());
+                return;
+            }
+            // The first older page may have changed while this was read
+            if (older.isEmpty() || older.get(0) != olderFirst) {
+                return;
+            }
+            List<Recommendation> page = task.getResult();
+            gap.addAll(page);
+            if (page.size() == pageSize) {
+                fillGap(page.get(page.size() - 1), olderFirst, gap);
+            } else if (!gap.isEmpty()) {
+                Log.d(TAG, "fillGap: " + gap.size() + " recommendations left the live page");
+                older.addAll(0, gap);
+                publish(false);
+            }
+        });
+    }
+
+    private void publish(boolean fromServer) {
+        List<Recommendation> all = new ArrayList<>(live.size() + older.size());
+        all.addAll(live);
+        Set<String> liveIds = new HashSet<>();
+        for (Recommendation recommendation : live) {
+            liveIds.add(recommendation.id);
+        }
+        // Deleting from the live page pulls the next older recommendation into it
+        for (Recommendation recommendation : older) {
+            if (!liveIds.contains(recommendation.id)) {
+                all.add(recommendation);
+            }
+        }
+        listener.onChanged(Collections.unmodifiableList(all), hasMore(), fromServer);
+    }
+}
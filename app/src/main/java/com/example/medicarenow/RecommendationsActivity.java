@@ -1,25 +1,48 @@
 package com.example.medicarenow;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
-
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import androidx.recyclerview.widget.ConcatAdapter;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class RecommendationsActivity extends AppCompatActivity {
 
-    private TextView recommendationsText;
-    private FirebaseFirestore db;
+    private static final int PAGE_SIZE = 25;
+    // Read the next page when this close to the end of the list
+    private static final int PREFETCH_DISTANCE = 5;
+    private static final String TITLE = "🏥 RECOMANDĂRILE TALE MEDICALE\n"
+            + "═══════════════════════════════════════";
+
+    private final RecommendationsAdapter.TextBlock header = new RecommendationsAdapter.TextBlock();
+    private final RecommendationsAdapter recommendationsAdapter = new RecommendationsAdapter();
+    private final RecommendationsAdapter.TextBlock footer = new RecommendationsAdapter.TextBlock();
+    // Text is built here, off the main thread
+    private final ExecutorService formatter = Executors.newSingleThreadExecutor();
+    // Only touched on formatter: the recommendations last formatted and their text
+    private Map<Recommendation, RecommendationsAdapter.Item> formatted = new IdentityHashMap<>();
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm", Locale.getDefault());
+    private DataRepository repository;
+    private RecommendationFeed feed;
+    // Latest from the feed and the server's counts, main thread only
+    private List<Recommendation> loaded;
+    private boolean hasMore = false;
+    private DataRepository.Counts counts;
+    // Something from Firestore or the cache is on screen
+    private boolean shown = false;
     private String currentUserId;
     private static final String TAG = "RecommendationsActivity";
 
@@ -29,15 +52,12 @@ public class RecommendationsActivity extends AppCompatActivity {
         Log.d(TAG, "onCreate: Starting RecommendationsActivity");
         setContentView(R.layout.activity_recommendations);
 
-        db = FirebaseFirestore.getInstance();
-        Log.d(TAG, "onCreate: Firestore instance initialized");
+        repository = DataRepository.get();
 
         // Check user session
-        SharedPreferences prefs = getSharedPreferences("MediCareNow", MODE_PRIVATE);
-        currentUserId = prefs.getString("user_id", "");
-        String userEmail = prefs.getString("user_email", "");
+        currentUserId = SessionManager.get(this).getUserId();
 
-        Log.d(TAG, "onCreate: Current user ID: " + currentUserId + ", email: " + userEmail);
+        Log.d(TAG, "onCreate: Current user ID: " + currentUserId);
 
         if (currentUserId.isEmpty()) {
             Log.w(TAG, "onCreate: No user session found, redirecting to login");
@@ -47,140 +67,201 @@ public class RecommendationsActivity extends AppCompatActivity {
             return;
         }
 
-        recommendationsText = findViewById(R.id.recommendationsText);
+        RecyclerView list = findViewById(R.id.recommendationsList);
+        list.setAdapter(new ConcatAdapter(header, recommendationsAdapter, footer));
+        list.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layout = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (feed != null && hasMore && dy > 0
+                        && layout.findLastVisibleItemPosition() >= layout.getItemCount() - PREFETCH_DISTANCE) {
+                    feed.loadMore();
+                }
+            }
+        });
+        header.setText("Se încarcă recomandările medicale...");
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (!currentUserId.isEmpty()) {
+            listenForRecommendations();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (feed != null) {
+            feed.stop();
+            feed = null;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        formatter.shutdownNow();
+    }
+
+    private void listenForRecommendations() {
+        Log.d(TAG, "listenForRecommendations: Listening for recommendations for user: " + currentUserId);
+
+        // The cached page shows at once, Firestore's local copy next, then every change the doctor makes
+        feed = new RecommendationFeed(repository, currentUserId, PAGE_SIZE, new RecommendationFeed.Listener() {
+            @Override
+            public void onChanged(List<Recommendation> recommendations, boolean more, boolean fromServer) {
+                Log.d(TAG, "listenForRecommendations: " + recommendations.size() + " recommendations"
+                        + (more ? ", more to load" : ""));
+                shown = true;
+                loaded = recommendations;
+                hasMore = more;
+                render();
+                if (fromServer) {
+                    refreshCounts();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "listenForRecommendations: Error getting recommendations", e);
+                if (!shown) {
+                    header.setText(localRecommendations());
+                }
+                Toast.makeText(RecommendationsActivity.this,
+                        "Eroare la încărcarea recomandărilor: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+        feed.start();
+    }
+
+    /** The summary counts every recommendation on the server, not only the pages read so far. */
+    private void refreshCounts() {
+        // Tied to the activity, so a count finishing after it stopped is dropped
+        repository.countRecommendations(currentUserId).addOnCompleteListener(this, task -> {
+            if (!task.isSuccessful()) {
+                // Offline, the summary waits until everything is loaded or the server answers
+                Log.w(TAG, "refreshCounts: Could not count recommendations", task.getException());
+                return;
+            }
+            counts = task.getResult();
+            render();
+        });
+    }
 
-        loadMedicalRecommendations();
+    private void render() {
+        // The formatter is shut down once destroyed
+        if (loaded == null || isDestroyed()) {
+            return;
+        }
+        List<Recommendation> recommendations = loaded;
+        boolean more = hasMore;
+        DataRepository.Counts total = counts;
+        formatter.execute(() -> format(recommendations, more, total));
     }
 
-    private void loadMedicalRecommendations() {
-        Log.d(TAG, "loadMedicalRecommendations: Loading recommendations for user: " + currentUserId);
-        recommendationsText.setText("Se încarcă recomandările medicale...");
-
-        // Query Firestore for recommendations assigned to current user
-        db.collection("recomandari")
-                .whereEqualTo("pacientID", currentUserId)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        Log.d(TAG, "loadMedicalRecommendations: Query successful, found " + task.getResult().size()
-                                + " recommendations");
-
-                        if (task.getResult().isEmpty()) {
-                            Log.w(TAG, "loadMedicalRecommendations: No recommendations found for user");
-                            showLocalRecommendations();
-                            return;
-                        }
-
-                        StringBuilder recommendationsContent = new StringBuilder();
-                        recommendationsContent.append("🏥 RECOMANDĂRILE TALE MEDICALE\n");
-                        recommendationsContent.append("═══════════════════════════════════════\n\n");
-
-                        int activeCount = 0;
-                        int completedCount = 0;
-
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            Log.d(TAG, "loadMedicalRecommendations: Processing recommendation: " + document.getId());
-
-                            String descriere = document.getString("descriere");
-                            String tipRecomandare = document.getString("tipRecomandare");
-                            String status = document.getString("status");
-                            String medicID = document.getString("medicID");
-                            Long progres = document.getLong("progres");
-                            Object dataCreare = document.get("dataCreare");
-
-                            if ("active".equals(status)) {
-                                activeCount++;
-                            } else {
-                                completedCount++;
-                            }
-
-                            // Format the recommendation display
-                            recommendationsContent.append("📋 RECOMANDAREA #").append(activeCount + completedCount)
-                                    .append("\n");
-                            recommendationsContent.append("───────────────────────────────────────\n");
-
-                            if (descriere != null) {
-                                recommendationsContent.append("💡 Descriere: ").append(descriere).append("\n");
-                            }
-
-                            if (tipRecomandare != null) {
-                                String tipFormatted = formatRecommendationType(tipRecomandare);
-                                recommendationsContent.append("🏷️  Tip: ").append(tipFormatted).append("\n");
-                            }
-
-                            if (status != null) {
-                                String statusIcon = "active".equals(status) ? "🟢" : "✅";
-                                String statusText = "active".equals(status) ? "ACTIVĂ" : "COMPLETATĂ";
-                                recommendationsContent.append(statusIcon).append(" Status: ").append(statusText)
-                                        .append("\n");
-                            }
-
-                            if (progres != null) {
-                                recommendationsContent.append("📊 Progres: ").append(progres).append("%\n");
-
-                                // Add progress bar
-                                int progressBars = (int) (progres / 10);
-                                StringBuilder progressBar = new StringBuilder("🔋 [");
-                                for (int i = 0; i < 10; i++) {
-                                    if (i < progressBars) {
-                                        progressBar.append("█");
-                                    } else {
-                                        progressBar.append("░");
-                                    }
-                                }
-                                progressBar.append("]\n");
-                                recommendationsContent.append(progressBar);
-                            }
-
-                            if (medicID != null) {
-                                recommendationsContent.append("👨‍⚕️ Medic ID: ").append(medicID).append("\n");
-                            }
-
-                            if (dataCreare != null) {
-                                try {
-                                    // Handle Firestore Timestamp
-                                    String dateString = dataCreare.toString();
-                                    recommendationsContent.append("📅 Data creării: ").append(dateString).append("\n");
-                                } catch (Exception e) {
-                                    Log.w(TAG, "Error formatting date: " + e.getMessage());
-                                }
-                            }
-
-                            recommendationsContent.append("\n");
-                        }
-
-                        // Add summary
-                        recommendationsContent.append("═══════════════════════════════════════\n");
-                        recommendationsContent.append("📈 SUMAR RECOMANDĂRI\n");
-                        recommendationsContent.append("═══════════════════════════════════════\n");
-                        recommendationsContent.append("🟢 Active: ").append(activeCount).append("\n");
-                        recommendationsContent.append("✅ Completate: ").append(completedCount).append("\n");
-                        recommendationsContent.append("📊 Total: ").append(activeCount + completedCount).append("\n\n");
-
-                        // Add general health tips
-                        recommendationsContent.append("💡 SFATURI GENERALE DE SĂNĂTATE\n");
-                        recommendationsContent.append("═══════════════════════════════════════\n");
-                        recommendationsContent.append("• Urmați cu atenție recomandările medicale\n");
-                        recommendationsContent.append("• Băți minim 2 litri de apă pe zi\n");
-                        recommendationsContent.append("• Dormiți 7-8 ore pe noapte\n");
-                        recommendationsContent.append("• Exerciții fizice regulate\n");
-                        recommendationsContent.append("• Evitați stresul\n");
-                        recommendationsContent.append("• Control medical periodic\n");
-
-                        recommendationsText.setText(recommendationsContent.toString());
-                        Log.d(TAG, "loadMedicalRecommendations: Recommendations displayed successfully");
-
-                    } else {
-                        Log.e(TAG, "loadMedicalRecommendations: Error getting recommendations", task.getException());
-                        showLocalRecommendations();
-                        Toast.makeText(RecommendationsActivity.this,
-                                "Eroare la încărcarea recomandărilor: " + task.getException().getMessage(),
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
+    /** Runs on {@link #formatter}; reuses the text of recommendations that did not change. */
+    private void format(List<Recommendation> recommendations, boolean more, DataRepository.Counts total) {
+        Map<Recommendation, RecommendationsAdapter.Item> next = new IdentityHashMap<>();
+        List<RecommendationsAdapter.Item> items = new ArrayList<>(recommendations.size());
+        int activeCount = 0;
+        for (Recommendation recommendation : recommendations) {
+            RecommendationsAdapter.Item item = formatted.get(recommendation);
+            if (item == null) {
+                item = new RecommendationsAdapter.Item(recommendation.id, formatRecommendation(recommendation));
+            }
+            next.put(recommendation, item);
+            items.add(item);
+            if (recommendation.isActive()) {
+                activeCount++;
+            }
+        }
+        formatted = next;
+
+        String title = items.isEmpty() ? localRecommendations() : TITLE;
+        String summary;
+        if (items.isEmpty()) {
+            summary = "";
+        } else if (total != null) {
+            summary = formatSummary(total.active, total.total - total.active);
+        } else if (!more) {
+            summary = formatSummary(activeCount, items.size() - activeCount);
+        } else {
+            summary = "";
+        }
+        runOnUiThread(() -> {
+            if (isDestroyed()) {
+                return;
+            }
+            header.setText(title);
+            recommendationsAdapter.submitList(items);
+            footer.setText(summary);
+        });
+    }
+
+    private String formatRecommendation(Recommendation recommendation) {
+        StringBuilder content = new StringBuilder();
+        content.append("📋 RECOMANDARE\n");
+        content.append("───────────────────────────────────────\n");
+
+        if (recommendation.descriere != null) {
+            content.append("💡 Descriere: ").append(recommendation.descriere).append("\n");
+        }
+
+        if (recommendation.tipRecomandare != null) {
+            String tipFormatted = formatRecommendationType(recommendation.tipRecomandare);
+            content.append("🏷️  Tip: ").append(tipFormatted).append("\n");
+        }
+
+        if (recommendation.status != null) {
+            String statusIcon = recommendation.isActive() ? "🟢" : "✅";
+            String statusText = recommendation.isActive() ? "ACTIVĂ" : "COMPLETATĂ";
+            content.append(statusIcon).append(" Status: ").append(statusText).append("\n");
+        }
+
+        Long progres = recommendation.progres;
+        if (progres != null) {
+            content.append("📊 Progres: ").append(progres).append("%\n");
+
+            // Add progress bar
+            int progressBars = (int) (progres / 10);
+            content.append("🔋 [");
+            for (int i = 0; i < 10; i++) {
+                content.append(i < progressBars ? "█" : "░");
+            }
+            content.append("]\n");
+        }
+
+        if (recommendation.medicID != null) {
+            content.append("👨‍⚕️ Medic ID: ").append(recommendation.medicID).append("\n");
+        }
+
+        if (recommendation.dataCreare != null) {
+            String dateString = dateFormat.format(recommendation.dataCreare.toDate());
+            content.append("📅 Data creării: ").append(dateString).append("\n");
+        }
+        return content.toString();
+    }
+
+    private static String formatSummary(long activeCount, long completedCount) {
+        return "═══════════════════════════════════════\n" +
+                "📈 SUMAR RECOMANDĂRI\n" +
+                "═══════════════════════════════════════\n" +
+                "🟢 Active: " + activeCount + "\n" +
+                "✅ Completate: " + completedCount + "\n" +
+                "📊 Total: " + (activeCount + completedCount) + "\n\n" +
+                "💡 SFATURI GENERALE DE SĂNĂTATE\n" +
+                "═══════════════════════════════════════\n" +
+                "• Urmați cu atenție recomandările medicale\n" +
+                "• Băți minim 2 litri de apă pe zi\n" +
+                "• Dormiți 7-8 ore pe noapte\n" +
+                "• Exerciții fizice regulate\n" +
+                "• Evitați stresul\n" +
+                "• Control medical periodic";
     }
 
-    private String formatRecommendationType(String tip) {
+    private static String formatRecommendationType(String tip) {
         switch (tip.toLowerCase()) {
             case "stil-viata":
                 return "Stil de viață";
@@ -197,9 +278,8 @@ public class RecommendationsActivity extends AppCompatActivity {
         }
     }
 
-    private void showLocalRecommendations() {
-        Log.d(TAG, "showLocalRecommendations: Showing default recommendations");
-        String localRecommendations = "🏥 RECOMANDĂRI MEDICALE GENERALE\n" +
+    private static String localRecommendations() {
+        return "🏥 RECOMANDĂRI MEDICALE GENERALE\n" +
                 "═══════════════════════════════════════\n\n" +
                 "📋 Nu s-au găsit recomandări personalizate.\n\n" +
                 "💡 SFATURI GENERALE DE SĂNĂTATE:\n" +
@@ -213,6 +293,5 @@ public class RecommendationsActivity extends AppCompatActivity {
                 "7. 👨‍⚕️ Control medical lunar\n\n" +
                 "═══════════════════════════════════════\n" +
                 "📞 Contactați medicul pentru recomandări personalizate.";
-        recommendationsText.setText(localRecommendations);
     }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.example.medicarenow;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Shows already formatted recommendations, one text block each. {@link #submitList} diffs
+ * the new list against the shown one on a background thread, so only recommendations that
+ * were added, removed or changed are rebound.
+ */
+class RecommendationsAdapter extends ListAdapter<RecommendationsAdapter.Item, RecommendationsAdapter.TextHolder> {
+
+    static final class Item {
+        final String id;
+        final String text;
+
+        Item(String id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Item> DIFF = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.id.equals(newItem.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.text.equals(newItem.text);
+        }
+    };
+
+    static final class TextHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        TextHolder(TextView text) {
+            super(text);
+            this.text = text;
+        }
+
+        static TextHolder create(ViewGroup parent) {
+            return new TextHolder((TextView) LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_recommendation_text, parent, false));
+        }
+    }
+
+    /** A single block of text around the list, hidden while empty. */
+    static final class TextBlock extends RecyclerView.Adapter<TextHolder> {
+        private String text = "";
+
+        void setText(String text) {
+            boolean wasShown = !this.text.isEmpty();
+            this.text = text;
+            if (wasShown && text.isEmpty()) {
+                notifyItemRemoved(0);
+            } else if (!wasShown && !text.isEmpty()) {
+                notifyItemInserted(0);
+            } else if (!text.isEmpty()) {
+                notifyItemChanged(0);
+            }
+        }
+
+        @NonNull
+        @Override
+        public TextHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return TextHolder.create(parent);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull TextHolder holder, int position) {
+            holder.text.setText(text);
+        }
+
+        @Override
+        public int getItemCount() {
+            return text.isEmpty() ? 0 : 1;
+        }
+    }
+
+    RecommendationsAdapter() {
+        super(DIFF);
+    }
+
+    @NonNull
+    @Override
+    public TextHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return TextHolder.create(parent);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull TextHolder holder, int position) {
+        holder.text.setText(getItem(position).text);
+    }
+}
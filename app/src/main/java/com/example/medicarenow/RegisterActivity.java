@@ -1,7 +1,6 @@
 package com.example.medicarenow;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
@@ -10,18 +9,20 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.example.medicarenow.core.EmailKeys;
+import com.google.android.gms.tasks.CancellationTokenSource;
 
 import java.util.HashMap;
 import java.util.Map;
 
-import at.favre.lib.crypto.bcrypt.BCrypt;
-
 public class RegisterActivity extends AppCompatActivity {
 
     private EditText nameEditText, emailEditText, passwordEditText;
     private Button registerButton;
-    private FirebaseFirestore db;
+    private DataRepository repository;
+    private CredentialService credentials;
+    // Cancelled with the activity, so a slow hash doesn't outlive it
+    private final CancellationTokenSource cancellation = new CancellationTokenSource();
     private static final String TAG = "RegisterActivity";
 
     @Override
@@ -30,8 +31,8 @@ public class RegisterActivity extends AppCompatActivity {
         Log.d(TAG, "onCreate: Starting RegisterActivity");
         setContentView(R.layout.activity_register);
 
-        db = FirebaseFirestore.getInstance();
-        Log.d(TAG, "onCreate: Firestore instance initialized");
+        repository = DataRepository.get();
+        credentials = CredentialService.get(this);
 
         nameEditText = findViewById(R.id.nameEditText);
         emailEditText = findViewById(R.id.emailEditText);
@@ -45,6 +46,12 @@ public class RegisterActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        cancellation.cancel();
+    }
+
     private void registerUser() {
         final String fullName = nameEditText.getText().toString().trim();
         final String email = emailEditText.getText().toString().trim();
@@ -60,6 +67,12 @@ public class RegisterActivity extends AppCompatActivity {
             return;
         }
 
+        if (!EmailKeys.isValid(email)) {
+            Log.w(TAG, "registerUser: Invalid email: " + email);
+            Toast.makeText(this, "Invalid email", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
         if (password.length() < 6) {
             Log.w(TAG, "registerUser: Password too short");
             Toast.makeText(this, "Password must be at least 6 characters", Toast.LENGTH_SHORT).show();
@@ -73,14 +86,12 @@ public class RegisterActivity extends AppCompatActivity {
 
         Log.d(TAG, "registerUser: Parsed name - firstName: " + firstName + ", lastName: " + lastName);
 
-        // Check if email already exists
+        // Check if email already exists, before spending time on hashing; registration claims it atomically
         Log.d(TAG, "registerUser: Checking if email already exists");
-        db.collection("users")
-                .whereEqualTo("email", email)
-                .get()
+        repository.findUserByEmail(email)
                 .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        if (!task.getResult().isEmpty()) {
+                    if (task.isSuccessful()) {
+                        if (task.getResult() != null) {
                             Log.w(TAG, "registerUser: Email already exists: " + email);
                             Toast.makeText(RegisterActivity.this, "Email already registered", Toast.LENGTH_SHORT)
                                     .show();
@@ -101,11 +112,23 @@ public class RegisterActivity extends AppCompatActivity {
     private void createNewUser(String firstName, String lastName, String email, String password) {
         Log.d(TAG, "createNewUser: Creating new user with email: " + email);
 
-        // Hash the password using BCrypt
+        // Hash the password using BCrypt, off the main thread
         Log.d(TAG, "createNewUser: Hashing password");
-        String hashedPassword = BCrypt.withDefaults().hashToString(12, password.toCharArray());
-        Log.d(TAG, "createNewUser: Password hashed successfully, length: " + hashedPassword.length());
+        credentials.hash(password.toCharArray(), cancellation.getToken()).addOnCompleteListener(this, task -> {
+            if (task.isCanceled()) {
+                return;
+            }
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "createNewUser: Error hashing password", task.getException());
+                Toast.makeText(RegisterActivity.this, "Registration failed, try again", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Log.d(TAG, "createNewUser: Password hashed successfully, length: " + task.getResult().length());
+            saveNewUser(firstName, lastName, email, task.getResult());
+        });
+    }
 
+    private void saveNewUser(String firstName, String lastName, String email, String hashedPassword) {
         // Create user data map
         Map<String, Object> user = new HashMap<>();
         user.put("firstName", firstName);
@@ -115,34 +138,33 @@ public class RegisterActivity extends AppCompatActivity {
         user.put("role", "USER"); // Default role
         user.put("createdAt", System.currentTimeMillis());
 
-        Log.d(TAG, "createNewUser: User data prepared, saving to Firestore");
+        Log.d(TAG, "saveNewUser: User data prepared, saving to Firestore");
 
-        // Save to Firestore
-        db.collection("users")
-                .add(user)
-                .addOnSuccessListener(documentReference -> {
-                    Log.i(TAG, "createNewUser: User created successfully with ID: " + documentReference.getId());
+        // Save to Firestore, failing if someone registered the email meanwhile
+        repository.registerUser(email, user)
+                .addOnSuccessListener(this, userId -> {
+                    Log.i(TAG, "saveNewUser: User created successfully with ID: " + userId);
                     Toast.makeText(RegisterActivity.this, "Registration successful", Toast.LENGTH_SHORT).show();
 
                     // Save user session
-                    Log.d(TAG, "createNewUser: Saving user session");
-                    SharedPreferences prefs = getSharedPreferences("MediCareNow", MODE_PRIVATE);
-                    SharedPreferences.Editor editor = prefs.edit();
-                    editor.putString("user_email", email);
-                    editor.putString("user_first_name", firstName);
-                    editor.putString("user_last_name", lastName);
-                    editor.putString("user_role", "USER");
-                    editor.putString("user_id", documentReference.getId());
-                    editor.apply();
-                    Log.d(TAG, "createNewUser: User session saved successfully");
+                    Log.d(TAG, "saveNewUser: Saving user session");
+                    UserProfile profile = new UserProfile(userId, email, firstName, lastName, "USER");
+                    SessionManager.get(this).login(profile);
+                    repository.putUser(profile);
+                    Log.d(TAG, "saveNewUser: User session saved successfully");
 
                     // Redirect to Dashboard
-                    Log.d(TAG, "createNewUser: Redirecting to Dashboard");
+                    Log.d(TAG, "saveNewUser: Redirecting to Dashboard");
                     startActivity(new Intent(RegisterActivity.this, DashboardActivity.class));
                     finish();
                 })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "createNewUser: Error creating user", e);
+                .addOnFailureListener(this, e -> {
+                    if (DataRepository.isEmailTaken(e)) {
+                        Log.w(TAG, "saveNewUser: Email registered meanwhile: " + email);
+                        Toast.makeText(RegisterActivity.this, "Email already registered", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    Log.e(TAG, "saveNewUser: Error creating user", e);
                     Toast.makeText(RegisterActivity.this, "Registration failed: " + e.getMessage(), Toast.LENGTH_SHORT)
                             .show();
                 });
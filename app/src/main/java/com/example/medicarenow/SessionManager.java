@@ -0,0 +1,117 @@
+package com.example.medicarenow;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The logged-in user, held in memory for the whole process.
+ *
+ * The session is read from SharedPreferences once, on a background thread started by
+ * {@link MediCareNowApp}, so activities check it without touching the disk on the main
+ * thread. Logging in or out updates memory at once and writes all keys in one commit on the
+ * same background thread, in order.
+ */
+final class SessionManager {
+    private static final String PREFS = "MediCareNow";
+    private static final String KEY_ID = "user_id";
+    private static final String KEY_EMAIL = "user_email";
+    private static final String KEY_FIRST_NAME = "user_first_name";
+    private static final String KEY_LAST_NAME = "user_last_name";
+    private static final String KEY_ROLE = "user_role";
+
+    private static SessionManager instance;
+
+    private final Context context;
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    // Null while logged out
+    private volatile UserProfile user;
+    // Only touched on io
+    private SharedPreferences prefs;
+
+    private SessionManager(Context context) {
+        this.context = context;
+    }
+
+    /** The first call starts loading the session, see {@link MediCareNowApp#onCreate()}. */
+    static synchronized SessionManager get(Context context) {
+        if (instance == null) {
+            instance = new SessionManager(context.getApplicationContext());
+            instance.io.execute(instance::load);
+        }
+        return instance;
+    }
+
+    private void load() {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        String id = prefs.getString(KEY_ID, "");
+        if (!id.isEmpty()) {
+            user = new UserProfile(id, prefs.getString(KEY_EMAIL, ""), prefs.getString(KEY_FIRST_NAME, ""),
+                    prefs.getString(KEY_LAST_NAME, ""), prefs.getString(KEY_ROLE, ""));
+        }
+        loaded.countDown();
+    }
+
+    /**
+     * The logged-in user, or null. Only blocks if called before the session has loaded,
+     * which takes a few milliseconds after the process starts.
+     */
+    UserProfile getUser() {
+        awaitLoaded();
+        return user;
+    }
+
+    boolean isLoggedIn() {
+        return getUser() != null;
+    }
+
+    /** The user's id, empty when logged out. */
+    String getUserId() {
+        UserProfile current = getUser();
+        return current != null ? current.id : "";
+    }
+
+    /** Remembers {@code profile}, with missing fields as empty strings, as they read back from disk. */
+    void login(UserProfile profile) {
+        UserProfile stored = new UserProfile(profile.id, nonNull(profile.email), nonNull(profile.firstName),
+                nonNull(profile.lastName), nonNull(profile.role));
+        awaitLoaded();
+        user = stored;
+        io.execute(() -> prefs.edit()
+                .putString(KEY_ID, stored.id)
+                .putString(KEY_EMAIL, stored.email)
+                .putString(KEY_FIRST_NAME, stored.firstName)
+                .putString(KEY_LAST_NAME, stored.lastName)
+                .putString(KEY_ROLE, stored.role)
+                .commit());
+    }
+
+    /** Forgets the user and everything else stored in the session preferences. */
+    void logout() {
+        awaitLoaded();
+        user = null;
+        io.execute(() -> prefs.edit().clear().commit());
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    private void awaitLoaded() {
+        boolean interrupted = false;
+        while (loaded.getCount() > 0) {
+            try {
+                loaded.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.medicarenow;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.medicarenow.core.LegacyTimestamps;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One-off conversion of a patient's documents whose {@code timestamp} is still a
+ * "yyyy-MM-dd HH:mm:ss" string, as older versions wrote them, to a Firestore
+ * {@link Timestamp} that range queries and ordering work on.
+ *
+ * The original text is kept in {@code timestampText}. The strings have no time zone, the
+ * phone's current one is assumed. Strings that cannot be parsed lose their {@code timestamp}
+ * so they no longer show up as unmigrated.
+ */
+public class TimestampMigrationWorker extends Worker {
+    private static final String TAG = "TimestampMigration";
+    private static final String KEY_PATIENT_ID = "patient_id";
+    private static final String[] COLLECTIONS = {"puls", "umiditate", "valori_normale", FirestoreEcgSink.COLLECTION};
+    private static final int BATCH_SIZE = 500;
+    private static final long TIMEOUT_SECONDS = 60;
+    // Own file, logging out clears the session preferences
+    private static final String PREFS = "timestamp_migration";
+
+    public TimestampMigrationWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    private static String doneKey(String patientId) {
+        return "timestamps_migrated_" + patientId;
+    }
+
+    /**
+     * Schedules the migration for {@code patientId}. The worker checks whether it already
+     * completed, so callers on the main thread do not read preferences from disk.
+     */
+    static void scheduleOnce(Context context, String patientId) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(TimestampMigrationWorker.class)
+                .setInputData(new Data.Builder().putString(KEY_PATIENT_ID, patientId).build())
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork("timestamp_migration_" + patientId,
+                ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String patientId = getInputData().getString(KEY_PATIENT_ID);
+        if (patientId == null) {
+            return Result.failure();
+        }
+        SharedPreferences prefs = getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(doneKey(patientId), false)) {
+            return Result.success();
+        }
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        TimeZone zone = TimeZone.getDefault();
+        try {
+            for (String collection : COLLECTIONS) {
+                int migrated = 0;
+                while (true) {
+                    // Strings sort after every Timestamp, so this range only matches unmigrated documents
+                    QuerySnapshot page = Tasks.await(db.collection(collection)
+                            .whereEqualTo("pacientID", patientId)
+                            .whereGreaterThanOrEqualTo("timestamp", "")
+                            .limit(BATCH_SIZE)
+                            .get(Source.SERVER), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                    WriteBatch batch = db.batch();
+                    for (DocumentSnapshot document : page.getDocuments()) {
+                        String text = document.getString("timestamp");
+                        long millis = LegacyTimestamps.parseMillis(text, zone);
+                        Map<String, Object> update = new HashMap<>();
+                        update.put("timestampText", text);
+                        update.put("timestamp", millis >= 0 ? new Timestamp(new Date(millis)) : FieldValue.delete());
+                        batch.update(document.getReference(), update);
+                    }
+                    Tasks.await(batch.commit(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    migrated += page.size();
+                }
+                Log.d(TAG, "doWork: Migrated " + migrated + " documents in " + collection);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "doWork: Migration interrupted, retrying later", e);
+            return Result.retry();
+        }
+
+        prefs.edit()
+                .putBoolean(doneKey(patientId), true)
+                .apply();
+        return Result.success();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.medicarenow;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/** A user's document in {@code users}, without the password hash. */
+class UserProfile {
+    final String id;
+    final String email;
+    final String firstName;
+    final String lastName;
+    final String role;
+
+    UserProfile(String id, String email, String firstName, String lastName, String role) {
+        this.id = id;
+        this.email = email;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.role = role;
+    }
+
+    static UserProfile from(DocumentSnapshot document) {
+        return new UserProfile(document.getId(), document.getString("email"), document.getString("firstName"),
+                document.getString("lastName"), document.getString("role"));
+    }
+}
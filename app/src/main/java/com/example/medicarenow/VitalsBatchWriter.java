@@ -0,0 +1,75 @@
+package com.example.medicarenow;
+
+import com.example.medicarenow.core.VitalRollup;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes vitals to Firestore as per minute and per hour rollup documents in
+ * {@code agregari_vitale}, instead of one document per reading.
+ *
+ * Each document holds the count, min, max, mean and last value of one vital sign of one
+ * patient over its bucket; minute buckets also hold the raw readings as a blob, see
+ * {@link VitalRollup#samplesToBytes()}. A day of readings is 1440 + 24 documents per vital
+ * sign however often it is measured. The documents are rewritten whole as their buckets
+ * fill up, all rollups of a flush in one atomic {@link WriteBatch}. The bucket start is stored
+ * as the {@code timestamp}, see {@link VitalsHistoryRepository} for reading them back.
+ */
+class VitalsBatchWriter {
+    static final String COLLECTION = "agregari_vitale";
+    static final int MAX_WRITES_PER_BATCH = 500;
+
+    private final FirebaseFirestore db;
+
+    VitalsBatchWriter(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    static String documentId(String patientId, String metric, long resolutionMillis, long startMillis) {
+        return String.format(Locale.US, "%s_%s_%s_%d", patientId, metric, resolution(resolutionMillis), startMillis);
+    }
+
+    static String resolution(long resolutionMillis) {
+        return resolutionMillis == VitalRollup.HOUR_MILLIS ? "ora" : "minut";
+    }
+
+    /**
+     * Commits up to {@link #MAX_WRITES_PER_BATCH} rollups in one batch, replacing their
+     * documents; the task completes once Firestore has stored all of them.
+     */
+    Task<Void> saveRollups(List<PendingRollup> rollups) {
+        if (rollups.size() > MAX_WRITES_PER_BATCH) {
+            throw new IllegalArgumentException("Too many rollups for one batch: " + rollups.size());
+        }
+        WriteBatch batch = db.batch();
+        for (PendingRollup pending : rollups) {
+            VitalRollup rollup = pending.rollup;
+            Map<String, Object> record = new HashMap<>();
+            record.put("pacientID", pending.patientId);
+            record.put("metrica", pending.metric);
+            record.put("rezolutie", resolution(rollup.getDurationMillis()));
+            record.put("timestamp", new Timestamp(new Date(rollup.getStartMillis())));
+            record.put("durata", rollup.getDurationMillis());
+            record.put("numar", rollup.getCount());
+            record.put("min", rollup.getMin());
+            record.put("max", rollup.getMax());
+            record.put("medie", rollup.getMean());
+            record.put("ultim", rollup.getLast());
+            record.put("ultimMillis", rollup.getLastTimeMillis());
+            if (rollup.keepsSamples()) {
+                record.put("esantioane", Blob.fromBytes(rollup.samplesToBytes()));
+            }
+            batch.set(db.collection(COLLECTION).document(pending.id), record);
+        }
+        return batch.commit();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.medicarenow;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.medicarenow.core.QueueDrainer;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/** Folds the readings in {@link VitalsQueue} into rollups and writes those to Firestore once online. */
+public class VitalsFlushWorker extends Worker {
+    private static final String TAG = "VitalsFlushWorker";
+    private static final String WORK_NAME = "vitals_flush";
+    // Firestore only acknowledges a commit once the server has it, give up and retry later
+    private static final long COMMIT_TIMEOUT_SECONDS = 30;
+    private static final int FOLD_BATCH = 200;
+    private static final long KEEP_WRITTEN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    public VitalsFlushWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Makes sure a flush is scheduled. A flush already pending or running is kept, it folds
+     * and writes again until nothing is left, including readings saved while it ran.
+     */
+    static void schedule(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(VitalsFlushWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 10, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        VitalsQueue queue = VitalsQueue.get(getApplicationContext());
+        VitalsBatchWriter writer = new VitalsBatchWriter(FirebaseFirestore.getInstance());
+        long start = SystemClock.elapsedRealtime();
+        try {
+            long folded = 0;
+            long written = 0;
+            do {
+                // Small transactions, saves on the main thread wait for the queue while one runs
+                int n;
+                while ((n = queue.fold(FOLD_BATCH)) > 0) {
+                    folded += n;
+                }
+                written += QueueDrainer.drain(queue,
+                        rollups -> Tasks.await(writer.saveRollups(rollups), COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                        VitalsBatchWriter.MAX_WRITES_PER_BATCH);
+                // Saves during the drain scheduled nothing, this flush was still running
+            } while (queue.size() > 0);
+            queue.pruneWritten(System.currentTimeMillis() - KEEP_WRITTEN_MILLIS);
+            long millis = Math.max(1, SystemClock.elapsedRealtime() - start);
+            Log.d(TAG, String.format(Locale.US, "doWork: Folded %d readings into %d rollup writes in %d ms",
+                    folded, written, millis));
+            return Result.success();
+        } catch (Exception e) {
+            // The failed rollups stay marked as changed and are written again
+            Log.w(TAG, "doWork: Flush interrupted, " + queue.size() + " readings left", e);
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.medicarenow;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reads a patient's vitals for any time window, a page at a time.
+ *
+ * Queries filter on {@code pacientID} and a range of the numeric {@code timestamp} and are
+ * ordered by it, served by the composite indexes in firestore.indexes.json. Each page
+ * continues after the last document of the previous one, so paging through a long window
+ * reads every document once, however deep it goes.
+ */
+class VitalsHistoryRepository {
+
+    /** One rollup document of {@code agregari_vitale}. */
+    static final class Bucket {
+        final long startMillis;
+        final long count;
+        final double min;
+        final double max;
+        final double mean;
+        final double last;
+        // Raw readings, minute buckets only, see VitalRollup.decodeSamples
+        final byte[] samples;
+
+        Bucket(long startMillis, long count, double min, double max, double mean, double last, byte[] samples) {
+            this.startMillis = startMillis;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.last = last;
+            this.samples = samples;
+        }
+    }
+
+    static final class Page<T> {
+        final List<T> items;
+        // Reached the end of the window
+        final boolean last;
+        private final Query query;
+        private final DocumentSnapshot cursor;
+        private final int pageSize;
+        private final Function<DocumentSnapshot, T> mapper;
+
+        private Page(List<T> items, boolean last, Query query, DocumentSnapshot cursor, int pageSize,
+                     Function<DocumentSnapshot, T> mapper) {
+            this.items = items;
+            this.last = last;
+            this.query = query;
+            this.cursor = cursor;
+            this.pageSize = pageSize;
+            this.mapper = mapper;
+        }
+    }
+
+    private final FirebaseFirestore db;
+
+    VitalsHistoryRepository(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    /**
+     * First page of the rollups of one vital sign in {@code [fromMillis, toMillis)}, oldest
+     * first.
+     *
+     * @param metric           e.g. {@link VitalsQueue#METRIC_PULSE}
+     * @param resolutionMillis {@code VitalRollup.MINUTE_MILLIS} or {@code VitalRollup.HOUR_MILLIS}
+     */
+    Task<Page<Bucket>> loadBuckets(String patientId, String metric, long resolutionMillis, long fromMillis,
+                                   long toMillis, int pageSize) {
+        Query query = window(VitalsBatchWriter.COLLECTION, patientId, fromMillis, toMillis)
+                .whereEqualTo("metrica", metric)
+                .whereEqualTo("rezolutie", VitalsBatchWriter.resolution(resolutionMillis));
+        return load(query.orderBy("timestamp"), null, pageSize, VitalsHistoryRepository::toBucket);
+    }
+
+    /**
+     * First page of the per reading documents in {@code valori_normale}, written before
+     * rollups replaced them, in {@code [fromMillis, toMillis)}, oldest first.
+     */
+    Task<Page<HealthData>> loadReadings(String patientId, long fromMillis, long toMillis, int pageSize) {
+        Query query = window("valori_normale", patientId, fromMillis, toMillis).orderBy("timestamp");
+        return load(query, null, pageSize, VitalsHistoryRepository::toReading);
+    }
+
+    /** The page after {@code page}, which must not be the last one. */
+    <T> Task<Page<T>> loadNext(Page<T> page) {
+        if (page.last) {
+            throw new IllegalStateException("No page after the last one");
+        }
+        return load(page.query, page.cursor, page.pageSize, page.mapper);
+    }
+
+    private Query window(String collection, String patientId, long fromMillis, long toMillis) {
+        return db.collection(collection)
+                .whereEqualTo("pacientID", patientId)
+                .whereGreaterThanOrEqualTo("timestamp", new Timestamp(new Date(fromMillis)))
+                .whereLessThan("timestamp", new Timestamp(new Date(toMillis)));
+    }
+
+    private static <T> Task<Page<T>> load(Query query, DocumentSnapshot cursor, int pageSize,
+                                          Function<DocumentSnapshot, T> mapper) {
+        Query page = cursor == null ? query : query.startAfter(cursor);
+        return page.limit(pageSize).get().continueWith(task -> {
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            List<T> items = new ArrayList<>(documents.size());
+            for (DocumentSnapshot document : documents) {
+                items.add(mapper.apply(document));
+            }
+            DocumentSnapshot next = documents.isEmpty() ? cursor : documents.get(documents.size() - 1);
+            // A full page may be followed by an empty one, which is then the last
+            return new Page<>(Collections.unmodifiableList(items), documents.size() < pageSize, query, next,
+                    pageSize, mapper);
+        });
+    }
+
+    private static Bucket toBucket(DocumentSnapshot document) {
+        Blob samples = document.getBlob("esantioane");
+        return new Bucket(millis(document), number(document, "numar"), decimal(document, "min"),
+                decimal(document, "max"), decimal(document, "medie"), decimal(document, "ultim"),
+                samples == null ? null : samples.toBytes());
+    }
+
+    private static HealthData toReading(DocumentSnapshot document) {
+        HealthData data = new HealthData();
+        data.pulse = (int) number(document, "puls");
+        data.temperature = (float) decimal(document, "temperatura");
+        data.humidity = (float) decimal(document, "umiditate");
+        data.timeMillis = millis(document);
+        return data;
+    }
+
+    private static long millis(DocumentSnapshot document) {
+        Timestamp timestamp = document.getTimestamp("timestamp");
+        return timestamp == null ? 0 : timestamp.toDate().getTime();
+    }
+
+    private static long number(DocumentSnapshot document, String field) {
+        Long value = document.getLong(field);
+        return value == null ? 0 : value;
+    }
+
+    private static double decimal(DocumentSnapshot document, String field) {
+        Double value = document.getDouble(field);
+        return value == null ? Double.NaN : value;
+    }
+}
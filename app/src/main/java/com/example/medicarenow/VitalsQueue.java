@@ -0,0 +1,305 @@
+package com.example.medicarenow;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.medicarenow.core.QueueDrainer;
+import com.example.medicarenow.core.VitalRollup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Readings saved on the phone and the per minute and per hour {@link VitalRollup}s they are
+ * folded into, until {@link VitalsFlushWorker} has written those to Firestore.
+ *
+ * Queueing is a single insert into a write-ahead logged database, so it takes microseconds,
+ * and a reading survives the process being killed as soon as {@link #enqueue} returns.
+ * {@link #fold} later adds a batch of readings to their buckets and removes them in one
+ * transaction. The keys of folded readings are kept as long as their buckets are, so a
+ * reading queued again after it was folded is ignored too and each reading is counted once.
+ * Buckets changed since they were last written are drained like a queue; writing one again
+ * just replaces its document.
+ */
+class VitalsQueue extends SQLiteOpenHelper implements QueueDrainer.Queue<PendingRollup> {
+    private static final String DATABASE = "vitals_queue.db";
+    private static final int VERSION = 3;
+
+    static final String METRIC_PULSE = "puls";
+    static final String METRIC_TEMPERATURE = "temperatura";
+    static final String METRIC_HUMIDITY = "umiditate";
+    private static final long[] RESOLUTIONS = {VitalRollup.MINUTE_MILLIS, VitalRollup.HOUR_MILLIS};
+
+    private static VitalsQueue instance;
+
+    private SQLiteStatement insert;
+    private SQLiteStatement isFolded;
+    private SQLiteStatement markFolded;
+
+    private VitalsQueue(Context context) {
+        super(context, DATABASE, null, VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    static synchronized VitalsQueue get(Context context) {
+        if (instance == null) {
+            instance = new VitalsQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Committed transactions survive a crash of the app, only a power loss can drop the last ones
+        db.execSQL("PRAGMA synchronous = NORMAL");
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE pending ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "reading_key TEXT NOT NULL UNIQUE, "
+                + "patient_id TEXT NOT NULL, "
+                + "pulse INTEGER NOT NULL, "
+                + "temperature REAL NOT NULL, "
+                + "humidity REAL NOT NULL, "
+                + "time_millis INTEGER NOT NULL)");
+        createRollups(db);
+        createFolded(db);
+    }
+
+    private static void createRollups(SQLiteDatabase db) {
+        // Written to Firestore once pushed_version catches up with version
+        db.execSQL("CREATE TABLE rollups ("
+                + "id TEXT PRIMARY KEY, "
+                + "patient_id TEXT NOT NULL, "
+                + "metric TEXT NOT NULL, "
+                + "start_millis INTEGER NOT NULL, "
+                + "duration_millis INTEGER NOT NULL, "
+                + "state BLOB NOT NULL, "
+                + "version INTEGER NOT NULL, "
+                + "pushed_version INTEGER NOT NULL)");
+    }
+
+    private static void createFolded(SQLiteDatabase db) {
+        // Readings already in rollups, pruned with them
+        db.execSQL("CREATE TABLE folded ("
+                + "reading_key TEXT PRIMARY KEY, "
+                + "patient_id TEXT NOT NULL, "
+                + "time_millis INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createRollups(db);
+        }
+        if (oldVersion < 3) {
+            createFolded(db);
+        }
+    }
+
+    /**
+     * Queues a reading for upload. A reading is identified by its patient and time, queueing
+     * it again, e.g. on a second tap of save, is ignored whether or not it was folded since.
+     *
+     * @return false if the reading was already queued
+     */
+    synchronized boolean enqueue(String patientId, HealthData data) {
+        if (insert == null) {
+            SQLiteDatabase db = getWritableDatabase();
+            insert = db.compileStatement("INSERT OR IGNORE INTO pending "
+                    + "(reading_key, patient_id, pulse, temperature, humidity, time_millis) VALUES (?, ?, ?, ?, ?, ?)");
+            isFolded = db.compileStatement("SELECT COUNT(*) FROM folded WHERE reading_key = ?");
+        }
+        String key = key(patientId, data);
+        isFolded.bindString(1, key);
+        if (isFolded.simpleQueryForLong() > 0) {
+            return false;
+        }
+        insert.bindString(1, key);
+        insert.bindString(2, patientId);
+        insert.bindLong(3, data.pulse);
+        insert.bindDouble(4, data.temperature);
+        insert.bindDouble(5, data.humidity);
+        insert.bindLong(6, data.timeMillis);
+        return insert.executeInsert() != -1;
+    }
+
+    static String key(String patientId, HealthData data) {
+        return patientId + "_" + data.timeMillis;
+    }
+
+    /**
+     * Adds up to {@code max} of the oldest queued readings to their rollups and removes them
+     * from the queue, atomically. Readings folded before are removed without being added.
+     *
+     * @return number of readings taken from the queue, 0 once it is empty
+     */
+    synchronized int fold(int max) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (markFolded == null) {
+            markFolded = db.compileStatement("INSERT OR IGNORE INTO folded (reading_key, patient_id, time_millis) "
+                    + "VALUES (?, ?, ?)");
+        }
+        db.beginTransaction();
+        try {
+            List<QueuedReading> readings = peekReadings(db, max);
+            if (readings.isEmpty()) {
+                return 0;
+            }
+            Map<String, PendingRollup> touched = new HashMap<>();
+            for (QueuedReading reading : readings) {
+                HealthData data = reading.data;
+                markFolded.bindString(1, key(reading.patientId, data));
+                markFolded.bindString(2, reading.patientId);
+                markFolded.bindLong(3, data.timeMillis);
+                if (markFolded.executeInsert() == -1) {
+                    continue;
+                }
+                add(db, touched, reading.patientId, METRIC_PULSE, data.timeMillis, data.pulse);
+                add(db, touched, reading.patientId, METRIC_TEMPERATURE, data.timeMillis, data.temperature);
+                add(db, touched, reading.patientId, METRIC_HUMIDITY, data.timeMillis, data.humidity);
+            }
+            for (PendingRollup rollup : touched.values()) {
+                ContentValues values = new ContentValues();
+                values.put("id", rollup.id);
+                values.put("patient_id", rollup.patientId);
+                values.put("metric", rollup.metric);
+                values.put("start_millis", rollup.rollup.getStartMillis());
+                values.put("duration_millis", rollup.rollup.getDurationMillis());
+                values.put("state", rollup.rollup.toBytes());
+                values.put("version", rollup.version + 1);
+                values.put("pushed_version", rollup.pushedVersion);
+                db.insertWithOnConflict("rollups", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            long lastId = readings.get(readings.size() - 1).id;
+            db.delete("pending", "id <= ?", new String[]{String.valueOf(lastId)});
+            db.setTransactionSuccessful();
+            return readings.size();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void add(SQLiteDatabase db, Map<String, PendingRollup> touched, String patientId, String metric,
+                     long timeMillis, float value) {
+        for (long resolution : RESOLUTIONS) {
+            long start = VitalRollup.bucketStart(timeMillis, resolution);
+            String id = VitalsBatchWriter.documentId(patientId, metric, resolution, start);
+            PendingRollup rollup = touched.get(id);
+            if (rollup == null) {
+                rollup = loadRollup(db, id);
+                if (rollup == null) {
+                    rollup = new PendingRollup(id, patientId, metric, VitalRollup.forTime(timeMillis, resolution),
+                            0, 0);
+                }
+                touched.put(id, rollup);
+            }
+            rollup.rollup.add(timeMillis, value);
+        }
+    }
+
+    private static PendingRollup loadRollup(SQLiteDatabase db, String id) {
+        try (Cursor cursor = db.query("rollups", null, "id = ?", new String[]{id}, null, null, null)) {
+            return cursor.moveToFirst() ? readRollup(cursor) : null;
+        }
+    }
+
+    private static PendingRollup readRollup(Cursor cursor) {
+        return new PendingRollup(
+                cursor.getString(cursor.getColumnIndexOrThrow("id")),
+                cursor.getString(cursor.getColumnIndexOrThrow("patient_id")),
+                cursor.getString(cursor.getColumnIndexOrThrow("metric")),
+                VitalRollup.fromBytes(cursor.getBlob(cursor.getColumnIndexOrThrow("state"))),
+                cursor.getLong(cursor.getColumnIndexOrThrow("version")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("pushed_version")));
+    }
+
+    private static List<QueuedReading> peekReadings(SQLiteDatabase db, int max) {
+        List<QueuedReading> readings = new ArrayList<>();
+        try (Cursor cursor = db.query("pending", null, null, null, null, null, "id", String.valueOf(max))) {
+            int id = cursor.getColumnIndexOrThrow("id");
+            int patientId = cursor.getColumnIndexOrThrow("patient_id");
+            int pulse = cursor.getColumnIndexOrThrow("pulse");
+            int temperature = cursor.getColumnIndexOrThrow("temperature");
+            int humidity = cursor.getColumnIndexOrThrow("humidity");
+            int timeMillis = cursor.getColumnIndexOrThrow("time_millis");
+            while (cursor.moveToNext()) {
+                HealthData data = new HealthData();
+                data.pulse = cursor.getInt(pulse);
+                data.temperature = cursor.getFloat(temperature);
+                data.humidity = cursor.getFloat(humidity);
+                data.timeMillis = cursor.getLong(timeMillis);
+                readings.add(new QueuedReading(cursor.getLong(id), cursor.getString(patientId), data));
+            }
+        }
+        return readings;
+    }
+
+    /** Rollups changed since they were last written to Firestore, oldest first. */
+    @Override
+    public synchronized List<PendingRollup> peek(int max) {
+        List<PendingRollup> rollups = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query("rollups", null, "version > pushed_version", null, null,
+                null, "start_millis", String.valueOf(max))) {
+            while (cursor.moveToNext()) {
+                rollups.add(readRollup(cursor));
+            }
+        }
+        return rollups;
+    }
+
+    /** Marks rollups as written, unless a fold has changed them again since they were read. */
+    @Override
+    public synchronized void remove(List<PendingRollup> rollups) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (PendingRollup rollup : rollups) {
+                ContentValues values = new ContentValues();
+                values.put("pushed_version", rollup.version);
+                db.update("rollups", values, "id = ? AND pushed_version < ?",
+                        new String[]{rollup.id, String.valueOf(rollup.version)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Forgets written rollups that ended before {@code beforeMillis}, and the keys of the
+     * readings in them. Readings are queued as they are taken, so none can arrive for them
+     * any more.
+     */
+    synchronized int pruneWritten(long beforeMillis) {
+        SQLiteDatabase db = getWritableDatabase();
+        String[] before = {String.valueOf(beforeMillis)};
+        db.beginTransaction();
+        try {
+            int pruned = db.delete("rollups", "version = pushed_version AND start_millis + duration_millis < ?",
+                    before);
+            // Keys stay while any bucket holding the reading is kept, e.g. not written yet
+            db.delete("folded", "time_millis < ? AND NOT EXISTS (SELECT 1 FROM rollups "
+                    + "WHERE rollups.patient_id = folded.patient_id "
+                    + "AND rollups.start_millis <= folded.time_millis "
+                    + "AND folded.time_millis < rollups.start_millis + rollups.duration_millis)", before);
+            db.setTransactionSuccessful();
+            return pruned;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    long size() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), "pending");
+    }
+}
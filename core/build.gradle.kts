@@ -0,0 +1,26 @@
+plugins {
+    `java-library`
+    id("me.champeau.jmh")
+}
+
+// Platform independent signal processing, stream parsing and vitals logic shared by the app.
+// Nothing here may depend on the Android SDK, so it is unit tested and benchmarked on the JVM.
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
+
+// ./gradlew :core:jmh runs src/jmh; results are written to build/results/jmh/results.json
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Adds gc.alloc.rate.norm (bytes allocated per op), which must stay at 0 on the hot paths
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,73 @@
+package com.example.medicarenow.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of {@link EcgBlockCodec} on synthetic 500 Hz ECG with white noise. One op
+ * is one sample. EcgBlockCodecTest checks the compression ratio for the same signals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EcgBlockCodecBenchmark {
+
+    private static final int BLOCKS = 64;
+    private static final int SAMPLES = BLOCKS * EcgBlockCodec.DEFAULT_BLOCK_SAMPLES;
+
+    /** Noise standard deviation in microvolts. */
+    @Param({"0", "5", "20"})
+    public double noise;
+
+    private short[] signal;
+    private byte[] encoded;
+    private int[] offsets;
+    private short[] decoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(4);
+        signal = new short[SAMPLES];
+        int samplesPerBeat = 500 * 60 / 72;
+        for (int i = 0; i < SAMPLES; i++) {
+            signal[i] = (short) Math.round(EcgWaveform.point(i % samplesPerBeat, samplesPerBeat) * 1000
+                    + random.nextGaussian() * noise);
+        }
+        encoded = new byte[BLOCKS * EcgBlockCodec.maxEncodedSize(EcgBlockCodec.DEFAULT_BLOCK_SAMPLES)];
+        offsets = new int[BLOCKS];
+        decoded = new short[SAMPLES];
+        encode();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int encode() {
+        int length = 0;
+        for (int b = 0; b < BLOCKS; b++) {
+            offsets[b] = length;
+            length += EcgBlockCodec.encode(signal, b * EcgBlockCodec.DEFAULT_BLOCK_SAMPLES,
+                    EcgBlockCodec.DEFAULT_BLOCK_SAMPLES, encoded, length);
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public short[] decode() {
+        for (int b = 0; b < BLOCKS; b++) {
+            EcgBlockCodec.decode(encoded, offsets[b], decoded, b * EcgBlockCodec.DEFAULT_BLOCK_SAMPLES);
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.medicarenow.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of appending 500 Hz ECG to an {@link EcgRecorder} in the 20 ms batches the
+ * app writes, across segment boundaries. One op is one sample; gc.alloc.rate.norm shows
+ * whether appending allocates. Every iteration records to a fresh directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EcgRecorderBenchmark {
+
+    private static final int SAMPLE_RATE_HZ = 500;
+    private static final int BATCH = SAMPLE_RATE_HZ / 50;
+
+    private final short[] frame = new short[BATCH];
+    private File root;
+    private EcgRecorder recorder;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("ecg-recorder-benchmark").toFile();
+        recorder = new EcgRecorder(new File(root, "session"), "holter", 1_700_000_000_000L, SAMPLE_RATE_HZ, 1000,
+                1 << 18);
+        for (int i = 0; i < BATCH; i++) {
+            frame[i] = (short) (i * 100);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        recorder.close();
+        deleteRecursively(root);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long append() throws IOException {
+        recorder.append(frame, 0, BATCH);
+        return recorder.getSampleCount();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.medicarenow.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one 1080 column frame of a 24 h, 500 Hz recording in the review screen's zoom
+ * range, panning across the day. One op is one frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MinMaxPyramidBenchmark {
+
+    private static final int SAMPLE_RATE_HZ = 500;
+    private static final long SAMPLES = 24L * 3600 * SAMPLE_RATE_HZ;
+    private static final int COLUMNS = 1080;
+
+    /** Visible span in seconds, from the whole day down to one second. */
+    @Param({"86400", "3600", "60", "1"})
+    public long spanSeconds;
+
+    private File root;
+    private EcgRecording recording;
+    private MinMaxPyramid pyramid;
+    private short[] min;
+    private short[] max;
+    private long span;
+    private long from;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("min-max-pyramid-benchmark").toFile();
+        File session = new File(root, "session");
+        short[] batch = new short[10_000];
+        try (EcgRecorder recorder = new EcgRecorder(session, "holter", 1_700_000_000_000L, SAMPLE_RATE_HZ, 1000)) {
+            for (long written = 0; written < SAMPLES; written += batch.length) {
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = (short) ((written + i) % 1000);
+                }
+                recorder.append(batch, 0, batch.length);
+            }
+        }
+        recording = EcgRecording.open(session);
+        pyramid = new MinMaxPyramid(recording);
+        min = new short[COLUMNS];
+        max = new short[COLUMNS];
+        span = spanSeconds * SAMPLE_RATE_HZ;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pyramid.close();
+        recording.close();
+        File session = new File(root, "session");
+        File[] files = session.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        session.delete();
+        root.delete();
+    }
+
+    @Benchmark
+    public short[] render() throws IOException {
+        // Pans by a third of the view, like a fling, wrapping at the end of the day
+        from += Math.max(1, span / 3);
+        if (from + span > SAMPLES) {
+            from = 0;
+        }
+        pyramid.render(from, from + span, COLUMNS, min, max);
+        return max;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.medicarenow.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-item overhead of {@link QueueDrainer} itself, draining an in-memory queue into a sink
+ * that only counts. One op is one item; the real cost is the SQLite queue and Firestore.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueueDrainerBenchmark {
+
+    private static final int ITEMS = 10_000;
+    // The Firestore limit of 500 writes per batch, one rollup document each, see VitalsBatchWriter
+    private static final int BATCH_SIZE = 500;
+
+    private final Integer[] items = new Integer[ITEMS];
+    private final QueueDrainer.Queue<Integer> queue = new QueueDrainer.Queue<Integer>() {
+        @Override
+        public List<Integer> peek(int max) {
+            List<Integer> batch = new ArrayList<>(Math.min(max, ITEMS - head));
+            for (int i = head; i < ITEMS && batch.size() < max; i++) {
+                batch.add(items[i]);
+            }
+            return batch;
+        }
+
+        @Override
+        public void remove(List<Integer> batch) {
+            head += batch.size();
+        }
+    };
+    private int head;
+    private long written;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < ITEMS; i++) {
+            items[i] = i;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public long drain() throws Exception {
+        head = 0;
+        return QueueDrainer.drain(queue, batch -> written += batch.size(), BATCH_SIZE) + written;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.medicarenow.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of the ECG processing stages, in the block sizes the app uses.
+ *
+ * One op is one sample: the avgt score is ns/sample and the thrpt score times 1000 is
+ * M samples/s. Run with the gc profiler (the default in core/build.gradle.kts) to check that
+ * gc.alloc.rate.norm stays at 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignalPipelineBenchmark {
+
+    private static final int BLOCK = 256;
+
+    @Param({"200", "500"})
+    public int sampleRateHz;
+
+    private float[] ecg;
+    private float[] block;
+    private int cursor;
+    private SimulatedEcgSource source;
+    private long clockNanos;
+    private FilterChain filterChain;
+    private QrsDetector qrsDetector;
+    private HrvCalculator hrvCalculator;
+    private int[] rrIntervals;
+    private int beats;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Ten seconds of 72 BPM ECG, replayed block by block
+        ecg = new float[sampleRateHz * 10];
+        int samplesPerBeat = sampleRateHz * 60 / 72;
+        for (int i = 0; i < ecg.length; i++) {
+            ecg[i] = EcgWaveform.point(i % samplesPerBeat, samplesPerBeat);
+        }
+        block = new float[BLOCK];
+        source = new SimulatedEcgSource(sampleRateHz, 72);
+        filterChain = FilterChain.forEcg(sampleRateHz, 50);
+        qrsDetector = new QrsDetector(sampleRateHz, (sampleIndex, rrMillis) -> beats++);
+        hrvCalculator = new HrvCalculator(5 * 60 * 1000L);
+        rrIntervals = new int[BLOCK];
+        for (int i = 0; i < rrIntervals.length; i++) {
+            rrIntervals[i] = 800 + (i * 37 % 120) - 60;
+        }
+    }
+
+    private float[] nextBlock() {
+        if (cursor + BLOCK > ecg.length) {
+            cursor = 0;
+        }
+        System.arraycopy(ecg, cursor, block, 0, BLOCK);
+        cursor += BLOCK;
+        return block;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public void waveform(Blackhole blackhole) {
+        // Advance the clock by exactly one block so the source always has BLOCK samples due
+        clockNanos += BLOCK * 1_000_000_000L / sampleRateHz;
+        blackhole.consume(source.read(clockNanos, block, 0, BLOCK));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public float[] filterChain() {
+        float[] samples = nextBlock();
+        filterChain.process(samples, 0, BLOCK);
+        return samples;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public int qrsDetector() {
+        qrsDetector.process(nextBlock(), 0, BLOCK);
+        return beats;
+    }
+
+    /** The whole per-batch path of ECGMonitoringActivity: filter, then detect. */
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public int filterAndDetect() {
+        float[] samples = nextBlock();
+        filterChain.process(samples, 0, BLOCK);
+        qrsDetector.process(samples, 0, BLOCK);
+        return beats;
+    }
+
+    /** One op is one RR interval here. */
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public double hrvCalculator() {
+        for (int rr : rrIntervals) {
+            hrvCalculator.addInterval(rr);
+        }
+        return hrvCalculator.getRmssd();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.medicarenow.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of getting device bytes to subscribers: frame decoding, the
+ * single-threaded write/drain round trip through {@link SampleStream} and the fan-out of a
+ * {@link DeviceStream} to four subscribers. One op is one sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StreamIngestBenchmark {
+
+    private static final int SAMPLES_PER_FRAME = 32;
+    private static final int FRAMES = 64;
+    private static final int SAMPLES = SAMPLES_PER_FRAME * FRAMES;
+    // E.g. the live view, the recorder, the heart rate and an uploader
+    private static final int SUBSCRIBERS = 4;
+
+    private byte[] wire;
+    private int wireLength;
+    private EcgFrameDecoder decoder;
+    private long decodedSamples;
+
+    private short[] frame;
+    private SampleStream stream;
+    private long consumed;
+
+    private DeviceStream device;
+    private long seq;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        frame = new short[SAMPLES_PER_FRAME];
+        wire = new byte[FRAMES * EcgFrameDecoder.MAX_FRAME_SIZE];
+        for (int f = 0; f < FRAMES; f++) {
+            for (int i = 0; i < SAMPLES_PER_FRAME; i++) {
+                frame[i] = (short) (f * SAMPLES_PER_FRAME + i);
+            }
+            wireLength += EcgFrameDecoder.encodeFrame(f, frame, 0, SAMPLES_PER_FRAME, wire, wireLength);
+        }
+        decoder = new EcgFrameDecoder((samples, off, len, seq) -> decodedSamples += len);
+
+        // Drains run inline, so every write is followed by a full drain
+        stream = new SampleStream(DeviceStream.DEFAULT_BUFFER_CAPACITY, DeviceStream.DEFAULT_BATCH_SIZE,
+                Runnable::run, (buf, off, len, position) -> consumed += len);
+
+        // Never started, frames are handed over directly
+        device = new DeviceStream("benchmark", () -> null, null, (s, connected) -> { });
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            device.subscribe(Runnable::run, (buf, off, len, position) -> consumed += len);
+        }
+    }
+
+    /** Bytes arrive in socket-sized reads that split frames. */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long decode() {
+        for (int off = 0; off < wireLength; off += 1000) {
+            decoder.feed(wire, off, Math.min(1000, wireLength - off));
+        }
+        return decodedSamples;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long sampleStream() {
+        for (int f = 0; f < FRAMES; f++) {
+            stream.write(frame, 0, SAMPLES_PER_FRAME);
+        }
+        return consumed;
+    }
+
+    /** Frames as the decoder hands them over, with consecutive sequence numbers. */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long deviceStream() {
+        for (int f = 0; f < FRAMES; f++) {
+            device.onFrame(frame, 0, SAMPLES_PER_FRAME, seq++);
+        }
+        return consumed;
+    }
+}
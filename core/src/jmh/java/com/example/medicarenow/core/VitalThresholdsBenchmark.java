@@ -0,0 +1,50 @@
+package com.example.medicarenow.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Cost of checking one reading, about a third of which raise an alert. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VitalThresholdsBenchmark {
+
+    private static final int READINGS = 1024;
+
+    private int[] pulse;
+    private float[] temperature;
+    private float[] humidity;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        pulse = new int[READINGS];
+        temperature = new float[READINGS];
+        humidity = new float[READINGS];
+        for (int i = 0; i < READINGS; i++) {
+            pulse[i] = 55 + random.nextInt(50);
+            temperature[i] = 35.8f + random.nextFloat() * 1.8f;
+            humidity[i] = 28 + random.nextFloat() * 44;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public int check() {
+        int alerts = 0;
+        for (int i = 0; i < READINGS; i++) {
+            alerts |= VitalThresholds.check(pulse[i], temperature[i], humidity[i]);
+        }
+        return alerts;
+    }
+}
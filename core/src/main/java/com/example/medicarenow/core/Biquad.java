@@ -0,0 +1,68 @@
+package com.example.medicarenow.core;
+
+/**
+ * Second-order IIR section (transposed direct form II) with coefficients from the RBJ
+ * audio EQ cookbook. Filtering a sample is a handful of multiply-adds and never allocates.
+ */
+public class Biquad {
+
+    private final float b0, b1, b2, a1, a2;
+    private float z1, z2;
+
+    private Biquad(double b0, double b1, double b2, double a0, double a1, double a2) {
+        this.b0 = (float) (b0 / a0);
+        this.b1 = (float) (b1 / a0);
+        this.b2 = (float) (b2 / a0);
+        this.a1 = (float) (a1 / a0);
+        this.a2 = (float) (a2 / a0);
+    }
+
+    public static Biquad lowPass(double sampleRateHz, double cutoffHz, double q) {
+        double w0 = 2 * Math.PI * cutoffHz / sampleRateHz;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        return new Biquad((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    public static Biquad highPass(double sampleRateHz, double cutoffHz, double q) {
+        double w0 = 2 * Math.PI * cutoffHz / sampleRateHz;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        return new Biquad((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    public static Biquad notch(double sampleRateHz, double centerHz, double q) {
+        double w0 = 2 * Math.PI * centerHz / sampleRateHz;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        return new Biquad(1, -2 * cos, 1, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    public float process(float x) {
+        float y = b0 * x + z1;
+        z1 = b1 * x - a1 * y + z2;
+        z2 = b2 * x - a2 * y;
+        return y;
+    }
+
+    /** Filters {@code len} samples of {@code buf} in place. */
+    public void process(float[] buf, int off, int len) {
+        // Keep the state in locals so the loop runs out of registers
+        float s1 = z1;
+        float s2 = z2;
+        for (int i = off; i < off + len; i++) {
+            float x = buf[i];
+            float y = b0 * x + s1;
+            s1 = b1 * x - a1 * y + s2;
+            s2 = b2 * x - a2 * y;
+            buf[i] = y;
+        }
+        z1 = s1;
+        z2 = s2;
+    }
+
+    public void reset() {
+        z1 = 0;
+        z2 = 0;
+    }
+}
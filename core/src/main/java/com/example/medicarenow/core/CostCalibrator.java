@@ -0,0 +1,45 @@
+package com.example.medicarenow.core;
+
+import java.util.function.IntToLongFunction;
+
+/**
+ * Picks the work factor of a password hash like bcrypt, where each step of the cost doubles the
+ * time, so that one hash takes at most a target time on the device at hand.
+ *
+ * Only three hashes are timed: two at the minimum cost, the first of which warms up the code,
+ * and one at the estimated cost, which steps down while it is over the target.
+ */
+public final class CostCalibrator {
+
+    private CostCalibrator() {
+    }
+
+    /**
+     * @param nanosAtCost times one hash at the given cost, in nanoseconds
+     * @return the highest cost in {@code [minCost, maxCost]} expected to hash within
+     * {@code targetNanos}, or {@code minCost} if even that is slower
+     */
+    public static int pickCost(IntToLongFunction nanosAtCost, long targetNanos, int minCost, int maxCost) {
+        if (minCost > maxCost || targetNanos <= 0) {
+            throw new IllegalArgumentException("Invalid calibration: cost " + minCost + ".." + maxCost
+                    + ", target " + targetNanos + " ns");
+        }
+        nanosAtCost.applyAsLong(minCost);
+        long estimate = nanosAtCost.applyAsLong(minCost);
+        int cost = minCost;
+        while (cost < maxCost && estimate * 2 <= targetNanos) {
+            cost++;
+            estimate *= 2;
+        }
+        if (cost == minCost) {
+            return cost;
+        }
+        // Doubling per step is only approximately true, e.g. once the CPU throttles
+        long measured = nanosAtCost.applyAsLong(cost);
+        while (cost > minCost && measured > targetNanos) {
+            cost--;
+            measured /= 2;
+        }
+        return cost;
+    }
+}
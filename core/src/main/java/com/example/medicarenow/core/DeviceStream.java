@@ -0,0 +1,295 @@
+package com.example.medicarenow.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * Connection to one sensor device: a reader thread, its own {@link EcgFrameDecoder} and a
+ * fan-out of decoded samples to any number of subscribers.
+ *
+ * Every subscriber gets a private {@link SampleStream} drained on its own executor, so a slow
+ * subscriber only ever drops its own oldest samples and never delays the reader thread or
+ * the other subscribers.
+ *
+ * With a {@link ReconnectPolicy} the reader thread supervises the link: when it drops, a new
+ * transport is opened after a jittered backoff until {@link #stop()} is called. Frames the
+ * device sent while the link was down are detected from the frame sequence numbers and
+ * reported to subscribers as gaps of the exact number of missing samples. A sequence number
+ * that goes backwards or jumps ahead by more than {@link #MAX_GAP_FRAMES} means the device
+ * restarted its count, e.g. after a reboot; the stream resyncs on it without reporting a gap,
+ * so an outage longer than that is not reported either.
+ */
+public class DeviceStream implements EcgFrameDecoder.FrameListener {
+
+    // About 4 s of ECG at 500 Hz per subscriber before its oldest samples are dropped
+    public static final int DEFAULT_BUFFER_CAPACITY = 2048;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    // About 9 minutes at 500 Hz in 32 sample frames, well short of the 65536 the 16 bit count wraps at
+    public static final int MAX_GAP_FRAMES = 8192;
+
+    public interface TransportFactory {
+        /** Creates a new, unconnected transport for each connection attempt. */
+        StreamTransport create();
+    }
+
+    public interface StatusListener {
+        /** Called on the reader thread. */
+        void onConnectionStatusChanged(DeviceStream stream, boolean connected);
+    }
+
+    public class Subscription {
+        private final SampleStream stream;
+
+        private Subscription(SampleStream stream) {
+            this.stream = stream;
+        }
+
+        public long getDroppedCount() {
+            return stream.getDroppedCount();
+        }
+
+        /** Number of link gaps reported to this subscriber so far, read on its executor. */
+        public long getGapsReported() {
+            return stream.getGapsReported();
+        }
+
+        public void unsubscribe() {
+            removeSubscription(this);
+        }
+    }
+
+    private final String deviceId;
+    private final TransportFactory transportFactory;
+    private final ReconnectPolicy reconnectPolicy;
+    private final StatusListener statusListener;
+    private final EcgFrameDecoder decoder = new EcgFrameDecoder(this);
+    private final Object subscriptionLock = new Object();
+    // Copy-on-write array so the reader thread iterates without locking or allocating
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile boolean running = false;
+    private Thread readerThread;
+    private StreamTransport transport;
+
+    // Reader thread only
+    private long expectedSeq = -1;
+    private int lastFrameSamples = 0;
+    // Written by the reader thread, read anywhere
+    private volatile long gapCount = 0;
+    private volatile long lostSamples = 0;
+    private volatile long sequenceResets = 0;
+    private volatile long reconnects = 0;
+
+    /** Connects once over {@code transport}; the stream stops when the link drops. */
+    public DeviceStream(String deviceId, StreamTransport transport, StatusListener statusListener) {
+        this(deviceId, () -> transport, null, statusListener);
+    }
+
+    /**
+     * @param reconnectPolicy backoff between connection attempts, or null to give up after the
+     *                        first connection ends
+     */
+    public DeviceStream(String deviceId, TransportFactory transportFactory, ReconnectPolicy reconnectPolicy,
+                        StatusListener statusListener) {
+        this.deviceId = deviceId;
+        this.transportFactory = transportFactory;
+        this.reconnectPolicy = reconnectPolicy;
+        this.statusListener = statusListener;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public Subscription subscribe(Executor executor, SampleStream.Consumer consumer) {
+        return subscribe(executor, consumer, DEFAULT_BUFFER_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public Subscription subscribe(Executor executor, SampleStream.Consumer consumer, int capacity, int batchSize) {
+        Subscription subscription = new Subscription(new SampleStream(capacity, batchSize, executor, consumer));
+        synchronized (subscriptionLock) {
+            Subscription[] current = subscriptions;
+            Subscription[] updated = new Subscription[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = subscription;
+            subscriptions = updated;
+        }
+        return subscription;
+    }
+
+    private void removeSubscription(Subscription subscription) {
+        synchronized (subscriptionLock) {
+            Subscription[] current = subscriptions;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscription) {
+                    Subscription[] updated = new Subscription[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    subscriptions = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    public long getFramesDecoded() {
+        return decoder.getFramesDecoded();
+    }
+
+    public long getCorruptFrames() {
+        return decoder.getCorruptFrames();
+    }
+
+    /** Number of sequence gaps seen, usually one per reconnect. */
+    public long getGapCount() {
+        return gapCount;
+    }
+
+    /** Total samples the device sent that never arrived. */
+    public long getLostSamples() {
+        return lostSamples;
+    }
+
+    /** Number of times the device restarted its sequence count, see {@link #MAX_GAP_FRAMES}. */
+    public long getSequenceResets() {
+        return sequenceResets;
+    }
+
+    /** Number of times the link was re-established after dropping. */
+    public long getReconnects() {
+        return reconnects;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        readerThread = new Thread(this::run, "DeviceStream-" + deviceId);
+        readerThread.start();
+    }
+
+    /** Closes the link, cancels any pending reconnect and waits for the reader thread to exit. */
+    public void stop() {
+        Thread thread;
+        StreamTransport current;
+        synchronized (this) {
+            running = false;
+            thread = readerThread;
+            readerThread = null;
+            current = transport;
+            notifyAll();
+        }
+        if (current != null) {
+            current.close();
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        byte[] buffer = new byte[1024];
+        int failedAttempts = 0;
+        boolean everConnected = false;
+        while (running) {
+            StreamTransport current = transportFactory.create();
+            synchronized (this) {
+                if (!running) {
+                    break;
+                }
+                transport = current;
+            }
+
+            boolean connected = false;
+            try {
+                current.connect();
+                connected = true;
+                failedAttempts = 0;
+                if (everConnected) {
+                    reconnects++;
+                }
+                everConnected = true;
+                // A frame cut by the disconnect must not be glued to the new stream
+                decoder.reset();
+                statusListener.onConnectionStatusChanged(this, true);
+
+                InputStream in = current.getInputStream();
+                while (running) {
+                    int bytes = in.read(buffer);
+                    if (bytes < 0) {
+                        break;
+                    }
+                    decoder.feed(buffer, 0, bytes);
+                }
+            } catch (IOException e) {
+                // Connection refused, link lost or closed by stop()
+            }
+            current.close();
+
+            if (reconnectPolicy == null) {
+                running = false;
+            }
+            if (connected || !running) {
+                statusListener.onConnectionStatusChanged(this, false);
+            }
+            if (running && !waitBeforeReconnect(reconnectPolicy.delayMillis(failedAttempts++))) {
+                break;
+            }
+        }
+        synchronized (this) {
+            transport = null;
+        }
+    }
+
+    /** @return false if the stream was stopped while waiting */
+    private synchronized boolean waitBeforeReconnect(long delayMillis) {
+        long deadline = System.currentTimeMillis() + delayMillis;
+        long remaining;
+        while (running && (remaining = deadline - System.currentTimeMillis()) > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return running;
+    }
+
+    @Override
+    public void onFrame(short[] samples, int off, int len, long seq) {
+        Subscription[] current = subscriptions;
+        // The decoder unwraps forwards, so a step back shows up as a jump of nearly 65536
+        long missingFrames = expectedSeq >= 0 ? seq - expectedSeq : 0;
+        if (missingFrames > 0 && missingFrames <= MAX_GAP_FRAMES) {
+            // Devices send fixed-size frames, so the missing frames had the size of the last one
+            long lost = missingFrames * (lastFrameSamples > 0 ? lastFrameSamples : len);
+            gapCount++;
+            lostSamples += lost;
+            for (Subscription subscription : current) {
+                subscription.stream.writeGap(lost);
+            }
+        } else if (missingFrames != 0) {
+            sequenceResets++;
+        }
+        expectedSeq = seq + 1;
+        lastFrameSamples = len;
+
+        for (Subscription subscription : current) {
+            subscription.stream.write(samples, off, len);
+        }
+    }
+}
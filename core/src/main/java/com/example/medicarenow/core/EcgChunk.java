@@ -0,0 +1,89 @@
+package com.example.medicarenow.core;
+
+/**
+ * A run of consecutive samples of a recording compressed for upload by {@link EcgUploader}.
+ *
+ * The data is a sequence of {@link EcgBlockCodec} blocks of {@link #getBlockSamples()}
+ * samples each, the last one possibly shorter. Gaps are stored as {@link EcgRecording#GAP}
+ * like in the recording.
+ */
+public final class EcgChunk {
+
+    private final String sessionId;
+    private final long index;
+    private final long firstSample;
+    private final int sampleCount;
+    private final long startTimeMillis;
+    private final int sampleRateHz;
+    private final int countsPerMillivolt;
+    private final int blockSamples;
+    private final byte[] data;
+
+    public EcgChunk(String sessionId, long index, long firstSample, int sampleCount, long startTimeMillis,
+                    int sampleRateHz, int countsPerMillivolt, int blockSamples, byte[] data) {
+        this.sessionId = sessionId;
+        this.index = index;
+        this.firstSample = firstSample;
+        this.sampleCount = sampleCount;
+        this.startTimeMillis = startTimeMillis;
+        this.sampleRateHz = sampleRateHz;
+        this.countsPerMillivolt = countsPerMillivolt;
+        this.blockSamples = blockSamples;
+        this.data = data;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /** Position of the chunk in the recording; chunk i starts at sample {@code i * chunkSamples}. */
+    public long getIndex() {
+        return index;
+    }
+
+    public long getFirstSample() {
+        return firstSample;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /** Time of the first sample. */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public int getSampleRate() {
+        return sampleRateHz;
+    }
+
+    public int getCountsPerMillivolt() {
+        return countsPerMillivolt;
+    }
+
+    public int getBlockSamples() {
+        return blockSamples;
+    }
+
+    /** The encoded blocks. Not copied, do not modify. */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Decodes {@code data}, e.g. as downloaded, into {@code dst}.
+     *
+     * @return number of samples decoded
+     * @throws IllegalArgumentException if the data is malformed or truncated
+     */
+    public static int decode(byte[] data, short[] dst, int dstOff) {
+        int pos = 0;
+        int decoded = 0;
+        while (pos < data.length) {
+            decoded += EcgBlockCodec.decode(data, pos, dst, dstOff + decoded);
+            pos += EcgBlockCodec.encodedLength(data, pos);
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.medicarenow.core;
+
+/**
+ * Incremental decoder for the binary ECG frames streamed by the monitoring device.
+ *
+ * Frame layout (multi-byte fields are little-endian):
+ * <pre>
+ *   offset  size  field
+ *   0       2     sync word 0xA5 0x5A
+ *   2       2     sequence number (uint16, wraps)
+ *   4       1     sample count N (1..MAX_SAMPLES_PER_FRAME)
+ *   5       2*N   samples (int16)
+ *   5+2*N   2     CRC-16/CCITT-FALSE over bytes [2, 5+2*N)
+ * </pre>
+ *
+ * Bytes can be fed in arbitrary chunks as they come off the socket; frames torn across reads
+ * are reassembled and corrupted frames are skipped by re-synchronising on the next sync word.
+ * Decoding works on preallocated primitive buffers, so feeding data never allocates.
+ * Not thread-safe: a decoder belongs to the thread reading the stream.
+ */
+public class EcgFrameDecoder {
+
+    public static final int SYNC_0 = 0xA5;
+    public static final int SYNC_1 = 0x5A;
+    public static final int HEADER_SIZE = 5;
+    public static final int CRC_SIZE = 2;
+    public static final int MAX_SAMPLES_PER_FRAME = 64;
+    public static final int MAX_FRAME_SIZE = HEADER_SIZE + 2 * MAX_SAMPLES_PER_FRAME + CRC_SIZE;
+
+    public interface FrameListener {
+        /**
+         * Called for every valid frame. {@code samples} is reused by the decoder and only
+         * valid for the duration of the call.
+         *
+         * @param seq frame sequence number, unwrapped to a monotonically increasing value
+         */
+        void onFrame(short[] samples, int off, int len, long seq);
+    }
+
+    private final FrameListener listener;
+    private final byte[] pending = new byte[2 * MAX_FRAME_SIZE];
+    private final short[] samples = new short[MAX_SAMPLES_PER_FRAME];
+    private int pendingLength = 0;
+
+    private long lastSeq = -1;
+    private long framesDecoded = 0;
+    private long corruptFrames = 0;
+    private long bytesSkipped = 0;
+
+    public EcgFrameDecoder(FrameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Feeds raw bytes read from the stream. Every complete frame found is delivered to the
+     * listener before this method returns.
+     */
+    public void feed(byte[] data, int off, int len) {
+        while (len > 0) {
+            int chunk = Math.min(len, pending.length - pendingLength);
+            System.arraycopy(data, off, pending, pendingLength, chunk);
+            pendingLength += chunk;
+            off += chunk;
+            len -= chunk;
+            parsePending();
+        }
+    }
+
+    /** Drops any partially received frame, e.g. after the stream was re-opened. */
+    public void reset() {
+        pendingLength = 0;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    public long getCorruptFrames() {
+        return corruptFrames;
+    }
+
+    public long getBytesSkipped() {
+        return bytesSkipped;
+    }
+
+    private void parsePending() {
+        int pos = 0;
+        while (true) {
+            int start = findSync(pos);
+            bytesSkipped += start - pos;
+            pos = start;
+
+            if (pendingLength - pos < HEADER_SIZE) {
+                break;
+            }
+
+            int count = pending[pos + 4] & 0xFF;
+            if (count == 0 || count > MAX_SAMPLES_PER_FRAME) {
+                // Not a real header, the sync word was part of the payload of something else
+                corruptFrames++;
+                bytesSkipped++;
+                pos++;
+                continue;
+            }
+
+            int frameSize = HEADER_SIZE + 2 * count + CRC_SIZE;
+            if (pendingLength - pos < frameSize) {
+                break;
+            }
+
+            int crcOffset = pos + HEADER_SIZE + 2 * count;
+            int expectedCrc = (pending[crcOffset] & 0xFF) | ((pending[crcOffset + 1] & 0xFF) << 8);
+            if (crc16(pending, pos + 2, crcOffset - (pos + 2)) != expectedCrc) {
+                corruptFrames++;
+                bytesSkipped++;
+                pos++;
+                continue;
+            }
+
+            int p = pos + HEADER_SIZE;
+            for (int i = 0; i < count; i++, p += 2) {
+                samples[i] = (short) ((pending[p] & 0xFF) | (pending[p + 1] << 8));
+            }
+
+            int rawSeq = (pending[pos + 2] & 0xFF) | ((pending[pos + 3] & 0xFF) << 8);
+            long seq = unwrapSequence(rawSeq);
+            framesDecoded++;
+            pos += frameSize;
+
+            listener.onFrame(samples, 0, count, seq);
+        }
+
+        // Keep the unparsed tail (at most one partial frame) at the start of the buffer
+        int remaining = pendingLength - pos;
+        if (remaining > 0 && pos > 0) {
+            System.arraycopy(pending, pos, pending, 0, remaining);
+        }
+        pendingLength = remaining;
+    }
+
+    private int findSync(int from) {
+        int i = from;
+        while (i < pendingLength) {
+            if ((pending[i] & 0xFF) == SYNC_0) {
+                if (i + 1 >= pendingLength || (pending[i + 1] & 0xFF) == SYNC_1) {
+                    return i;
+                }
+            }
+            i++;
+        }
+        return pendingLength;
+    }
+
+    private long unwrapSequence(int rawSeq) {
+        if (lastSeq < 0) {
+            lastSeq = rawSeq;
+        } else {
+            lastSeq += (rawSeq - (int) (lastSeq & 0xFFFF)) & 0xFFFF;
+        }
+        return lastSeq;
+    }
+
+    /** CRC-16/CCITT-FALSE (poly 0x1021, init 0xFFFF). */
+    public static int crc16(byte[] data, int off, int len) {
+        int crc = 0xFFFF;
+        for (int i = off; i < off + len; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int b = 0; b < 8; b++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    /**
+     * Encodes one frame into {@code out} and returns the number of bytes written.
+     * Used by device simulators and tests.
+     */
+    public static int encodeFrame(int seq, short[] src, int off, int count, byte[] out, int outOff) {
+        if (count <= 0 || count > MAX_SAMPLES_PER_FRAME) {
+            throw new IllegalArgumentException("Invalid sample count: " + count);
+        }
+        int p = outOff;
+        out[p++] = (byte) SYNC_0;
+        out[p++] = (byte) SYNC_1;
+        out[p++] = (byte) seq;
+        out[p++] = (byte) (seq >> 8);
+        out[p++] = (byte) count;
+        for (int i = 0; i < count; i++) {
+            short s = src[off + i];
+            out[p++] = (byte) s;
+            out[p++] = (byte) (s >> 8);
+        }
+        int crc = crc16(out, outOff + 2, p - (outOff + 2));
+        out[p++] = (byte) crc;
+        out[p++] = (byte) (crc >> 8);
+        return p - outOff;
+    }
+}
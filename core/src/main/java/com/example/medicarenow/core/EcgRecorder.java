@@ -0,0 +1,200 @@
+package com.example.medicarenow.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Appends int16 ECG samples to a session directory read back with {@link EcgRecording}, and
+ * builds its {@link MinMaxPyramid} on the way.
+ *
+ * Samples are copied straight into a memory-mapped segment file, so appending costs a memcpy
+ * and the heap stays flat however long the session runs: a 24 hour recording at 500 Hz is
+ * about 86 MB on disk and two mappings in memory. When a segment is full the next one is
+ * mapped.
+ *
+ * The committed sample count in the index is written after the samples, so the valid part
+ * of the recording survives the app being killed at any point. Pages reach storage when the
+ * OS writes them back; call {@link #flush()} to force them, e.g. every few seconds, if the
+ * tail must also survive a power loss. Not thread safe: call from a single thread.
+ */
+public class EcgRecorder implements Closeable {
+
+    /** 2 MB segments, about 35 minutes at 500 Hz. */
+    public static final int DEFAULT_SAMPLES_PER_SEGMENT = 1 << 20;
+
+    private static final int GAP_CHUNK = 1024;
+
+    private final File directory;
+    private final int samplesPerSegment;
+    private final MappedByteBuffer index;
+    private final short[] gapChunk = new short[GAP_CHUNK];
+    private final short[] clampChunk = new short[GAP_CHUNK];
+    private final MinMaxPyramidBuilder pyramid;
+    private MappedByteBuffer segmentBuffer;
+    private ShortBuffer segment;
+    private int segmentIndex = -1;
+    private long sampleCount = 0;
+    private boolean closed = false;
+
+    public EcgRecorder(File directory, String sessionId, long startTimeMillis, int sampleRateHz,
+                       int countsPerMillivolt) throws IOException {
+        this(directory, sessionId, startTimeMillis, sampleRateHz, countsPerMillivolt, DEFAULT_SAMPLES_PER_SEGMENT);
+    }
+
+    /**
+     * Creates a new session in {@code directory}, which must not contain a recording yet.
+     */
+    public EcgRecorder(File directory, String sessionId, long startTimeMillis, int sampleRateHz,
+                       int countsPerMillivolt, int samplesPerSegment) throws IOException {
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > EcgRecording.MAX_SESSION_ID_BYTES) {
+            throw new IllegalArgumentException("Session id too long: " + sessionId);
+        }
+        if (sampleRateHz <= 0 || samplesPerSegment <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate or segment size: " + sampleRateHz + ", "
+                    + samplesPerSegment);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File indexFile = new File(directory, EcgRecording.INDEX_FILE);
+        if (indexFile.exists()) {
+            throw new IOException("Recording already exists: " + directory);
+        }
+
+        this.directory = directory;
+        this.samplesPerSegment = samplesPerSegment;
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            index = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, EcgRecording.INDEX_SIZE);
+        }
+        index.order(ByteOrder.LITTLE_ENDIAN);
+        index.putLong(EcgRecording.OFFSET_START_TIME, startTimeMillis);
+        index.putInt(EcgRecording.OFFSET_SAMPLE_RATE, sampleRateHz);
+        index.putInt(EcgRecording.OFFSET_COUNTS_PER_MV, countsPerMillivolt);
+        index.putInt(EcgRecording.OFFSET_SAMPLES_PER_SEGMENT, samplesPerSegment);
+        index.putLong(EcgRecording.OFFSET_SAMPLE_COUNT, 0);
+        index.put(EcgRecording.OFFSET_SESSION_ID, (byte) id.length);
+        for (int i = 0; i < id.length; i++) {
+            index.put(EcgRecording.OFFSET_SESSION_ID + 1 + i, id[i]);
+        }
+        index.putInt(EcgRecording.OFFSET_VERSION, EcgRecording.VERSION);
+        // The magic goes last, a half written header is never mistaken for a recording
+        index.putInt(EcgRecording.OFFSET_MAGIC, EcgRecording.MAGIC);
+        index.force();
+
+        pyramid = new MinMaxPyramidBuilder(directory);
+        Arrays.fill(gapChunk, EcgRecording.GAP);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Appends samples. {@link EcgRecording#GAP} is reserved for samples never received, so a
+     * sample of that value is stored as the next higher one.
+     */
+    public void append(short[] src, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            if (src[i] == EcgRecording.GAP) {
+                appendClamped(src, off, len);
+                return;
+            }
+        }
+        write(src, off, len);
+    }
+
+    private void appendClamped(short[] src, int off, int len) throws IOException {
+        while (len > 0) {
+            int chunk = Math.min(len, GAP_CHUNK);
+            for (int i = 0; i < chunk; i++) {
+                short sample = src[off + i];
+                clampChunk[i] = sample == EcgRecording.GAP ? EcgRecording.GAP + 1 : sample;
+            }
+            write(clampChunk, 0, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    private void write(short[] src, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Recorder closed");
+        }
+        pyramid.add(src, off, len);
+        while (len > 0) {
+            int inSegment = (int) (sampleCount % samplesPerSegment);
+            if (inSegment == 0 || segment == null) {
+                mapSegment((int) (sampleCount / samplesPerSegment));
+            }
+            int chunk = Math.min(len, samplesPerSegment - inSegment);
+            segment.position(inSegment);
+            segment.put(src, off, chunk);
+            off += chunk;
+            len -= chunk;
+            sampleCount += chunk;
+        }
+        index.putLong(EcgRecording.OFFSET_SAMPLE_COUNT, sampleCount);
+    }
+
+    /**
+     * Records {@code samples} samples that were never received, e.g. the gap reported by
+     * {@link SampleStream.Consumer#onGap}, so later samples keep their place on the timeline.
+     */
+    public void appendGap(long samples) throws IOException {
+        while (samples > 0) {
+            int chunk = (int) Math.min(samples, GAP_CHUNK);
+            write(gapChunk, 0, chunk);
+            samples -= chunk;
+        }
+    }
+
+    /** Forces the samples, the index and the completed pyramid buckets to storage. */
+    public void flush() throws IOException {
+        if (segmentBuffer != null) {
+            segmentBuffer.force();
+        }
+        index.force();
+        pyramid.flush(true);
+    }
+
+    private void mapSegment(int next) throws IOException {
+        if (next == segmentIndex) {
+            return;
+        }
+        if (segmentBuffer != null) {
+            segmentBuffer.force();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(EcgRecording.segmentFile(directory, next), "rw")) {
+            // Mapping past the end grows the file to the full segment size up front
+            segmentBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) samplesPerSegment * 2);
+        }
+        segmentBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        segment = segmentBuffer.asShortBuffer();
+        segmentIndex = next;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flush();
+        pyramid.close();
+        segmentBuffer = null;
+        segment = null;
+    }
+}
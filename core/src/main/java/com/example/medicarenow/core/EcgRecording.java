@@ -0,0 +1,197 @@
+package com.example.medicarenow.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Read side of a session written by {@link EcgRecorder}.
+ *
+ * A session is a directory with a small {@code index.bin} and fixed-size segment files of
+ * int16 samples. The timeline has no holes: samples lost while the device was disconnected
+ * are stored as {@link #GAP}. Segment i therefore always starts at sample
+ * {@code i * samplesPerSegment}, and seeking to a timestamp is plain arithmetic.
+ *
+ * Only the first {@link #getSampleCount()} samples are valid. The recorder updates that count
+ * after the samples are in place, so a crash mid-append leaves a shorter but intact recording.
+ * The count is re-read on every call, so a recording can be reviewed while it is still being
+ * written. Instances are not thread safe.
+ */
+public class EcgRecording implements Closeable {
+
+    /** Stored in place of samples that were never received. */
+    public static final short GAP = Short.MIN_VALUE;
+
+    static final String INDEX_FILE = "index.bin";
+    static final int MAGIC = 0x45434749; // "ECGI"
+    static final int VERSION = 1;
+
+    // index.bin layout, little endian
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_VERSION = 4;
+    static final int OFFSET_START_TIME = 8;
+    static final int OFFSET_SAMPLE_RATE = 16;
+    static final int OFFSET_COUNTS_PER_MV = 20;
+    static final int OFFSET_SAMPLES_PER_SEGMENT = 24;
+    static final int OFFSET_SAMPLE_COUNT = 32;
+    static final int OFFSET_SESSION_ID = 40; // uint8 length, then UTF-8 bytes
+    static final int MAX_SESSION_ID_BYTES = 63;
+    static final int INDEX_SIZE = OFFSET_SESSION_ID + 1 + MAX_SESSION_ID_BYTES;
+
+    private final File directory;
+    private final MappedByteBuffer index;
+    private final String sessionId;
+    private final long startTimeMillis;
+    private final int sampleRateHz;
+    private final int countsPerMillivolt;
+    private final int samplesPerSegment;
+    // Mapped on first access
+    private ShortBuffer[] segments = new ShortBuffer[0];
+
+    private EcgRecording(File directory, MappedByteBuffer index) throws IOException {
+        this.directory = directory;
+        this.index = index;
+        if (index.getInt(OFFSET_MAGIC) != MAGIC || index.getInt(OFFSET_VERSION) != VERSION) {
+            throw new IOException("Not an ECG recording: " + directory);
+        }
+        startTimeMillis = index.getLong(OFFSET_START_TIME);
+        sampleRateHz = index.getInt(OFFSET_SAMPLE_RATE);
+        countsPerMillivolt = index.getInt(OFFSET_COUNTS_PER_MV);
+        samplesPerSegment = index.getInt(OFFSET_SAMPLES_PER_SEGMENT);
+        byte[] id = new byte[index.get(OFFSET_SESSION_ID) & 0xFF];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = index.get(OFFSET_SESSION_ID + 1 + i);
+        }
+        sessionId = new String(id, StandardCharsets.UTF_8);
+    }
+
+    public static EcgRecording open(File directory) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, INDEX_FILE), "r")) {
+            if (file.length() < INDEX_SIZE) {
+                throw new IOException("Truncated index in " + directory);
+            }
+            MappedByteBuffer index = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, INDEX_SIZE);
+            index.order(ByteOrder.LITTLE_ENDIAN);
+            return new EcgRecording(directory, index);
+        }
+    }
+
+    static File segmentFile(File directory, int segment) {
+        return new File(directory, String.format(Locale.US, "segment-%05d.ecg", segment));
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public int getSampleRate() {
+        return sampleRateHz;
+    }
+
+    /** Scale of the stored samples, e.g. 1000 for microvolt resolution. */
+    public int getCountsPerMillivolt() {
+        return countsPerMillivolt;
+    }
+
+    public int getSamplesPerSegment() {
+        return samplesPerSegment;
+    }
+
+    /** Number of committed samples, gaps included. */
+    public long getSampleCount() {
+        return index.getLong(OFFSET_SAMPLE_COUNT);
+    }
+
+    public long getDurationMillis() {
+        return getSampleCount() * 1000 / sampleRateHz;
+    }
+
+    /** Index of the sample recorded at {@code timeMillis}, clamped to the recording. */
+    public long sampleIndexAt(long timeMillis) {
+        long sample = (timeMillis - startTimeMillis) * sampleRateHz / 1000;
+        return Math.max(0, Math.min(sample, getSampleCount()));
+    }
+
+    public long timeOfSample(long sampleIndex) {
+        return startTimeMillis + sampleIndex * 1000 / sampleRateHz;
+    }
+
+    /**
+     * Copies up to {@code len} samples starting at {@code sampleIndex} into {@code dst}.
+     *
+     * @return number of samples copied, less than {@code len} at the end of the recording
+     */
+    public int read(long sampleIndex, short[] dst, int off, int len) throws IOException {
+        long available = getSampleCount() - sampleIndex;
+        if (sampleIndex < 0 || available <= 0) {
+            return 0;
+        }
+        int total = (int) Math.min(len, available);
+        int copied = 0;
+        while (copied < total) {
+            long position = sampleIndex + copied;
+            int segment = (int) (position / samplesPerSegment);
+            int inSegment = (int) (position % samplesPerSegment);
+            int chunk = Math.min(total - copied, samplesPerSegment - inSegment);
+            ShortBuffer samples = segment(segment);
+            samples.position(inSegment);
+            samples.get(dst, off + copied, chunk);
+            copied += chunk;
+        }
+        return copied;
+    }
+
+    /** Number of {@link EcgBlockCodec} blocks of {@code blockSamples}, the last one may be partial. */
+    public long getBlockCount(int blockSamples) {
+        return (getSampleCount() + blockSamples - 1) / blockSamples;
+    }
+
+    /**
+     * Compresses block {@code block} of the recording, samples
+     * {@code [block * blockSamples, (block + 1) * blockSamples)}, e.g. for upload.
+     *
+     * @param scratch at least {@code blockSamples} long
+     * @return number of bytes written to {@code dst}, 0 past the end of the recording
+     */
+    public int encodeBlock(long block, int blockSamples, short[] scratch, byte[] dst, int dstOff) throws IOException {
+        int n = read(block * blockSamples, scratch, 0, blockSamples);
+        return n == 0 ? 0 : EcgBlockCodec.encode(scratch, 0, n, dst, dstOff);
+    }
+
+    private ShortBuffer segment(int segment) throws IOException {
+        if (segment >= segments.length) {
+            ShortBuffer[] grown = new ShortBuffer[Math.max(segment + 1, segments.length * 2)];
+            System.arraycopy(segments, 0, grown, 0, segments.length);
+            segments = grown;
+        }
+        if (segments[segment] == null) {
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile(directory, segment), "r")) {
+                MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                        (long) samplesPerSegment * 2);
+                segments[segment] = buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            }
+        }
+        return segments[segment];
+    }
+
+    /** Drops the mappings; the OS unmaps them once they are garbage collected. */
+    @Override
+    public void close() {
+        segments = new ShortBuffer[0];
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.medicarenow.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Uploads a recording as a sequence of compressed {@link EcgChunk}s, resuming where it left
+ * off after a crash or a loss of connectivity.
+ *
+ * Chunk i holds samples {@code [i * CHUNK_SAMPLES, (i + 1) * CHUNK_SAMPLES)}, 33 seconds at
+ * 500 Hz. That is typically 15 KB and never more than about 100 KB, well under the 1 MiB limit
+ * of a Firestore document.
+ *
+ * At most {@code maxInFlight} chunks are written at a time, and only the
+ * {@code maxInFlight} chunks starting at the oldest unacknowledged one, so a slow write
+ * holds back the ones after it rather than piling them up. That oldest chunk is saved to
+ * {@code upload.bin} in the recording directory whenever it advances. Chunks after it that
+ * were acknowledged before a crash are written again, so the sink must store a chunk under
+ * its session and index, replacing what is there.
+ *
+ * The last, partial chunk of the recording is only written when asked for, e.g. when the
+ * recording is stopped, and again whenever it has grown since. The samples of it that were
+ * acknowledged are saved with the checkpoint, so a finished recording opened again has
+ * nothing left to write.
+ *
+ * Methods may be called from any thread, and the sink may call back on any thread, including
+ * from within {@link ChunkSink#write}.
+ */
+public class EcgUploader implements Closeable {
+
+    /** Stores chunks, typically remotely. */
+    public interface ChunkSink {
+        /** Starts storing {@code chunk}; {@code callback} must be called exactly once. */
+        void write(EcgChunk chunk, Callback callback);
+    }
+
+    public interface Callback {
+        void onSuccess();
+
+        void onFailure(Exception e);
+    }
+
+    public static final int CHUNK_BLOCKS = 64;
+    public static final int CHUNK_SAMPLES = CHUNK_BLOCKS * EcgBlockCodec.DEFAULT_BLOCK_SAMPLES;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    static final String CHECKPOINT_FILE = "upload.bin";
+    // upload.bin layout, little endian
+    private static final int OFFSET_NEXT_CHUNK = 0;
+    private static final int OFFSET_CHUNK_SAMPLES = 8;
+    // Acknowledged samples of the next chunk; zero in files written before it was added
+    private static final int OFFSET_PARTIAL_SAMPLES = 12;
+    private static final int CHECKPOINT_SIZE = 16;
+
+    private static final byte IDLE = 0;
+    private static final byte IN_FLIGHT = 1;
+    private static final byte FAILED = 2;
+
+    private final EcgRecording recording;
+    private final ChunkSink sink;
+    private final int maxInFlight;
+    private final MappedByteBuffer checkpoint;
+    private final short[] blockBuffer = new short[EcgBlockCodec.DEFAULT_BLOCK_SAMPLES];
+    private final byte[] chunkBuffer = new byte[CHUNK_BLOCKS * EcgBlockCodec.maxEncodedSize(
+            EcgBlockCodec.DEFAULT_BLOCK_SAMPLES)];
+
+    // The window of chunks [acked, acked + maxInFlight), by chunk % maxInFlight
+    private final byte[] state;
+    private final int[] ackedSamples;
+    private long acked;
+    private int inFlight = 0;
+    private boolean includePartialChunk = false;
+    private boolean sending = false;
+    private boolean closed = false;
+    private long chunksWritten = 0;
+    private long failures = 0;
+
+    public EcgUploader(EcgRecording recording, ChunkSink sink) throws IOException {
+        this(recording, sink, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public EcgUploader(EcgRecording recording, ChunkSink sink, int maxInFlight) throws IOException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Invalid number of writes in flight: " + maxInFlight);
+        }
+        this.recording = recording;
+        this.sink = sink;
+        this.maxInFlight = maxInFlight;
+        state = new byte[maxInFlight];
+        ackedSamples = new int[maxInFlight];
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(recording.getDirectory(), CHECKPOINT_FILE), "rw")) {
+            checkpoint = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_SIZE);
+        }
+        checkpoint.order(ByteOrder.LITTLE_ENDIAN);
+        if (checkpoint.getInt(OFFSET_CHUNK_SAMPLES) == CHUNK_SAMPLES) {
+            acked = checkpoint.getLong(OFFSET_NEXT_CHUNK);
+            int partial = checkpoint.getInt(OFFSET_PARTIAL_SAMPLES);
+            ackedSamples[slot(acked)] = partial > 0 && partial < CHUNK_SAMPLES ? partial : 0;
+        } else {
+            // New, or written with another chunk size: start over, rewriting is harmless
+            acked = 0;
+            checkpoint.putLong(OFFSET_NEXT_CHUNK, 0);
+            checkpoint.putInt(OFFSET_CHUNK_SAMPLES, CHUNK_SAMPLES);
+            checkpoint.putInt(OFFSET_PARTIAL_SAMPLES, 0);
+        }
+    }
+
+    /**
+     * Writes the chunks that are not stored yet, as far as the in-flight limit allows, and
+     * retries failed ones. Further chunks are written as earlier ones are acknowledged, so
+     * calling this every few seconds while recording, and once the network is back, is
+     * enough to keep up.
+     *
+     * @param includePartialChunk also write the incomplete last chunk, e.g. once the
+     *                            recording has stopped
+     */
+    public synchronized void pump(boolean includePartialChunk) throws IOException {
+        this.includePartialChunk = includePartialChunk;
+        for (int slot = 0; slot < maxInFlight; slot++) {
+            if (state[slot] == FAILED) {
+                state[slot] = IDLE;
+            }
+        }
+        send();
+    }
+
+    private void send() throws IOException {
+        // A sink that calls back from write() re-enters here, let the outer loop continue
+        if (sending || closed) {
+            return;
+        }
+        sending = true;
+        try {
+            long sampleCount = recording.getSampleCount();
+            long chunk;
+            while (inFlight < maxInFlight && (chunk = nextChunk(sampleCount)) >= 0) {
+                write(chunk, sampleCount);
+            }
+        } finally {
+            sending = false;
+        }
+    }
+
+    /** Oldest chunk in the window that has samples not written yet, or -1. */
+    private long nextChunk(long sampleCount) {
+        for (long chunk = acked; chunk < acked + maxInFlight; chunk++) {
+            int slot = slot(chunk);
+            int available = (int) Math.min(CHUNK_SAMPLES, sampleCount - chunk * CHUNK_SAMPLES);
+            if (available <= 0 || (available < CHUNK_SAMPLES && !includePartialChunk)) {
+                return -1;
+            }
+            if (state[slot] == IDLE && ackedSamples[slot] < available) {
+                return chunk;
+            }
+        }
+        return -1;
+    }
+
+    private void write(long chunk, long sampleCount) throws IOException {
+        long firstSample = chunk * CHUNK_SAMPLES;
+        int samples = (int) Math.min(CHUNK_SAMPLES, sampleCount - firstSample);
+        int blockSamples = EcgBlockCodec.DEFAULT_BLOCK_SAMPLES;
+        long firstBlock = firstSample / blockSamples;
+        long endBlock = (firstSample + samples + blockSamples - 1) / blockSamples;
+        int length = 0;
+        for (long block = firstBlock; block < endBlock; block++) {
+            // Blocks past the snapshot of the count would pick up samples appended meanwhile
+            int n = (int) Math.min(blockSamples, firstSample + samples - block * blockSamples);
+            if (recording.read(block * blockSamples, blockBuffer, 0, n) != n) {
+                throw new IOException("Recording shrank below sample " + (firstSample + samples));
+            }
+            length += EcgBlockCodec.encode(blockBuffer, 0, n, chunkBuffer, length);
+        }
+
+        EcgChunk encoded = new EcgChunk(recording.getSessionId(), chunk, firstSample, samples,
+                recording.timeOfSample(firstSample), recording.getSampleRate(), recording.getCountsPerMillivolt(),
+                blockSamples, Arrays.copyOf(chunkBuffer, length));
+        state[slot(chunk)] = IN_FLIGHT;
+        inFlight++;
+        chunksWritten++;
+        sink.write(encoded, new Callback() {
+            @Override
+            public void onSuccess() {
+                onWritten(chunk, samples);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                onFailed(chunk);
+            }
+        });
+    }
+
+    private synchronized void onWritten(long chunk, int samples) {
+        if (closed) {
+            return;
+        }
+        int slot = slot(chunk);
+        state[slot] = IDLE;
+        inFlight--;
+        ackedSamples[slot] = Math.max(ackedSamples[slot], samples);
+
+        long previous = acked;
+        while (ackedSamples[slot(acked)] == CHUNK_SAMPLES && state[slot(acked)] == IDLE) {
+            ackedSamples[slot(acked)] = 0;
+            acked++;
+        }
+        if (acked != previous) {
+            // Cleared first, a crash in between must not credit the new chunk with the old count
+            checkpoint.putInt(OFFSET_PARTIAL_SAMPLES, 0);
+            checkpoint.putLong(OFFSET_NEXT_CHUNK, acked);
+        }
+        checkpoint.putInt(OFFSET_PARTIAL_SAMPLES, ackedSamples[slot(acked)]);
+        try {
+            send();
+        } catch (IOException e) {
+            // The next pump() runs into it again and reports it
+        }
+    }
+
+    private synchronized void onFailed(long chunk) {
+        if (closed) {
+            return;
+        }
+        // Left for the next pump(), retrying right away would spin while offline
+        state[slot(chunk)] = FAILED;
+        inFlight--;
+        failures++;
+    }
+
+    private int slot(long chunk) {
+        return (int) (chunk % maxInFlight);
+    }
+
+    /** Samples stored by the sink, counted from the start of the recording. */
+    public synchronized long getUploadedSamples() {
+        return acked * CHUNK_SAMPLES + ackedSamples[slot(acked)];
+    }
+
+    public synchronized boolean isComplete() {
+        return inFlight == 0 && getUploadedSamples() >= recording.getSampleCount();
+    }
+
+    /** Index of the oldest chunk not stored yet, where uploading resumes. */
+    public synchronized long getCheckpoint() {
+        return acked;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /** Chunks handed to the sink, retries included. */
+    public synchronized long getChunksWritten() {
+        return chunksWritten;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Stops writing. Callbacks of writes still in flight are ignored, those chunks are
+     * written again by the next uploader of the recording.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        checkpoint.force();
+    }
+}
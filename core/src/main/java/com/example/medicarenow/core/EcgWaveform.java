@@ -0,0 +1,43 @@
+package com.example.medicarenow.core;
+
+/**
+ * Synthetic ECG waveform used for simulation and tests. Amplitudes are in arbitrary units,
+ * from about -0.5 at the Q wave to an R peak of about 2.7 at the end of the QRS complex.
+ */
+public final class EcgWaveform {
+
+    private EcgWaveform() {
+    }
+
+    public static float point(int sampleInBeat, int samplesPerBeat) {
+        float t = (float)sampleInBeat / samplesPerBeat;
+
+        // ECG waveform components
+        float pWave = 0, qrsComplex = 0, tWave = 0;
+
+        // P Wave
+        if (t >= 0.1 && t <= 0.2) {
+            pWave = (float)(0.25 * Math.sin(Math.PI * (t - 0.1) / 0.1));
+        }
+
+        // QRS Complex
+        if (t >= 0.25 && t <= 0.35) {
+            if (t <= 0.27) {
+                qrsComplex = -0.5f * (t - 0.25f)/0.02f;
+            }
+            else if (t <= 0.30) {
+                qrsComplex = 1.0f - 2.5f * (t - 0.27f);
+            }
+            else {
+                qrsComplex = -0.3f + 3.0f * (t - 0.30f)/0.05f;
+            }
+        }
+
+        // T Wave
+        if (t >= 0.4 && t <= 0.6) {
+            tWave = (float)(0.3 * Math.sin(Math.PI * (t - 0.4) / 0.2));
+        }
+
+        return pWave + qrsComplex + tWave + 0.05f * (float)Math.sin(2 * Math.PI * t * 5);
+    }
+}
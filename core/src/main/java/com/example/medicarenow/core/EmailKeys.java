@@ -0,0 +1,45 @@
+package com.example.medicarenow.core;
+
+import java.util.Locale;
+
+/**
+ * Turns email addresses into keys that are equal for addresses differing only in case or
+ * surrounding spaces, and that are valid Firestore document ids.
+ */
+public final class EmailKeys {
+
+    private EmailKeys() {
+    }
+
+    public static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Whether {@code email} can be turned into a key, which screens check before looking it up. */
+    public static boolean isValid(String email) {
+        return email.indexOf('@') >= 0;
+    }
+
+    /**
+     * The normalized address with '%' and '/' percent encoded, since ids cannot contain a
+     * slash; addresses have an '@', so the id is never "." or ".." or reserved like "__x__".
+     */
+    public static String documentId(String email) {
+        String normalized = normalize(email);
+        if (!isValid(normalized)) {
+            throw new IllegalArgumentException("Not an email address: " + email);
+        }
+        StringBuilder id = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c == '%') {
+                id.append("%25");
+            } else if (c == '/') {
+                id.append("%2F");
+            } else {
+                id.append(c);
+            }
+        }
+        return id.toString();
+    }
+}
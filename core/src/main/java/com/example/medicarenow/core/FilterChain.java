@@ -0,0 +1,60 @@
+package com.example.medicarenow.core;
+
+/**
+ * Cascade of {@link Biquad} stages applied in place to blocks of samples.
+ *
+ * {@link #forEcg} builds the conditioning used for raw electrode data between the Bluetooth
+ * decoder and the display/analytics: baseline wander high-pass, mains notch and low-pass.
+ * Processing a block never allocates. Not thread-safe, each stream needs its own chain.
+ */
+public class FilterChain {
+
+    public static final double BASELINE_CUTOFF_HZ = 0.5;
+    public static final double LOW_PASS_CUTOFF_HZ = 40;
+    private static final double BUTTERWORTH_Q = 0.7071;
+    private static final double NOTCH_Q = 20;
+
+    private final Biquad[] stages;
+
+    public FilterChain(Biquad... stages) {
+        this.stages = stages.clone();
+    }
+
+    /**
+     * @param mainsHz 50 or 60 depending on the region; 0 to skip the notch
+     */
+    public static FilterChain forEcg(int sampleRateHz, int mainsHz) {
+        Biquad highPass = Biquad.highPass(sampleRateHz, BASELINE_CUTOFF_HZ, BUTTERWORTH_Q);
+        // The low-pass only makes sense below Nyquist
+        double lowPassHz = Math.min(LOW_PASS_CUTOFF_HZ, 0.45 * sampleRateHz);
+        Biquad lowPass = Biquad.lowPass(sampleRateHz, lowPassHz, BUTTERWORTH_Q);
+        if (mainsHz <= 0 || mainsHz >= sampleRateHz / 2) {
+            return new FilterChain(highPass, lowPass);
+        }
+        return new FilterChain(highPass, Biquad.notch(sampleRateHz, mainsHz, NOTCH_Q), lowPass);
+    }
+
+    /** Filters {@code len} samples of {@code buf} in place. */
+    public void process(float[] buf, int off, int len) {
+        // Stage by stage over the whole block keeps each stage's coefficients in registers
+        for (Biquad stage : stages) {
+            stage.process(buf, off, len);
+        }
+    }
+
+    /**
+     * Converts raw int16 samples to floats ({@code dst = src * scale}) and filters them.
+     */
+    public void process(short[] src, int srcOff, float[] dst, int dstOff, int len, float scale) {
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = src[srcOff + i] * scale;
+        }
+        process(dst, dstOff, len);
+    }
+
+    public void reset() {
+        for (Biquad stage : stages) {
+            stage.reset();
+        }
+    }
+}
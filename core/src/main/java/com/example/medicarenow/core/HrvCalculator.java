@@ -0,0 +1,140 @@
+package com.example.medicarenow.core;
+
+/**
+ * Time-domain heart rate variability (SDNN, RMSSD, pNN50) over a sliding time window of RR
+ * intervals, e.g. the standard 5 minute short-term window or a 24 hour Holter window.
+ *
+ * Running integer sums are updated when a beat enters or leaves the window, so adding a beat
+ * costs O(1) and nothing is ever re-scanned. RR intervals are kept in a preallocated ring
+ * sized for the window at the highest accepted heart rate, so memory is bounded up front
+ * (about 1.7 MB for 24 hours).
+ */
+public class HrvCalculator {
+
+    /** Intervals outside this range are treated as artifacts (40-200 BPM plus margin). */
+    public static final int MIN_RR_MS = 250;
+    public static final int MAX_RR_MS = 2000;
+    private static final int NN50_THRESHOLD_MS = 50;
+
+    private final long windowMillis;
+    private final int[] rr;
+    // True if rr[i] directly follows the previous interval in the ring (no artifact between)
+    private final boolean[] successive;
+    private int head = 0;
+    private int count = 0;
+
+    private long windowTime = 0;
+    private long sum = 0;
+    private long sumSquares = 0;
+    private int pairs = 0;
+    private long sumSquaredDiffs = 0;
+    private int nn50 = 0;
+    private boolean lastAccepted = false;
+
+    public HrvCalculator(long windowMillis) {
+        this.windowMillis = windowMillis;
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, windowMillis / MIN_RR_MS + 1);
+        this.rr = new int[capacity];
+        this.successive = new boolean[capacity];
+    }
+
+    /**
+     * Adds the next RR interval. Out of range intervals are dropped and break the chain of
+     * successive differences.
+     *
+     * @return false if the interval was rejected as an artifact
+     */
+    public boolean addInterval(int rrMillis) {
+        if (rrMillis < MIN_RR_MS || rrMillis > MAX_RR_MS) {
+            lastAccepted = false;
+            return false;
+        }
+
+        if (count == rr.length) {
+            evictOldest();
+        }
+
+        int tail = (head + count) % rr.length;
+        boolean paired = lastAccepted && count > 0;
+        if (paired) {
+            int diff = rrMillis - rr[(tail + rr.length - 1) % rr.length];
+            addPair(diff, 1);
+        }
+        rr[tail] = rrMillis;
+        successive[tail] = paired;
+        count++;
+        lastAccepted = true;
+
+        sum += rrMillis;
+        sumSquares += (long) rrMillis * rrMillis;
+        windowTime += rrMillis;
+
+        while (windowTime > windowMillis && count > 1) {
+            evictOldest();
+        }
+        return true;
+    }
+
+    private void evictOldest() {
+        int oldest = rr[head];
+        int next = (head + 1) % rr.length;
+        if (count > 1 && successive[next]) {
+            addPair(rr[next] - oldest, -1);
+            successive[next] = false;
+        }
+        sum -= oldest;
+        sumSquares -= (long) oldest * oldest;
+        windowTime -= oldest;
+        head = next;
+        count--;
+    }
+
+    private void addPair(int diff, int sign) {
+        pairs += sign;
+        sumSquaredDiffs += sign * (long) diff * diff;
+        if (Math.abs(diff) > NN50_THRESHOLD_MS) {
+            nn50 += sign;
+        }
+    }
+
+    public void reset() {
+        head = 0;
+        count = 0;
+        windowTime = 0;
+        sum = 0;
+        sumSquares = 0;
+        pairs = 0;
+        sumSquaredDiffs = 0;
+        nn50 = 0;
+        lastAccepted = false;
+    }
+
+    /** Number of RR intervals currently in the window. */
+    public int getIntervalCount() {
+        return count;
+    }
+
+    public double getMeanRr() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /** Standard deviation of the RR intervals, in milliseconds. */
+    public double getSdnn() {
+        if (count < 2) {
+            return 0;
+        }
+        double mean = (double) sum / count;
+        double variance = ((double) sumSquares - count * mean * mean) / (count - 1);
+        return Math.sqrt(Math.max(0, variance));
+    }
+
+    /** Root mean square of successive RR differences, in milliseconds. */
+    public double getRmssd() {
+        return pairs == 0 ? 0 : Math.sqrt((double) sumSquaredDiffs / pairs);
+    }
+
+    /** Percentage of successive differences larger than 50 ms. */
+    public double getPnn50() {
+        return pairs == 0 ? 0 : 100.0 * nn50 / pairs;
+    }
+}
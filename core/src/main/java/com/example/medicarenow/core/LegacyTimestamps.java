@@ -0,0 +1,61 @@
+package com.example.medicarenow.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Parses the {@code timestamp} strings that older app versions stored with
+ * {@code new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())}, so they can be
+ * migrated to numeric timestamps.
+ *
+ * The default locale decided the digits, e.g. Arabic-Indic or Devanagari ones, so any Unicode
+ * decimal digit is accepted. The strings carry no time zone; the caller supplies the one they
+ * were most likely written in.
+ */
+public final class LegacyTimestamps {
+
+    private static final String PATTERN = "dddd-dd-dd dd:dd:dd";
+
+    private LegacyTimestamps() {
+    }
+
+    /** @return milliseconds since the epoch, or -1 if {@code text} is not a legacy timestamp */
+    public static long parseMillis(String text, TimeZone zone) {
+        String trimmed = text.trim();
+        if (trimmed.length() != PATTERN.length()) {
+            return -1;
+        }
+        int[] fields = new int[6];
+        int field = 0;
+        for (int i = 0; i < PATTERN.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (PATTERN.charAt(i) == 'd') {
+                int digit = Character.digit(c, 10);
+                if (digit < 0) {
+                    return -1;
+                }
+                fields[field] = fields[field] * 10 + digit;
+            } else if (c != PATTERN.charAt(i)) {
+                return -1;
+            } else {
+                field++;
+            }
+        }
+
+        int month = fields[1];
+        int day = fields[2];
+        if (month < 1 || month > 12 || day < 1 || day > 31 || fields[3] > 23 || fields[4] > 59 || fields[5] > 59) {
+            return -1;
+        }
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.clear();
+        calendar.setLenient(false);
+        calendar.set(fields[0], month - 1, day, fields[3], fields[4], fields[5]);
+        try {
+            return calendar.getTimeInMillis();
+        } catch (IllegalArgumentException e) {
+            // e.g. February 30th
+            return -1;
+        }
+    }
+}
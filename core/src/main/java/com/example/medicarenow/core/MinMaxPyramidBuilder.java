@@ -0,0 +1,130 @@
+package com.example.medicarenow.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Builds the {@link MinMaxPyramid} files of a session while it is being recorded. Buckets
+ * are appended as they complete, so the cost is a comparison per sample plus one small
+ * buffered write every few thousand samples, and nothing has to be re-read afterwards.
+ */
+class MinMaxPyramidBuilder {
+
+    // Per level: 1 KB of buckets before it is written out
+    private static final int BUFFER_BUCKETS = 256;
+
+    private final File directory;
+    private final FileChannel[] files = new FileChannel[MinMaxPyramid.LEVELS];
+    private final ByteBuffer[] buffers = new ByteBuffer[MinMaxPyramid.LEVELS];
+    // Running min/max and children seen in the bucket being filled at each level
+    private final short[] levelMin = new short[MinMaxPyramid.LEVELS];
+    private final short[] levelMax = new short[MinMaxPyramid.LEVELS];
+    private final int[] levelFill = new int[MinMaxPyramid.LEVELS];
+
+    MinMaxPyramidBuilder(File directory) {
+        this.directory = directory;
+        for (int level = 0; level < MinMaxPyramid.LEVELS; level++) {
+            buffers[level] = ByteBuffer.allocate(BUFFER_BUCKETS * MinMaxPyramid.BUCKET_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            levelMin[level] = Short.MAX_VALUE;
+            levelMax[level] = EcgRecording.GAP;
+        }
+    }
+
+    void add(short[] src, int off, int len) throws IOException {
+        short min = levelMin[0];
+        short max = levelMax[0];
+        int fill = levelFill[0];
+        for (int i = off; i < off + len; i++) {
+            short sample = src[i];
+            // Real samples are never GAP, so gaps are left out of min/max for free
+            if (sample != EcgRecording.GAP) {
+                if (sample < min) {
+                    min = sample;
+                }
+                if (sample > max) {
+                    max = sample;
+                }
+            }
+            if (++fill == MinMaxPyramid.BASE_BUCKET_SAMPLES) {
+                complete(0, min, max);
+                min = Short.MAX_VALUE;
+                max = EcgRecording.GAP;
+                fill = 0;
+            }
+        }
+        levelMin[0] = min;
+        levelMax[0] = max;
+        levelFill[0] = fill;
+    }
+
+    /** Writes a finished bucket and folds it into the bucket above. */
+    private void complete(int level, short min, short max) throws IOException {
+        boolean empty = max == EcgRecording.GAP;
+        ByteBuffer buffer = buffers[level];
+        buffer.putShort(empty ? EcgRecording.GAP : min);
+        buffer.putShort(max);
+        if (!buffer.hasRemaining()) {
+            write(level);
+        }
+
+        int parent = level + 1;
+        if (parent == MinMaxPyramid.LEVELS) {
+            return;
+        }
+        if (!empty) {
+            if (min < levelMin[parent]) {
+                levelMin[parent] = min;
+            }
+            if (max > levelMax[parent]) {
+                levelMax[parent] = max;
+            }
+        }
+        if (++levelFill[parent] == MinMaxPyramid.FANOUT) {
+            short parentMin = levelMin[parent];
+            short parentMax = levelMax[parent];
+            levelMin[parent] = Short.MAX_VALUE;
+            levelMax[parent] = EcgRecording.GAP;
+            levelFill[parent] = 0;
+            complete(parent, parentMin, parentMax);
+        }
+    }
+
+    private void write(int level) throws IOException {
+        ByteBuffer buffer = buffers[level];
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            if (files[level] == null) {
+                files[level] = new RandomAccessFile(MinMaxPyramid.levelFile(directory, level), "rw").getChannel();
+            }
+            FileChannel file = files[level];
+            while (buffer.hasRemaining()) {
+                file.write(buffer, file.size());
+            }
+        }
+        buffer.clear();
+    }
+
+    /** Writes out every completed bucket. */
+    void flush(boolean force) throws IOException {
+        for (int level = 0; level < MinMaxPyramid.LEVELS; level++) {
+            write(level);
+            if (force && files[level] != null) {
+                files[level].force(false);
+            }
+        }
+    }
+
+    void close() throws IOException {
+        flush(true);
+        for (FileChannel file : files) {
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.medicarenow.core;
+
+/**
+ * Streaming QRS detector after Pan and Tompkins (1985).
+ *
+ * Each sample goes through a 5-15 Hz band-pass, a five-point derivative, squaring and a
+ * 150 ms moving-window integrator. Peaks of the integrated signal are classified as QRS or
+ * noise against adaptive thresholds, with a 200 ms refractory period and a search-back for
+ * missed beats when no QRS was found for 166% of the average RR interval.
+ *
+ * Work per sample is constant and all state lives in preallocated primitive arrays.
+ * Not thread-safe: feed it from a single thread.
+ */
+public class QrsDetector {
+
+    public interface Listener {
+        /**
+         * @param sampleIndex index of the R peak in the input stream
+         * @param rrMillis    interval to the previous beat, or -1 for the first beat
+         */
+        void onBeat(long sampleIndex, int rrMillis);
+    }
+
+    private static final double LEARNING_SECONDS = 2.0;
+    private static final double REFRACTORY_SECONDS = 0.2;
+    private static final double WINDOW_SECONDS = 0.15;
+    private static final int RR_AVERAGE_BEATS = 8;
+
+    private final int sampleRateHz;
+    private final Listener listener;
+
+    private final Biquad highPass;
+    private final Biquad lowPass;
+    private final float[] derivativeHistory = new float[4];
+    private int derivativeIndex = 0;
+    private final float[] window;
+    private int windowIndex = 0;
+    private double windowSum = 0;
+
+    private final int learningSamples;
+    private final int refractorySamples;
+    // Delay from the R peak to the end of the integrator rise it produces
+    private final int detectionDelay;
+
+    private long sampleIndex = 0;
+    private float learningMax = 0;
+    private double learningSum = 0;
+    private float spki;
+    private float npki;
+
+    // Local maximum tracking on the integrated signal
+    private float previous = 0;
+    private boolean rising = false;
+
+    // Largest noise-classified peak since the last beat, used by the search-back
+    private float searchBackPeak = 0;
+    private long searchBackIndex = -1;
+
+    private long lastBeatIndex = -1;
+    private final int[] rrHistory = new int[RR_AVERAGE_BEATS];
+    private int rrCount = 0;
+    private int rrHistoryIndex = 0;
+    private int rrSum = 0;
+
+    public QrsDetector(int sampleRateHz, Listener listener) {
+        this.sampleRateHz = sampleRateHz;
+        this.listener = listener;
+        this.highPass = Biquad.highPass(sampleRateHz, 5, 0.707);
+        this.lowPass = Biquad.lowPass(sampleRateHz, 15, 0.707);
+        this.window = new float[Math.max(1, (int) Math.round(WINDOW_SECONDS * sampleRateHz))];
+        this.learningSamples = (int) (LEARNING_SECONDS * sampleRateHz);
+        this.refractorySamples = (int) (REFRACTORY_SECONDS * sampleRateHz);
+        this.detectionDelay = 2 + window.length / 2;
+    }
+
+    public void process(float[] samples, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            process(samples[i]);
+        }
+    }
+
+    public void process(float sample) {
+        float filtered = lowPass.process(highPass.process(sample));
+
+        // y[n] = (2x[n] + x[n-1] - x[n-3] - 2x[n-4]) / 8, history holds x[n-1..n-4]
+        float[] h = derivativeHistory;
+        int i1 = (derivativeIndex + 3) & 3;
+        int i3 = (derivativeIndex + 1) & 3;
+        int i4 = derivativeIndex;
+        float derivative = (2 * filtered + h[i1] - h[i3] - 2 * h[i4]) * 0.125f;
+        h[derivativeIndex] = filtered;
+        derivativeIndex = (derivativeIndex + 1) & 3;
+
+        float squared = derivative * derivative;
+        windowSum += squared - window[windowIndex];
+        window[windowIndex] = squared;
+        if (++windowIndex == window.length) {
+            windowIndex = 0;
+        }
+        float integrated = (float) (windowSum / window.length);
+
+        if (sampleIndex < learningSamples) {
+            learningMax = Math.max(learningMax, integrated);
+            learningSum += integrated;
+            if (sampleIndex == learningSamples - 1) {
+                spki = learningMax / 3;
+                npki = (float) (learningSum / learningSamples) / 2;
+            }
+        } else {
+            detectPeak(integrated);
+        }
+
+        previous = integrated;
+        sampleIndex++;
+    }
+
+    private void detectPeak(float integrated) {
+        if (integrated > previous) {
+            rising = true;
+        } else if (rising && integrated < previous) {
+            rising = false;
+            classifyPeak(previous, sampleIndex - 1);
+        }
+
+        if (lastBeatIndex >= 0 && rrCount > 0 && searchBackIndex >= 0) {
+            long sinceBeat = sampleIndex - lastBeatIndex;
+            long rrAverageSamples = (long) rrSum * sampleRateHz / (1000L * rrCount);
+            float threshold2 = 0.5f * threshold();
+            if (sinceBeat > rrAverageSamples * 166 / 100 && searchBackPeak > threshold2) {
+                spki = 0.25f * searchBackPeak + 0.75f * spki;
+                beat(searchBackIndex);
+            }
+        }
+    }
+
+    private void classifyPeak(float peak, long peakIndex) {
+        boolean refractory = lastBeatIndex >= 0 && peakIndex - lastBeatIndex < refractorySamples;
+        if (peak > threshold() && !refractory) {
+            spki = 0.125f * peak + 0.875f * spki;
+            beat(peakIndex);
+        } else {
+            npki = 0.125f * peak + 0.875f * npki;
+            if (!refractory && peak > searchBackPeak) {
+                searchBackPeak = peak;
+                searchBackIndex = peakIndex;
+            }
+        }
+    }
+
+    private float threshold() {
+        return npki + 0.25f * (spki - npki);
+    }
+
+    private void beat(long peakIndex) {
+        int rrMillis = -1;
+        if (lastBeatIndex >= 0) {
+            rrMillis = (int) ((peakIndex - lastBeatIndex) * 1000 / sampleRateHz);
+            rrSum += rrMillis - rrHistory[rrHistoryIndex];
+            rrHistory[rrHistoryIndex] = rrMillis;
+            rrHistoryIndex = (rrHistoryIndex + 1) % RR_AVERAGE_BEATS;
+            rrCount = Math.min(rrCount + 1, RR_AVERAGE_BEATS);
+        }
+        lastBeatIndex = peakIndex;
+        searchBackPeak = 0;
+        searchBackIndex = -1;
+        listener.onBeat(Math.max(0, peakIndex - detectionDelay), rrMillis);
+    }
+
+    /** Heart rate from the average of the last eight RR intervals, 0 until two beats were seen. */
+    public int getHeartRate() {
+        return rrCount == 0 ? 0 : Math.round(60000f * rrCount / rrSum);
+    }
+
+    public int getSampleRate() {
+        return sampleRateHz;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.medicarenow.core;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Moves items from a durable local queue to a remote store in batches.
+ *
+ * An item is removed from the queue only after the batch holding it has been acknowledged,
+ * so nothing is lost if the store fails or the process dies. If it dies between the two, the
+ * batch is written again on the next drain. Sinks therefore store each item under a key
+ * assigned when it was queued, which turns the second write into an overwrite with the same
+ * data, and every item ends up stored exactly once.
+ */
+public final class QueueDrainer {
+
+    /** A persistent FIFO. */
+    public interface Queue<T> {
+        /** Returns the oldest items, at most {@code max}, without removing them. */
+        List<T> peek(int max) throws IOException;
+
+        void remove(List<T> items) throws IOException;
+    }
+
+    public interface Sink<T> {
+        /** Stores all of {@code items} or none, returning once the store has acknowledged them. */
+        void write(List<T> items) throws Exception;
+    }
+
+    private QueueDrainer() {
+    }
+
+    /**
+     * Writes batches of up to {@code batchSize} items until the queue is empty. A failed
+     * write is thrown and leaves its batch queued for the next drain.
+     *
+     * @return number of items written and removed
+     */
+    public static <T> long drain(Queue<T> queue, Sink<T> sink, int batchSize) throws Exception {
+        long drained = 0;
+        List<T> batch;
+        while (!(batch = queue.peek(batchSize)).isEmpty()) {
+            sink.write(batch);
+            queue.remove(batch);
+            drained += batch.size();
+        }
+        return drained;
+    }
+}
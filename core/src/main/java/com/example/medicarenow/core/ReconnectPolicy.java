@@ -0,0 +1,42 @@
+package com.example.medicarenow.core;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter for re-establishing a dropped device link.
+ *
+ * The n-th retry waits a random time between half and all of
+ * {@code min(maxDelay, initialDelay * multiplier^n)}, so devices that dropped at the same
+ * moment (e.g. the phone's radio restarted) do not all retry in lockstep.
+ */
+public class ReconnectPolicy {
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final Random random;
+
+    public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, double multiplier, Random random) {
+        if (initialDelayMillis <= 0 || maxDelayMillis < initialDelayMillis || multiplier < 1) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialDelayMillis + ".." + maxDelayMillis
+                    + " x" + multiplier);
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.random = random;
+    }
+
+    /** 0.5 s doubling up to 30 s, a sensible default for Bluetooth links. */
+    public static ReconnectPolicy defaultPolicy() {
+        return new ReconnectPolicy(500, 30_000, 2.0, new Random());
+    }
+
+    /** @param attempt number of consecutive failed attempts so far, starting at 0 */
+    public long delayMillis(int attempt) {
+        double ceiling = initialDelayMillis * Math.pow(multiplier, Math.min(attempt, 62));
+        long capped = (long) Math.min(maxDelayMillis, ceiling);
+        long half = capped / 2;
+        return half + (long) (random.nextDouble() * (capped - half + 1));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.medicarenow.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring of int16 samples.
+ *
+ * The producer never blocks: when the ring is full the oldest unread samples are discarded
+ * to make room and counted in {@link #getDroppedCount()}. Positions are absolute sample
+ * indexes in the stream, so a consumer can tell exactly where each batch starts.
+ *
+ * Both ends claim space by moving {@code tail} with a CAS. A consumer read is only accepted
+ * if the producer did not drop (and therefore overwrite) the samples while they were being
+ * copied; otherwise the read is retried from the new tail.
+ */
+public class SampleRingBuffer {
+
+    private final short[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long lastReadPosition;
+
+    /** @param capacity number of samples, rounded up to a power of two */
+    public SampleRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new short[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /** Producer side. Appends {@code len} samples, dropping the oldest unread ones if needed. */
+    public void write(short[] src, int off, int len) {
+        int capacity = buffer.length;
+        long h = head.get();
+        if (len > capacity) {
+            // Only the newest samples can fit, the head of the batch is skipped straight away
+            int skipped = len - capacity;
+            off += skipped;
+            len = capacity;
+            h += skipped;
+        }
+
+        long oldestKept = h + len - capacity;
+        while (true) {
+            long t = tail.get();
+            if (t >= oldestKept) {
+                break;
+            }
+            if (tail.compareAndSet(t, oldestKept)) {
+                dropped.addAndGet(oldestKept - t);
+                break;
+            }
+        }
+
+        int index = (int) (h & mask);
+        int first = Math.min(len, capacity - index);
+        System.arraycopy(src, off, buffer, index, first);
+        if (first < len) {
+            System.arraycopy(src, off + first, buffer, 0, len - first);
+        }
+        head.lazySet(h + len);
+    }
+
+    /**
+     * Consumer side. Copies up to {@code max} of the oldest unread samples into {@code dst}.
+     *
+     * @return number of samples copied, 0 if the ring is empty
+     */
+    public int read(short[] dst, int off, int max) {
+        int capacity = buffer.length;
+        while (true) {
+            long t = tail.get();
+            long h = head.get();
+            int n = (int) Math.min(h - t, max);
+            if (n <= 0) {
+                return 0;
+            }
+
+            int index = (int) (t & mask);
+            int first = Math.min(n, capacity - index);
+            System.arraycopy(buffer, index, dst, off, first);
+            if (first < n) {
+                System.arraycopy(buffer, 0, dst, off + first, n - first);
+            }
+
+            if (tail.compareAndSet(t, t + n)) {
+                lastReadPosition = t;
+                return n;
+            }
+            // The producer overran us while copying, retry from the new oldest sample
+        }
+    }
+
+    /** Consumer side. Absolute stream position of the first sample returned by the last read. */
+    public long getLastReadPosition() {
+        return lastReadPosition;
+    }
+
+    /** Total number of samples ever written, including dropped ones. */
+    public long getWrittenCount() {
+        return head.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.medicarenow.core;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands samples from a reader thread to a consumer running on another executor (usually
+ * the main Looper) through a {@link SampleRingBuffer}.
+ *
+ * Writes never allocate and never block. At most one drain task is queued on the executor
+ * at any time, no matter how often the producer writes; each drain empties the ring in
+ * batches of up to {@code batchSize} samples.
+ *
+ * Samples the device never delivered (e.g. while the link was down) are announced with
+ * {@link #writeGap} and reported in order between the surrounding batches, so positions seen
+ * by the consumer stay on the device's sample clock.
+ */
+public class SampleStream {
+
+    public interface Consumer {
+        /**
+         * @param position absolute index of {@code buf[off]} in the stream; it jumps forward
+         *                 when samples were dropped because the consumer fell behind
+         */
+        void onSamples(short[] buf, int off, int len, long position);
+
+        /**
+         * Called between batches when {@code lostSamples} samples starting at {@code position}
+         * were never received from the device. The next batch starts at the position after
+         * the gap.
+         */
+        default void onGap(long position, long lostSamples) {
+        }
+    }
+
+    // Gaps waiting to be reported, a tiny SPSC queue; more pending gaps are merged
+    private static final int MAX_PENDING_GAPS = 16;
+
+    private final SampleRingBuffer ring;
+    private final short[] batch;
+    private final Executor executor;
+    private final Consumer consumer;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Runnable drainTask = this::drain;
+    private final long[] gapPositions = new long[MAX_PENDING_GAPS];
+    private final long[] gapLengths = new long[MAX_PENDING_GAPS];
+    private final AtomicLong gapHead = new AtomicLong();
+    private final AtomicLong gapTail = new AtomicLong();
+    // Producer side: lost samples of gaps that did not fit in the queue
+    private long carriedGap = 0;
+    // Consumer side: total length of the gaps reported so far
+    private long gapOffset = 0;
+    private long gapsReported = 0;
+    // Consumer side: ring position after the last sample delivered
+    private long consumedPosition = 0;
+
+    public SampleStream(int capacity, int batchSize, Executor executor, Consumer consumer) {
+        this.ring = new SampleRingBuffer(capacity);
+        this.batch = new short[batchSize];
+        this.executor = executor;
+        this.consumer = consumer;
+    }
+
+    /** Producer side, called from the reader thread. */
+    public void write(short[] src, int off, int len) {
+        if (carriedGap > 0) {
+            // Gaps that did not fit are reported before the next samples once there is room
+            publishGap(0);
+        }
+        ring.write(src, off, len);
+        scheduleDrain();
+    }
+
+    /**
+     * Producer side. Records that {@code lostSamples} samples are missing between the samples
+     * written so far and the next ones.
+     */
+    public void writeGap(long lostSamples) {
+        if (lostSamples > 0) {
+            publishGap(lostSamples);
+        }
+    }
+
+    private void publishGap(long lostSamples) {
+        long h = gapHead.get();
+        if (h - gapTail.get() == MAX_PENDING_GAPS) {
+            // The consumer is far behind, fold this gap into the next one that fits
+            carriedGap += lostSamples;
+            return;
+        }
+        int index = (int) (h % MAX_PENDING_GAPS);
+        gapPositions[index] = ring.getWrittenCount();
+        gapLengths[index] = lostSamples + carriedGap;
+        carriedGap = 0;
+        gapHead.set(h + 1);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(drainTask);
+        }
+    }
+
+    /** Consumer side, runs on the executor. */
+    public void drain() {
+        // Clear the flag first so a write racing with this drain schedules a new one
+        drainScheduled.set(false);
+        int n;
+        while ((n = ring.read(batch, 0, batch.length)) > 0) {
+            long start = ring.getLastReadPosition();
+            int delivered = 0;
+            // Gaps are published before the samples that follow them, so every gap inside
+            // this batch is already visible
+            long gapAt;
+            while ((gapAt = nextGapPosition()) >= 0 && gapAt < start + n) {
+                int upTo = (int) Math.max(0, gapAt - start);
+                if (upTo > delivered) {
+                    consumer.onSamples(batch, delivered, upTo - delivered, start + delivered + gapOffset);
+                    delivered = upTo;
+                }
+                reportGap();
+            }
+            consumer.onSamples(batch, delivered, n - delivered, start + delivered + gapOffset);
+            consumedPosition = start + n;
+        }
+        // A gap right after the last delivered sample, not followed by any samples yet
+        long gapAt;
+        while ((gapAt = nextGapPosition()) >= 0 && gapAt <= consumedPosition) {
+            reportGap();
+        }
+    }
+
+    /** Ring position of the oldest unreported gap, or -1 if there is none. */
+    private long nextGapPosition() {
+        long t = gapTail.get();
+        return t == gapHead.get() ? -1 : gapPositions[(int) (t % MAX_PENDING_GAPS)];
+    }
+
+    private void reportGap() {
+        long t = gapTail.get();
+        int index = (int) (t % MAX_PENDING_GAPS);
+        long position = gapPositions[index] + gapOffset;
+        long length = gapLengths[index];
+        gapTail.set(t + 1);
+        gapOffset += length;
+        gapsReported++;
+        consumer.onGap(position, length);
+    }
+
+    public long getDroppedCount() {
+        return ring.getDroppedCount();
+    }
+
+    public long getWrittenCount() {
+        return ring.getWrittenCount();
+    }
+
+    /** Consumer side. Number of gaps reported to the consumer. */
+    public long getGapsReported() {
+        return gapsReported;
+    }
+
+    public int getBacklog() {
+        return ring.size();
+    }
+}
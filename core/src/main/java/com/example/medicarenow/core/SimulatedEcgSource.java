@@ -0,0 +1,69 @@
+package com.example.medicarenow.core;
+
+/**
+ * Produces {@link EcgWaveform} samples at a fixed sample rate, paced by the caller's clock
+ * rather than by how often it is polled. Stands in for the Bluetooth ECG patch when no
+ * device is connected.
+ */
+public class SimulatedEcgSource {
+
+    private final int sampleRateHz;
+    private int samplesPerBeat;
+    private int nextSamplesPerBeat;
+    private int sampleInBeat = 0;
+    private long startNanos = -1;
+    private long samplesProduced = 0;
+    private long samplesSkipped = 0;
+
+    public SimulatedEcgSource(int sampleRateHz, int bpm) {
+        this.sampleRateHz = sampleRateHz;
+        setHeartRate(bpm);
+        samplesPerBeat = nextSamplesPerBeat;
+    }
+
+    public int getSampleRate() {
+        return sampleRateHz;
+    }
+
+    /**
+     * Samples dropped from backlogs so far. They come right before the samples returned by
+     * the read that skipped them.
+     */
+    public long getSamplesSkipped() {
+        return samplesSkipped;
+    }
+
+    /** Takes effect at the next beat boundary so the waveform stays continuous. */
+    public void setHeartRate(int bpm) {
+        nextSamplesPerBeat = (60 * sampleRateHz) / bpm;
+    }
+
+    /**
+     * Writes the samples that became due since the previous call, at most {@code max}.
+     *
+     * @param nowNanos monotonic time, e.g. {@code System.nanoTime()}
+     * @return number of samples written
+     */
+    public int read(long nowNanos, float[] out, int off, int max) {
+        if (startNanos < 0) {
+            startNanos = nowNanos;
+        }
+        long due = (nowNanos - startNanos) * sampleRateHz / 1_000_000_000L - samplesProduced;
+        int n = (int) Math.min(due, max);
+        for (int i = 0; i < n; i++) {
+            out[off + i] = EcgWaveform.point(sampleInBeat, samplesPerBeat);
+            if (++sampleInBeat >= samplesPerBeat) {
+                sampleInBeat = 0;
+                samplesPerBeat = nextSamplesPerBeat;
+            }
+        }
+        if (due > max) {
+            // The caller was paused for longer than its buffer covers, skip the backlog
+            samplesProduced += due;
+            samplesSkipped += due - n;
+        } else {
+            samplesProduced += n;
+        }
+        return n;
+    }
+}
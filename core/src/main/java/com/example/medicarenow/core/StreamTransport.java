@@ -0,0 +1,19 @@
+package com.example.medicarenow.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Byte stream to a sensor device. The Bluetooth implementation wraps an RFCOMM socket;
+ * tests use an in-memory pipe so device pipelines can run on the JVM.
+ */
+public interface StreamTransport {
+
+    /** Blocks until the link is up. */
+    void connect() throws IOException;
+
+    InputStream getInputStream() throws IOException;
+
+    /** Unblocks any pending connect or read. Safe to call from any thread, more than once. */
+    void close();
+}
@@ -0,0 +1,104 @@
+package com.example.medicarenow.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of at most {@code maxEntries} values, each fresh for {@code ttlMillis}
+ * after it was stored.
+ *
+ * When full, storing a new key drops the least recently used entry. Expired entries are kept
+ * until then, so {@link #getStale} can still show the last known value while a fresh one is
+ * loaded. Times are passed in, e.g. {@code SystemClock.elapsedRealtime()}, and must not go
+ * backwards. Thread safe.
+ */
+public final class TtlLruCache<K, V> {
+
+    private static final class Entry<V> {
+        final V value;
+        final long storedMillis;
+
+        Entry(V value, long storedMillis) {
+            this.value = value;
+            this.storedMillis = storedMillis;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    // Access order, the eldest entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public TtlLruCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Invalid cache: " + maxEntries + " entries, " + ttlMillis + " ms");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** The value stored less than the TTL before {@code nowMillis}, or null; counts a hit or a miss. */
+    public synchronized V get(K key, long nowMillis) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || nowMillis - entry.storedMillis >= ttlMillis) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /** The stored value however old it is, or null; not counted. */
+    public synchronized V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    public synchronized void put(K key, V value, long nowMillis) {
+        if (value == null) {
+            throw new NullPointerException("Null value for " + key);
+        }
+        entries.put(key, new Entry<>(value, nowMillis));
+        if (entries.size() > maxEntries) {
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** Share of {@link #get} calls answered from the cache, NaN before the first one. */
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.medicarenow.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Summary of one vital sign over a fixed time bucket, e.g. a patient's pulse over one minute.
+ *
+ * Readings are added one at a time and the count, min, max, mean and latest value are kept
+ * up to date, so a history screen reads one bucket instead of every reading in it. Minute
+ * buckets also keep the raw samples, up to {@link #MAX_SAMPLES}, as time offsets and values
+ * that serialize to 8 bytes each; hour buckets only keep the statistics.
+ *
+ * Buckets are aligned to multiples of their duration since the epoch, see
+ * {@link #bucketStart}. Not thread safe.
+ */
+public final class VitalRollup {
+
+    public static final long MINUTE_MILLIS = 60_000L;
+    public static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    /** 100 readings per second for a minute; later readings only count in the statistics. */
+    public static final int MAX_SAMPLES = 6000;
+
+    private static final int HEADER_SIZE = 8 + 8 + 1 + 4 + 4 + 4 + 8 + 4 + 8 + 4;
+    private static final int SAMPLE_SIZE = 8;
+
+    private final long startMillis;
+    private final long durationMillis;
+    private final boolean keepSamples;
+    private int count = 0;
+    private float min = Float.POSITIVE_INFINITY;
+    private float max = Float.NEGATIVE_INFINITY;
+    private double sum = 0;
+    private float last = Float.NaN;
+    private long lastTimeMillis = Long.MIN_VALUE;
+    private int sampleCount = 0;
+    private int[] sampleOffsets = new int[0];
+    private float[] sampleValues = new float[0];
+
+    public VitalRollup(long startMillis, long durationMillis, boolean keepSamples) {
+        if (durationMillis <= 0 || durationMillis > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid bucket duration: " + durationMillis);
+        }
+        this.startMillis = startMillis;
+        this.durationMillis = durationMillis;
+        this.keepSamples = keepSamples;
+    }
+
+    /** Start of the bucket of {@code durationMillis} that holds {@code timeMillis}. */
+    public static long bucketStart(long timeMillis, long durationMillis) {
+        return timeMillis - Math.floorMod(timeMillis, durationMillis);
+    }
+
+    /** A minute bucket with raw samples or an hour bucket without, holding {@code timeMillis}. */
+    public static VitalRollup forTime(long timeMillis, long durationMillis) {
+        return new VitalRollup(bucketStart(timeMillis, durationMillis), durationMillis,
+                durationMillis <= MINUTE_MILLIS);
+    }
+
+    public boolean contains(long timeMillis) {
+        return timeMillis >= startMillis && timeMillis - startMillis < durationMillis;
+    }
+
+    /** Adds a reading; readings may arrive out of order, the latest by time is the last value. */
+    public void add(long timeMillis, float value) {
+        if (!contains(timeMillis)) {
+            throw new IllegalArgumentException("Reading at " + timeMillis + " outside bucket " + startMillis);
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        if (timeMillis >= lastTimeMillis) {
+            last = value;
+            lastTimeMillis = timeMillis;
+        }
+        if (keepSamples && sampleCount < MAX_SAMPLES) {
+            if (sampleCount == sampleOffsets.length) {
+                int capacity = Math.min(MAX_SAMPLES, Math.max(16, sampleCount * 2));
+                sampleOffsets = Arrays.copyOf(sampleOffsets, capacity);
+                sampleValues = Arrays.copyOf(sampleValues, capacity);
+            }
+            sampleOffsets[sampleCount] = (int) (timeMillis - startMillis);
+            sampleValues[sampleCount] = value;
+            sampleCount++;
+        }
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public boolean keepsSamples() {
+        return keepSamples;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** NaN while the bucket is empty, like the other statistics. */
+    public float getMin() {
+        return count == 0 ? Float.NaN : min;
+    }
+
+    public float getMax() {
+        return count == 0 ? Float.NaN : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public float getLast() {
+        return last;
+    }
+
+    public long getLastTimeMillis() {
+        return lastTimeMillis;
+    }
+
+    /** Raw samples kept, in the order they were added. */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public long sampleTime(int i) {
+        return startMillis + sampleOffsets[i];
+    }
+
+    public float sampleValue(int i) {
+        return sampleValues[i];
+    }
+
+    /** The raw samples as little endian pairs of int32 offset from the start and float32 value. */
+    public byte[] samplesToBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(sampleCount * SAMPLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        putSamples(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes {@link #samplesToBytes()} output into {@code times} and {@code values}, which
+     * need room for {@code data.length / 8} samples.
+     *
+     * @return number of samples
+     */
+    public static int decodeSamples(byte[] data, long startMillis, long[] times, float[] values) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int samples = data.length / SAMPLE_SIZE;
+        for (int i = 0; i < samples; i++) {
+            times[i] = startMillis + buffer.getInt();
+            values[i] = buffer.getFloat();
+        }
+        return samples;
+    }
+
+    /** The complete state, to store the bucket locally while it is still being filled. */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + sampleCount * SAMPLE_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(startMillis);
+        buffer.putLong(durationMillis);
+        buffer.put((byte) (keepSamples ? 1 : 0));
+        buffer.putInt(count);
+        buffer.putFloat(min);
+        buffer.putFloat(max);
+        buffer.putDouble(sum);
+        buffer.putFloat(last);
+        buffer.putLong(lastTimeMillis);
+        buffer.putInt(sampleCount);
+        putSamples(buffer);
+        return buffer.array();
+    }
+
+    public static VitalRollup fromBytes(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        VitalRollup rollup = new VitalRollup(buffer.getLong(), buffer.getLong(), buffer.get() != 0);
+        rollup.count = buffer.getInt();
+        rollup.min = buffer.getFloat();
+        rollup.max = buffer.getFloat();
+        rollup.sum = buffer.getDouble();
+        rollup.last = buffer.getFloat();
+        rollup.lastTimeMillis = buffer.getLong();
+        int samples = buffer.getInt();
+        if (samples < 0 || samples > MAX_SAMPLES || buffer.remaining() != samples * SAMPLE_SIZE) {
+            throw new IllegalArgumentException("Corrupt rollup");
+        }
+        rollup.sampleCount = samples;
+        rollup.sampleOffsets = new int[samples];
+        rollup.sampleValues = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            rollup.sampleOffsets[i] = buffer.getInt();
+            rollup.sampleValues[i] = buffer.getFloat();
+        }
+        return rollup;
+    }
+
+    private void putSamples(ByteBuffer buffer) {
+        for (int i = 0; i < sampleCount; i++) {
+            buffer.putInt(sampleOffsets[i]);
+            buffer.putFloat(sampleValues[i]);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.medicarenow.core;
+
+/**
+ * Alert limits for the vitals shown on the health data screen.
+ *
+ * {@link #check} returns a bit set of alerts so it can run on every reading without
+ * allocating; {@link #describe} builds the user facing message only when something is wrong.
+ */
+public final class VitalThresholds {
+
+    public static final int MAX_PULSE = 100;
+    public static final int MIN_PULSE = 60;
+    public static final float MAX_TEMP = 37.5f;
+    public static final float MIN_TEMP = 36.0f;
+    public static final float MAX_HUMIDITY = 70.0f;
+    public static final float MIN_HUMIDITY = 30.0f;
+
+    public static final int HIGH_PULSE = 1;
+    public static final int LOW_PULSE = 1 << 1;
+    public static final int HIGH_TEMPERATURE = 1 << 2;
+    public static final int LOW_TEMPERATURE = 1 << 3;
+    public static final int HIGH_HUMIDITY = 1 << 4;
+    public static final int LOW_HUMIDITY = 1 << 5;
+
+    private VitalThresholds() {
+    }
+
+    /** @return the alerts raised by this reading, 0 if all values are normal */
+    public static int check(int pulse, float temperature, float humidity) {
+        int alerts = 0;
+        if (pulse > MAX_PULSE) {
+            alerts |= HIGH_PULSE;
+        } else if (pulse < MIN_PULSE) {
+            alerts |= LOW_PULSE;
+        }
+
+        if (temperature > MAX_TEMP) {
+            alerts |= HIGH_TEMPERATURE;
+        } else if (temperature < MIN_TEMP) {
+            alerts |= LOW_TEMPERATURE;
+        }
+
+        if (humidity > MAX_HUMIDITY) {
+            alerts |= HIGH_HUMIDITY;
+        } else if (humidity < MIN_HUMIDITY) {
+            alerts |= LOW_HUMIDITY;
+        }
+        return alerts;
+    }
+
+    /** Alert message shown to the user, e.g. "High pulse! Low humidity! ". */
+    public static String describe(int alerts) {
+        StringBuilder message = new StringBuilder();
+        if ((alerts & HIGH_PULSE) != 0) {
+            message.append("High pulse! ");
+        }
+        if ((alerts & LOW_PULSE) != 0) {
+            message.append("Low pulse! ");
+        }
+        if ((alerts & HIGH_TEMPERATURE) != 0) {
+            message.append("High temperature! ");
+        }
+        if ((alerts & LOW_TEMPERATURE) != 0) {
+            message.append("Low temperature! ");
+        }
+        if ((alerts & HIGH_HUMIDITY) != 0) {
+            message.append("High humidity! ");
+        }
+        if ((alerts & LOW_HUMIDITY) != 0) {
+            message.append("Low humidity! ");
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CostCalibratorTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    public void picksTheHighestCostWithinTheTarget() {
+        // 0.25 ms at cost 4 doubling per step: 128 ms at cost 13, 256 ms at 14
+        int[] calls = new int[1];
+        int cost = CostCalibrator.pickCost(c -> {
+            calls[0]++;
+            return (MILLIS / 4) << (c - 4);
+        }, 250 * MILLIS, 10, 14);
+
+        assertEquals(13, cost);
+        assertEquals(3, calls[0]);
+    }
+
+    @Test
+    public void stepsDownWhenHigherCostsAreSlowerThanExtrapolated() {
+        // 1 ms at cost 10, then three times slower per step
+        int cost = CostCalibrator.pickCost(c -> (long) (MILLIS * Math.pow(3, c - 10)), 100 * MILLIS, 10, 16);
+
+        // 729 ms measured at the extrapolated 16, halving it errs on the fast side: 13 takes 27 ms
+        assertEquals(13, cost);
+    }
+
+    @Test
+    public void staysWithinBounds() {
+        assertEquals(10, CostCalibrator.pickCost(c -> 500 * MILLIS, 250 * MILLIS, 10, 14));
+        assertEquals(14, CostCalibrator.pickCost(c -> MILLIS << (c - 10), 10_000 * MILLIS, 10, 14));
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class DeviceStreamTest {
+
+    private static final int SAMPLES_PER_FRAME = 32;
+
+    @Test
+    public void fansOutToEverySubscriberInOrder() throws Exception {
+        InMemoryTransport transport = new InMemoryTransport(4096);
+        CountDownLatch connected = new CountDownLatch(1);
+        DeviceStream stream = new DeviceStream("ecg", transport, (s, isConnected) -> {
+            if (isConnected) {
+                connected.countDown();
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Counter first = new Counter();
+        Counter second = new Counter();
+        // Large enough that the burst below never overruns the subscribers
+        stream.subscribe(executor, first, 1 << 14, 256);
+        stream.subscribe(executor, second, 1 << 14, 256);
+
+        stream.start();
+        assertTrue(connected.await(5, TimeUnit.SECONDS));
+        sendFrames(transport, 0, 100);
+        waitUntil(() -> stream.getFramesDecoded() == 100, 5000);
+        stream.stop();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(100 * SAMPLES_PER_FRAME, first.received.get());
+        assertEquals(100 * SAMPLES_PER_FRAME, second.received.get());
+        assertEquals(0, first.outOfOrder.get());
+        assertEquals(0, second.outOfOrder.get());
+    }
+
+    @Test
+    public void unsubscribedListenerStopsReceiving() throws Exception {
+        InMemoryTransport transport = new InMemoryTransport(4096);
+        DeviceStream stream = new DeviceStream("ecg", transport, (s, isConnected) -> { });
+        Counter counter = new Counter();
+        DeviceStream.Subscription subscription = stream.subscribe(Runnable::run, counter);
+        assertEquals(1, stream.getSubscriberCount());
+
+        subscription.unsubscribe();
+        assertEquals(0, stream.getSubscriberCount());
+
+        short[] samples = new short[SAMPLES_PER_FRAME];
+        stream.onFrame(samples, 0, samples.length, 0);
+        assertEquals(0, counter.received.get());
+    }
+
+    @Test
+    public void dozensOfDevicesWithSlowSubscriberDoNotStallFastOnes() throws Exception {
+        final int devices = 48;
+        final int framesPerDevice = 2000;
+
+        List<InMemoryTransport> transports = new ArrayList<>();
+        List<DeviceStream> streams = new ArrayList<>();
+        List<Counter> fastCounters = new ArrayList<>();
+        List<DeviceStream.Subscription> slowSubscriptions = new ArrayList<>();
+        CountDownLatch connected = new CountDownLatch(devices);
+
+        // One "UI" thread shared by the fast subscribers, and one that is deliberately slow
+        ExecutorService fastExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService slowExecutor = Executors.newSingleThreadExecutor();
+        AtomicLong slowReceived = new AtomicLong();
+
+        for (int d = 0; d < devices; d++) {
+            InMemoryTransport transport = new InMemoryTransport(8192);
+            DeviceStream stream = new DeviceStream("device-" + d, transport, (s, isConnected) -> {
+                if (isConnected) {
+                    connected.countDown();
+                }
+            });
+            Counter fast = new Counter();
+            stream.subscribe(fastExecutor, fast, 1 << 16, 1024);
+            slowSubscriptions.add(stream.subscribe(slowExecutor, (buf, off, len, position) -> {
+                slowReceived.addAndGet(len);
+                sleep(2);
+            }, 256, 64));
+            transports.add(transport);
+            streams.add(stream);
+            fastCounters.add(fast);
+            stream.start();
+        }
+        assertTrue(connected.await(5, TimeUnit.SECONDS));
+
+        List<Thread> devicesThreads = new ArrayList<>();
+        for (int d = 0; d < devices; d++) {
+            InMemoryTransport transport = transports.get(d);
+            Thread device = new Thread(() -> {
+                try {
+                    sendFrames(transport, 0, framesPerDevice);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            device.start();
+            devicesThreads.add(device);
+        }
+        for (Thread device : devicesThreads) {
+            device.join();
+        }
+
+        long expected = (long) framesPerDevice * SAMPLES_PER_FRAME;
+        waitUntil(() -> {
+            for (Counter counter : fastCounters) {
+                if (counter.received.get() < expected) {
+                    return false;
+                }
+            }
+            return true;
+        }, 10_000);
+
+        long slowDropped = 0;
+        for (DeviceStream.Subscription subscription : slowSubscriptions) {
+            slowDropped += subscription.getDroppedCount();
+        }
+
+        for (Counter counter : fastCounters) {
+            assertEquals(expected, counter.received.get());
+            assertEquals(0, counter.outOfOrder.get());
+        }
+        assertTrue("Slow subscriber should have fallen behind", slowDropped > 0);
+        assertTrue("Slow subscriber should still get samples", slowReceived.get() > 0);
+
+        for (DeviceStream stream : streams) {
+            stream.stop();
+        }
+        fastExecutor.shutdownNow();
+        slowExecutor.shutdownNow();
+    }
+
+    @Test
+    public void reconnectsAfterLinkDropAndReportsExactGap() throws Exception {
+        FlakyLink link = new FlakyLink();
+        BlockingQueue<Boolean> statuses = new LinkedBlockingQueue<>();
+        DeviceStream stream = new DeviceStream("ecg", link, new ReconnectPolicy(10, 40, 2.0, new Random(3)),
+                (s, isConnected) -> statuses.add(isConnected));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        GapRecorder recorder = new GapRecorder();
+        stream.subscribe(executor, recorder, 1 << 14, 256);
+
+        stream.start();
+        InMemoryTransport first = link.opened.poll(5, TimeUnit.SECONDS);
+        assertEquals(Boolean.TRUE, statuses.poll(5, TimeUnit.SECONDS));
+        sendFrames(first, 0, 100);
+        waitUntil(() -> stream.getFramesDecoded() == 100, 5000);
+
+        // The device goes out of range: the link drops and the next two attempts are refused
+        link.refuseNext(2);
+        first.close();
+        assertEquals(Boolean.FALSE, statuses.poll(5, TimeUnit.SECONDS));
+        InMemoryTransport second = link.opened.poll(5, TimeUnit.SECONDS);
+        assertEquals(Boolean.TRUE, statuses.poll(5, TimeUnit.SECONDS));
+
+        // Frames 100..149 were sampled while the link was down and never arrive
+        sendFrames(second, 150, 100);
+        waitUntil(() -> recorder.received.get() == 200 * SAMPLES_PER_FRAME, 5000);
+        stream.stop();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(2, link.refused.get());
+        assertEquals(1, stream.getReconnects());
+        assertEquals(1, stream.getGapCount());
+        assertEquals(50 * SAMPLES_PER_FRAME, stream.getLostSamples());
+        assertEquals(200 * SAMPLES_PER_FRAME, recorder.received.get());
+        assertEquals(0, recorder.misplaced.get());
+        assertEquals(Collections.singletonList((100 * SAMPLES_PER_FRAME) + "+" + (50 * SAMPLES_PER_FRAME)),
+                recorder.gaps);
+        assertEquals(Boolean.FALSE, statuses.poll(5, TimeUnit.SECONDS));
+        assertTrue(statuses.isEmpty());
+    }
+
+    @Test
+    public void sequenceRestartIsNotReportedAsGap() {
+        DeviceStream stream = new DeviceStream("ecg", new InMemoryTransport(4096), (s, isConnected) -> { });
+        GapRecorder recorder = new GapRecorder();
+        stream.subscribe(Runnable::run, recorder);
+        EcgFrameDecoder decoder = new EcgFrameDecoder(stream);
+
+        feedFrames(decoder, 40_000, 10);
+        // The device rebooted and counts from 0 again
+        feedFrames(decoder, 0, 10);
+        // One step back, the last frame sent again
+        feedFrames(decoder, 9, 1);
+        // A real outage of 5 frames
+        feedFrames(decoder, 15, 10);
+
+        assertEquals(2, stream.getSequenceResets());
+        assertEquals(1, stream.getGapCount());
+        assertEquals(5 * SAMPLES_PER_FRAME, stream.getLostSamples());
+        assertEquals(Collections.singletonList((21 * SAMPLES_PER_FRAME) + "+" + (5 * SAMPLES_PER_FRAME)),
+                recorder.gaps);
+        assertEquals(31 * SAMPLES_PER_FRAME, recorder.received.get());
+    }
+
+    // The pending reconnect is a minute away, stop must not wait for it
+    @Test(timeout = 10_000)
+    public void stopCancelsPendingReconnect() throws Exception {
+        FlakyLink link = new FlakyLink();
+        link.refuseNext(Integer.MAX_VALUE);
+        DeviceStream stream = new DeviceStream("ecg", link, new ReconnectPolicy(60_000, 60_000, 2.0, new Random()),
+                (s, isConnected) -> { });
+        stream.start();
+        waitUntil(() -> link.refused.get() > 0, 5000);
+
+        stream.stop();
+        assertFalse(stream.isRunning());
+        assertEquals(1, link.refused.get());
+    }
+
+    static void sendFrames(InMemoryTransport transport, int firstSeq, int frames) throws IOException {
+        short[] samples = new short[SAMPLES_PER_FRAME];
+        byte[] frame = new byte[EcgFrameDecoder.MAX_FRAME_SIZE];
+        for (int f = 0; f < frames; f++) {
+            int seq = firstSeq + f;
+            for (int i = 0; i < SAMPLES_PER_FRAME; i++) {
+                samples[i] = (short) (seq * SAMPLES_PER_FRAME + i);
+            }
+            int len = EcgFrameDecoder.encodeFrame(seq, samples, 0, SAMPLES_PER_FRAME, frame, 0);
+            transport.write(frame, 0, len);
+        }
+    }
+
+    private static void feedFrames(EcgFrameDecoder decoder, int firstSeq, int frames) {
+        short[] samples = new short[SAMPLES_PER_FRAME];
+        byte[] frame = new byte[EcgFrameDecoder.MAX_FRAME_SIZE];
+        for (int f = 0; f < frames; f++) {
+            int len = EcgFrameDecoder.encodeFrame((firstSeq + f) & 0xFFFF, samples, 0, SAMPLES_PER_FRAME, frame, 0);
+            decoder.feed(frame, 0, len);
+        }
+    }
+
+    static void waitUntil(Condition condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.isMet() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    interface Condition {
+        boolean isMet();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Checks that samples arrive as the consecutive values {@link #sendFrames} produces. */
+    static class Counter implements SampleStream.Consumer {
+        final AtomicLong received = new AtomicLong();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        private short next = 0;
+
+        @Override
+        public void onSamples(short[] buf, int off, int len, long position) {
+            for (int i = off; i < off + len; i++) {
+                if (buf[i] != next) {
+                    outOfOrder.incrementAndGet();
+                }
+                next = (short) (buf[i] + 1);
+            }
+            received.addAndGet(len);
+        }
+    }
+
+    /** Opens a new in-memory link per attempt and refuses as many attempts as requested. */
+    static class FlakyLink implements DeviceStream.TransportFactory {
+        final BlockingQueue<InMemoryTransport> opened = new LinkedBlockingQueue<>();
+        final AtomicInteger refused = new AtomicInteger();
+        private final AtomicInteger toRefuse = new AtomicInteger();
+
+        void refuseNext(int attempts) {
+            toRefuse.set(attempts);
+        }
+
+        @Override
+        public StreamTransport create() {
+            InMemoryTransport transport = new InMemoryTransport(8192);
+            if (toRefuse.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                transport.setFailConnect(true);
+                refused.incrementAndGet();
+            } else {
+                opened.add(transport);
+            }
+            return transport;
+        }
+    }
+
+    /** Checks that every sample sits at the position {@link #sendFrames} gave it on the device. */
+    static class GapRecorder implements SampleStream.Consumer {
+        final AtomicLong received = new AtomicLong();
+        final AtomicInteger misplaced = new AtomicInteger();
+        final List<String> gaps = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onSamples(short[] buf, int off, int len, long position) {
+            for (int i = 0; i < len; i++) {
+                if (buf[off + i] != (short) (position + i)) {
+                    misplaced.incrementAndGet();
+                }
+            }
+            received.addAndGet(len);
+        }
+
+        @Override
+        public void onGap(long position, long lostSamples) {
+            gaps.add(position + "+" + lostSamples);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EcgBlockCodecTest {
+
+    private static final int SAMPLE_RATE_HZ = 500;
+
+    @Test
+    public void roundTripsEdgeCases() {
+        assertRoundTrip(new short[]{42});
+        assertRoundTrip(new short[]{Short.MIN_VALUE, Short.MAX_VALUE});
+        assertRoundTrip(new short[300]);
+
+        // Largest possible second order residuals
+        short[] alternating = new short[EcgBlockCodec.MAX_BLOCK_SAMPLES];
+        for (int i = 0; i < alternating.length; i++) {
+            alternating[i] = i % 2 == 0 ? Short.MIN_VALUE : Short.MAX_VALUE;
+        }
+        assertRoundTrip(alternating);
+
+        // A disconnection in the middle of an otherwise smooth block
+        short[] gap = ecg(EcgBlockCodec.DEFAULT_BLOCK_SAMPLES, 2, new Random(1));
+        for (int i = 100; i < 150; i++) {
+            gap[i] = EcgRecording.GAP;
+        }
+        assertRoundTrip(gap);
+    }
+
+    @Test
+    public void roundTripsRandomBlocksOfEverySize() {
+        Random random = new Random(5);
+        for (int trial = 0; trial < 2000; trial++) {
+            short[] samples = new short[1 + random.nextInt(EcgBlockCodec.MAX_BLOCK_SAMPLES)];
+            int amplitude = 1 << random.nextInt(17);
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (short) (random.nextInt(amplitude) - amplitude / 2);
+            }
+            assertRoundTrip(samples);
+        }
+    }
+
+    @Test
+    public void blocksDecodeIndependently() {
+        short[] signal = ecg(10 * EcgBlockCodec.DEFAULT_BLOCK_SAMPLES + 17, 5, new Random(2));
+        int blocks = (signal.length + EcgBlockCodec.DEFAULT_BLOCK_SAMPLES - 1) / EcgBlockCodec.DEFAULT_BLOCK_SAMPLES;
+        byte[] stream = new byte[blocks * EcgBlockCodec.maxEncodedSize(EcgBlockCodec.DEFAULT_BLOCK_SAMPLES)];
+        int[] offsets = new int[blocks];
+        int length = 0;
+        for (int b = 0; b < blocks; b++) {
+            offsets[b] = length;
+            int from = b * EcgBlockCodec.DEFAULT_BLOCK_SAMPLES;
+            int count = Math.min(EcgBlockCodec.DEFAULT_BLOCK_SAMPLES, signal.length - from);
+            length += EcgBlockCodec.encode(signal, from, count, stream, length);
+        }
+
+        // Walk the stream by block length, then seek straight to single blocks
+        int offset = 0;
+        for (int b = 0; b < blocks; b++) {
+            assertEquals(offsets[b], offset);
+            offset += EcgBlockCodec.encodedLength(stream, offset);
+        }
+        assertEquals(length, offset);
+
+        short[] out = new short[EcgBlockCodec.DEFAULT_BLOCK_SAMPLES];
+        for (int b : new int[]{7, 0, 10, 3}) {
+            int n = EcgBlockCodec.decode(stream, offsets[b], out, 0);
+            for (int i = 0; i < n; i++) {
+                assertEquals(signal[b * EcgBlockCodec.DEFAULT_BLOCK_SAMPLES + i], out[i]);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedBlocks() {
+        short[] signal = ecg(EcgBlockCodec.DEFAULT_BLOCK_SAMPLES, 5, new Random(3));
+        byte[] block = new byte[EcgBlockCodec.maxEncodedSize(signal.length)];
+        int length = EcgBlockCodec.encode(signal, 0, signal.length, block, 0);
+        byte[] truncated = java.util.Arrays.copyOf(block, length - 10);
+        try {
+            EcgBlockCodec.decode(truncated, 0, new short[signal.length], 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // The header still claims the full payload
+        }
+    }
+
+    @Test
+    public void compressesToFewerThanEightBitsPerSample() {
+        for (double noise : new double[]{0, 5, 20}) {
+            short[] signal = ecg(SAMPLE_RATE_HZ * 600, noise, new Random(4));
+            int blockSamples = EcgBlockCodec.DEFAULT_BLOCK_SAMPLES;
+            byte[] encoded = new byte[signal.length / blockSamples * EcgBlockCodec.maxEncodedSize(blockSamples)
+                    + EcgBlockCodec.maxEncodedSize(blockSamples)];
+            short[] decoded = new short[signal.length];
+
+            int length = 0;
+            for (int off = 0; off < signal.length; off += blockSamples) {
+                length += EcgBlockCodec.encode(signal, off, Math.min(blockSamples, signal.length - off), encoded,
+                        length);
+            }
+
+            int samples = 0;
+            for (int off = 0; off < length; off += EcgBlockCodec.encodedLength(encoded, off)) {
+                samples += EcgBlockCodec.decode(encoded, off, decoded, samples);
+            }
+
+            assertArrayEquals(signal, decoded);
+            double ratio = signal.length * 2.0 / length;
+            // Even the noisy signal needs fewer than 8 bits per sample
+            assertTrue("Ratio " + ratio, ratio > 2);
+        }
+    }
+
+    /** Synthetic ECG at 72 BPM in microvolts, plus white noise of the given standard deviation. */
+    static short[] ecg(int samples, double noiseMicrovolts, Random random) {
+        short[] signal = new short[samples];
+        int samplesPerBeat = SAMPLE_RATE_HZ * 60 / 72;
+        for (int i = 0; i < samples; i++) {
+            double value = EcgWaveform.point(i % samplesPerBeat, samplesPerBeat) * 1000
+                    + random.nextGaussian() * noiseMicrovolts;
+            signal[i] = (short) Math.round(value);
+        }
+        return signal;
+    }
+
+    private static void assertRoundTrip(short[] samples) {
+        byte[] encoded = new byte[EcgBlockCodec.maxEncodedSize(samples.length) + 3];
+        int length = EcgBlockCodec.encode(samples, 0, samples.length, encoded, 3);
+        assertTrue(length <= EcgBlockCodec.maxEncodedSize(samples.length));
+        assertEquals(length, EcgBlockCodec.encodedLength(encoded, 3));
+        assertEquals(samples.length, EcgBlockCodec.sampleCount(encoded, 3));
+
+        short[] decoded = new short[samples.length];
+        assertEquals(samples.length, EcgBlockCodec.decode(encoded, 3, decoded, 0));
+        assertArrayEquals(samples, decoded);
+    }
+}
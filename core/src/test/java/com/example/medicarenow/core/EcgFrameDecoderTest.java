@@ -0,0 +1,125 @@
+package com.example.medicarenow.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EcgFrameDecoderTest {
+
+    private static final int HEADER_PAYLOAD_BYTE = EcgFrameDecoder.HEADER_SIZE + 3;
+
+    private final List<Short> received = new ArrayList<>();
+    private final List<Long> sequences = new ArrayList<>();
+    private EcgFrameDecoder decoder;
+
+    @Before
+    public void setUp() {
+        decoder = new EcgFrameDecoder((samples, off, len, seq) -> {
+            for (int i = off; i < off + len; i++) {
+                received.add(samples[i]);
+            }
+            sequences.add(seq);
+        });
+    }
+
+    @Test
+    public void decodesSingleFrame() {
+        short[] samples = {0, 1, -1, Short.MAX_VALUE, Short.MIN_VALUE};
+        byte[] frame = frame(7, samples);
+
+        decoder.feed(frame, 0, frame.length);
+
+        assertEquals(1, decoder.getFramesDecoded());
+        assertEquals(samples.length, received.size());
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(samples[i], (short) received.get(i));
+        }
+        assertEquals(Long.valueOf(7), sequences.get(0));
+    }
+
+    @Test
+    public void reassemblesFramesTornAcrossReads() {
+        byte[] stream = stream(0, 50, 16);
+
+        // Feed one byte at a time, the worst possible split
+        for (int i = 0; i < stream.length; i++) {
+            decoder.feed(stream, i, 1);
+        }
+
+        assertEquals(50, decoder.getFramesDecoded());
+        assertEquals(50 * 16, received.size());
+        assertEquals(0, decoder.getCorruptFrames());
+    }
+
+    @Test
+    public void skipsCorruptedFrameAndResynchronises() {
+        byte[] first = frame(1, ramp(10));
+        byte[] broken = frame(2, ramp(10));
+        byte[] third = frame(3, ramp(10));
+        broken[HEADER_PAYLOAD_BYTE] ^= 0x40;
+
+        byte[] garbage = {0x12, (byte) 0xA5, 0x00, (byte) 0xA5};
+        byte[] all = concat(first, garbage, broken, third);
+        decoder.feed(all, 0, all.length);
+
+        assertEquals(2, decoder.getFramesDecoded());
+        assertEquals(Long.valueOf(1), sequences.get(0));
+        assertEquals(Long.valueOf(3), sequences.get(1));
+        assertTrue(decoder.getCorruptFrames() >= 1);
+    }
+
+    @Test
+    public void unwrapsSequenceNumbers() {
+        byte[] all = concat(frame(0xFFFE, ramp(4)), frame(0xFFFF, ramp(4)), frame(0, ramp(4)), frame(1, ramp(4)));
+        decoder.feed(all, 0, all.length);
+
+        assertEquals(Long.valueOf(0xFFFE), sequences.get(0));
+        assertEquals(Long.valueOf(0xFFFF), sequences.get(1));
+        assertEquals(Long.valueOf(0x10000), sequences.get(2));
+        assertEquals(Long.valueOf(0x10001), sequences.get(3));
+    }
+
+    @Test
+    public void crcMatchesReferenceValue() {
+        byte[] check = "123456789".getBytes();
+        assertEquals(0x29B1, EcgFrameDecoder.crc16(check, 0, check.length));
+    }
+
+    private static short[] ramp(int count) {
+        short[] samples = new short[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = (short) (i * 100 - 500);
+        }
+        return samples;
+    }
+
+    private static byte[] frame(int seq, short[] samples) {
+        byte[] out = new byte[EcgFrameDecoder.MAX_FRAME_SIZE];
+        int len = EcgFrameDecoder.encodeFrame(seq, samples, 0, samples.length, out, 0);
+        byte[] frame = new byte[len];
+        System.arraycopy(out, 0, frame, 0, len);
+        return frame;
+    }
+
+    private static byte[] stream(int firstSeq, int frames, int samplesPerFrame) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < frames; i++) {
+            byte[] frame = frame(firstSeq + i, ramp(samplesPerFrame));
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
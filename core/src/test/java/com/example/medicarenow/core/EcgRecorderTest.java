@@ -0,0 +1,223 @@
+package com.example.medicarenow.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class EcgRecorderTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("ecg-recorder").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(root);
+    }
+
+    @Test
+    public void readsBackAcrossSegmentBoundaries() throws IOException {
+        File session = new File(root, "session");
+        try (EcgRecorder recorder = new EcgRecorder(session, "patient-1", START, 500, 1000, 1000)) {
+            short[] batch = new short[333];
+            for (int b = 0; b < 10; b++) {
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = (short) (b * batch.length + i);
+                }
+                recorder.append(batch, 0, batch.length);
+            }
+        }
+
+        try (EcgRecording recording = EcgRecording.open(session)) {
+            assertEquals("patient-1", recording.getSessionId());
+            assertEquals(START, recording.getStartTimeMillis());
+            assertEquals(500, recording.getSampleRate());
+            assertEquals(1000, recording.getCountsPerMillivolt());
+            assertEquals(3330, recording.getSampleCount());
+            assertEquals(6660, recording.getDurationMillis());
+
+            short[] out = new short[2500];
+            assertEquals(2500, recording.read(700, out, 0, out.length));
+            for (int i = 0; i < out.length; i++) {
+                assertEquals(700 + i, out[i]);
+            }
+            // Short read at the end
+            assertEquals(30, recording.read(3300, out, 0, 100));
+            assertEquals(0, recording.read(3330, out, 0, 100));
+        }
+    }
+
+    @Test
+    public void gapsKeepTimestampSeekingExact() throws IOException {
+        File session = new File(root, "session");
+        try (EcgRecorder recorder = new EcgRecorder(session, "gap", START, 250, 1000, 4096)) {
+            recorder.append(new short[]{1, 2, 3}, 0, 3);
+            recorder.appendGap(5000);
+            recorder.append(new short[]{4, 5}, 0, 2);
+        }
+
+        try (EcgRecording recording = EcgRecording.open(session)) {
+            assertEquals(5005, recording.getSampleCount());
+            long index = recording.sampleIndexAt(START + 5003 * 4);
+            assertEquals(5003, index);
+            assertEquals(START + 5003 * 4, recording.timeOfSample(index));
+
+            short[] out = new short[4];
+            recording.read(index - 2, out, 0, 4);
+            assertArrayEquals(new short[]{EcgRecording.GAP, EcgRecording.GAP, 4, 5}, out);
+            assertEquals(0, recording.sampleIndexAt(START - 1000));
+            assertEquals(5005, recording.sampleIndexAt(START + 60_000));
+        }
+    }
+
+    @Test
+    public void fullScaleNegativeSampleIsNotReadBackAsGap() throws IOException {
+        File session = new File(root, "session");
+        short[] samples = {Short.MIN_VALUE, -1, Short.MIN_VALUE + 1, Short.MAX_VALUE};
+        try (EcgRecorder recorder = new EcgRecorder(session, "clamp", START, 250, 1000)) {
+            recorder.append(samples, 0, samples.length);
+            recorder.appendGap(1);
+        }
+        assertEquals(Short.MIN_VALUE, samples[0]);
+
+        try (EcgRecording recording = EcgRecording.open(session)) {
+            short[] out = new short[5];
+            assertEquals(5, recording.read(0, out, 0, 5));
+            assertArrayEquals(new short[]{Short.MIN_VALUE + 1, -1, Short.MIN_VALUE + 1, Short.MAX_VALUE,
+                    EcgRecording.GAP}, out);
+        }
+    }
+
+    @Test
+    public void liveReaderSeesOnlyCommittedSamplesAfterCrash() throws IOException {
+        File session = new File(root, "session");
+        // Never closed or flushed, like a recorder killed with the process
+        EcgRecorder recorder = new EcgRecorder(session, "crash", START, 500, 1000, 1024);
+        recorder.append(new short[1500], 0, 1500);
+
+        try (EcgRecording recording = EcgRecording.open(session)) {
+            assertEquals(1500, recording.getSampleCount());
+
+            // Samples of an append that was interrupted before its count was committed
+            try (RandomAccessFile segment = new RandomAccessFile(new File(session, "segment-00001.ecg"), "rw")) {
+                segment.seek((1500 - 1024) * 2);
+                segment.write(new byte[]{1, 2, 3, 4});
+            }
+            short[] out = new short[10];
+            assertEquals(0, recording.read(1500, out, 0, out.length));
+
+            recorder.append(new short[]{7}, 0, 1);
+            assertEquals(1501, recording.getSampleCount());
+            assertEquals(1, recording.read(1500, out, 0, out.length));
+            assertEquals(7, out[0]);
+        }
+        recorder.close();
+    }
+
+    @Test
+    public void encodesRecordingInIndependentBlocks() throws IOException {
+        File session = new File(root, "session");
+        short[] signal = EcgBlockCodecTest.ecg(1000, 5, new java.util.Random(9));
+        try (EcgRecorder recorder = new EcgRecorder(session, "blocks", START, 500, 1000, 512)) {
+            recorder.append(signal, 0, signal.length);
+        }
+
+        try (EcgRecording recording = EcgRecording.open(session)) {
+            assertEquals(4, recording.getBlockCount(256));
+            short[] scratch = new short[256];
+            byte[] block = new byte[EcgBlockCodec.maxEncodedSize(256)];
+            short[] decoded = new short[256];
+            for (int b = 3; b >= 0; b--) {
+                assertTrue(recording.encodeBlock(b, 256, scratch, block, 0) > 0);
+                int n = EcgBlockCodec.decode(block, 0, decoded, 0);
+                assertEquals(b == 3 ? 1000 - 768 : 256, n);
+                for (int i = 0; i < n; i++) {
+                    assertEquals(signal[b * 256 + i], decoded[i]);
+                }
+            }
+            assertEquals(0, recording.encodeBlock(4, 256, scratch, block, 0));
+        }
+    }
+
+    @Test
+    public void refusesToOverwriteRecording() throws IOException {
+        File session = new File(root, "session");
+        new EcgRecorder(session, "first", START, 500, 1000).close();
+        try {
+            new EcgRecorder(session, "second", START, 500, 1000);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // The first session is left untouched
+        }
+        try (EcgRecording recording = EcgRecording.open(session)) {
+            assertEquals("first", recording.getSessionId());
+        }
+    }
+
+    @Test
+    public void longRecordingSpansSegments() throws IOException {
+        // One hour at 500 Hz in 20 ms batches, see EcgRecorderBenchmark for speed and allocation
+        final int sampleRateHz = 500;
+        final int batch = sampleRateHz / 50;
+        final long samples = 3600L * sampleRateHz;
+        File session = new File(root, "session");
+        short[] frame = new short[batch];
+
+        try (EcgRecorder recorder = new EcgRecorder(session, "holter", START, sampleRateHz, 1000, 1 << 18)) {
+            for (long written = 0; written < samples; written += batch) {
+                for (int i = 0; i < batch; i++) {
+                    frame[i] = (short) (written + i);
+                }
+                recorder.append(frame, 0, batch);
+            }
+        }
+
+        try (EcgRecording recording = EcgRecording.open(session)) {
+            assertEquals(samples, recording.getSampleCount());
+            short[] out = new short[1];
+            for (long index : new long[]{0, (1 << 18) - 1, 1 << 18, samples - 1}) {
+                recording.read(recording.sampleIndexAt(START + index * 2), out, 0, 1);
+                assertEquals((short) index, out[0]);
+            }
+        }
+    }
+
+    /** Appends {@code signal}, recording its runs of {@link EcgRecording#GAP} as gaps. */
+    static void appendWithGaps(EcgRecorder recorder, short[] signal, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            boolean gap = signal[off] == EcgRecording.GAP;
+            int run = off;
+            while (run < end && (signal[run] == EcgRecording.GAP) == gap) {
+                run++;
+            }
+            if (gap) {
+                recorder.appendGap(run - off);
+            } else {
+                recorder.append(signal, off, run - off);
+            }
+            off = run;
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.medicarenow.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EcgUploaderTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final int SAMPLE_RATE_HZ = 500;
+    private static final int FIRESTORE_DOCUMENT_LIMIT = 1 << 20;
+
+    private File root;
+    private File session;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("ecg-uploader").toFile();
+        session = new File(root, "session");
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(root);
+    }
+
+    @Test
+    public void uploadsHoursOfRecordingLosslessly() throws IOException {
+        // Four hours at 500 Hz, with a dropout in the middle
+        short[] signal = EcgBlockCodecTest.ecg(4 * 3600 * SAMPLE_RATE_HZ, 5, new Random(15));
+        Arrays.fill(signal, 3_000_000, 3_100_000, EcgRecording.GAP);
+        record(signal);
+
+        FakeSink sink = new FakeSink();
+        try (EcgRecording recording = EcgRecording.open(session);
+             EcgUploader uploader = new EcgUploader(recording, sink)) {
+            uploader.pump(true);
+            Random random = new Random(3);
+            while (!sink.pending.isEmpty()) {
+                assertTrue(uploader.getInFlight() <= EcgUploader.DEFAULT_MAX_IN_FLIGHT);
+                // Acknowledged out of order, like concurrent writes can be
+                sink.succeed(random.nextInt(sink.pending.size()));
+            }
+            assertTrue(uploader.isComplete());
+            assertEquals(signal.length, uploader.getUploadedSamples());
+            assertEquals(sink.stored.size(), uploader.getChunksWritten());
+        }
+
+        int largest = 0;
+        for (EcgChunk chunk : sink.stored.values()) {
+            largest = Math.max(largest, chunk.getData().length);
+            assertEquals(START + chunk.getFirstSample() * 1000 / SAMPLE_RATE_HZ, chunk.getStartTimeMillis());
+        }
+        assertTrue(largest < FIRESTORE_DOCUMENT_LIMIT / 4);
+        assertArrayEquals(signal, sink.reassemble(signal.length));
+    }
+
+    @Test
+    public void resumesFromLastAcknowledgedChunkAfterCrash() throws IOException {
+        short[] signal = EcgBlockCodecTest.ecg(20 * EcgUploader.CHUNK_SAMPLES, 5, new Random(1));
+        record(signal);
+
+        FakeSink sink = new FakeSink();
+        try (EcgRecording recording = EcgRecording.open(session)) {
+            EcgUploader uploader = new EcgUploader(recording, sink);
+            uploader.pump(true);
+            // Chunks 0 to 5 stored, 7 stored ahead of 6, then the process dies
+            for (int i = 0; i < 6; i++) {
+                sink.succeed(0);
+            }
+            assertEquals(6, uploader.getCheckpoint());
+            sink.succeed(1);
+            assertEquals(6, uploader.getCheckpoint());
+            uploader.close();
+            sink.pending.clear();
+        }
+
+        FakeSink resumed = new FakeSink();
+        resumed.stored.putAll(sink.stored);
+        try (EcgRecording recording = EcgRecording.open(session);
+             EcgUploader uploader = new EcgUploader(recording, resumed)) {
+            assertEquals(6, uploader.getCheckpoint());
+            uploader.pump(true);
+            assertEquals(6, resumed.pending.get(0).chunk.getIndex());
+            while (!resumed.pending.isEmpty()) {
+                resumed.succeed(0);
+            }
+            assertTrue(uploader.isComplete());
+            // Only chunk 7 is written twice
+            assertEquals(20 - 6, uploader.getChunksWritten());
+        }
+        assertArrayEquals(signal, resumed.reassemble(signal.length));
+    }
+
+    @Test
+    public void retriesFailedWritesOnNextPump() throws IOException {
+        record(EcgBlockCodecTest.ecg(6 * EcgUploader.CHUNK_SAMPLES, 5, new Random(2)));
+
+        FakeSink sink = new FakeSink();
+        try (EcgRecording recording = EcgRecording.open(session);
+             EcgUploader uploader = new EcgUploader(recording, sink, 2)) {
+            uploader.pump(false);
+            assertEquals(2, sink.pending.size());
+            // Offline: nothing is retried until asked
+            sink.fail(0);
+            sink.fail(0);
+            assertEquals(0, sink.pending.size());
+            assertEquals(2, uploader.getFailures());
+            assertEquals(0, uploader.getCheckpoint());
+
+            uploader.pump(false);
+            assertEquals(0, sink.pending.get(0).chunk.getIndex());
+            while (!sink.pending.isEmpty()) {
+                sink.succeed(0);
+            }
+            assertEquals(6, uploader.getCheckpoint());
+            assertEquals(8, uploader.getChunksWritten());
+        }
+    }
+
+    @Test
+    public void rewritesPartialChunkAsRecordingGrows() throws IOException {
+        short[] signal = EcgBlockCodecTest.ecg(EcgUploader.CHUNK_SAMPLES + 5000, 5, new Random(4));
+        FakeSink sink = new FakeSink();
+        sink.synchronous = true;
+        try (EcgRecorder recorder = new EcgRecorder(session, "growing", START, SAMPLE_RATE_HZ, 1000);
+             EcgRecording recording = EcgRecording.open(session);
+             EcgUploader uploader = new EcgUploader(recording, sink)) {
+            recorder.append(signal, 0, 1000);
+            uploader.pump(false);
+            assertEquals(0, uploader.getChunksWritten());
+            uploader.pump(true);
+            assertEquals(1000, uploader.getUploadedSamples());
+            assertEquals(0, uploader.getCheckpoint());
+
+            uploader.pump(true);
+            assertEquals(1, uploader.getChunksWritten());
+
+            recorder.append(signal, 1000, signal.length - 1000);
+            uploader.pump(true);
+            assertEquals(1, uploader.getCheckpoint());
+            assertTrue(uploader.isComplete());
+            assertEquals(3, uploader.getChunksWritten());
+        }
+        assertArrayEquals(signal, sink.reassemble(signal.length));
+    }
+
+    @Test
+    public void finishedRecordingIsNotWrittenAgainWhenReopened() throws IOException {
+        // Ends with a partial chunk
+        short[] signal = EcgBlockCodecTest.ecg(20_000, 5, new Random(5));
+        record(signal);
+
+        FakeSink sink = new FakeSink();
+        sink.synchronous = true;
+        try (EcgRecording recording = EcgRecording.open(session);
+             EcgUploader uploader = new EcgUploader(recording, sink)) {
+            uploader.pump(true);
+            assertTrue(uploader.isComplete());
+            assertEquals(2, uploader.getChunksWritten());
+        }
+
+        for (int open = 0; open < 3; open++) {
+            try (EcgRecording recording = EcgRecording.open(session);
+                 EcgUploader uploader = new EcgUploader(recording, sink)) {
+                assertTrue(uploader.isComplete());
+                assertEquals(signal.length, uploader.getUploadedSamples());
+                uploader.pump(true);
+                assertEquals(0, uploader.getChunksWritten());
+            }
+        }
+        assertArrayEquals(signal, sink.reassemble(signal.length));
+    }
+
+    private void record(short[] signal) throws IOException {
+        try (EcgRecorder recorder = new EcgRecorder(session, "patient-1", START, SAMPLE_RATE_HZ, 1000)) {
+            EcgRecorderTest.appendWithGaps(recorder, signal, 0, signal.length);
+        }
+    }
+
+    /** Keeps the latest version of each chunk, like documents keyed by session and index. */
+    private static class FakeSink implements EcgUploader.ChunkSink {
+        final Map<Long, EcgChunk> stored = new HashMap<>();
+        final List<Write> pending = new ArrayList<>();
+        boolean synchronous = false;
+
+        @Override
+        public void write(EcgChunk chunk, EcgUploader.Callback callback) {
+            Write write = new Write(chunk, callback);
+            if (synchronous) {
+                stored.put(chunk.getIndex(), chunk);
+                callback.onSuccess();
+            } else {
+                pending.add(write);
+            }
+        }
+
+        void succeed(int i) {
+            Write write = pending.remove(i);
+            stored.put(write.chunk.getIndex(), write.chunk);
+            write.callback.onSuccess();
+        }
+
+        void fail(int i) {
+            pending.remove(i).callback.onFailure(new IOException("offline"));
+        }
+
+        short[] reassemble(int samples) {
+            short[] out = new short[samples];
+            for (EcgChunk chunk : stored.values()) {
+                int decoded = EcgChunk.decode(chunk.getData(), out, (int) chunk.getFirstSample());
+                assertEquals(chunk.getSampleCount(), decoded);
+            }
+            return out;
+        }
+    }
+
+    private static class Write {
+        final EcgChunk chunk;
+        final EcgUploader.Callback callback;
+
+        Write(EcgChunk chunk, EcgUploader.Callback callback) {
+            this.chunk = chunk;
+            this.callback = callback;
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EmailKeysTest {
+
+    @Test
+    public void addressesDifferingInCaseOrSpacesShareAKey() {
+        assertEquals("ana.pop@example.ro", EmailKeys.documentId("  Ana.Pop@Example.RO "));
+        assertEquals(EmailKeys.documentId("ana.pop@example.ro"), EmailKeys.documentId("ANA.POP@EXAMPLE.RO"));
+        // Lower casing does not depend on the phone's language, e.g. Turkish dotless i
+        assertEquals("ionut@example.ro", EmailKeys.normalize("IONUT@example.ro"));
+    }
+
+    @Test
+    public void encodesCharactersNotAllowedInDocumentIds() {
+        assertEquals("a%2Fb%25c@example.ro", EmailKeys.documentId("a/b%c@example.ro"));
+        assertNotEquals(EmailKeys.documentId("a%2Fb@example.ro"), EmailKeys.documentId("a/b@example.ro"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTextWithoutAnAt() {
+        EmailKeys.documentId("..");
+    }
+
+    @Test
+    public void onlyAddressesWithAnAtAreValid() {
+        assertFalse(EmailKeys.isValid("john"));
+        assertTrue(EmailKeys.isValid("john@example.ro"));
+    }
+}
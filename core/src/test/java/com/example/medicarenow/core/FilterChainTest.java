@@ -0,0 +1,62 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FilterChainTest {
+
+    private static final int SAMPLE_RATE_HZ = 500;
+
+    @Test
+    public void ecgChainPassesQrsBandAndRejectsBaselineMainsAndHighFrequencies() {
+        assertGain("QRS band", 10, 0.95, 1.05);
+        assertGain("P/T waves", 2, 0.95, 1.05);
+        assertGain("baseline wander", 0.05, 0, 0.05);
+        assertGain("high-pass corner", FilterChain.BASELINE_CUTOFF_HZ, 0.6, 0.8);
+        assertGain("mains", 50, 0, 0.05);
+        assertGain("low-pass corner", FilterChain.LOW_PASS_CUTOFF_HZ, 0.55, 0.8);
+        assertGain("EMG noise", 150, 0, 0.1);
+    }
+
+    @Test
+    public void notchFollowsConfiguredMainsFrequency() {
+        assertTrue(gain(FilterChain.forEcg(SAMPLE_RATE_HZ, 60), 60) < 0.05);
+        assertTrue(gain(FilterChain.forEcg(SAMPLE_RATE_HZ, 60), 50) > 0.5);
+    }
+
+    @Test
+    public void convertsAndFiltersRawSamples() {
+        FilterChain chain = new FilterChain(Biquad.lowPass(SAMPLE_RATE_HZ, 40, 0.7071));
+        short[] raw = new short[2000];
+        java.util.Arrays.fill(raw, (short) 1000);
+        float[] out = new float[raw.length];
+
+        chain.process(raw, 0, out, 0, raw.length, 0.001f);
+
+        // A low-pass settles on the DC level of the input
+        assertEquals(1.0f, out[out.length - 1], 1e-3f);
+    }
+
+    private static void assertGain(String label, double frequencyHz, double min, double max) {
+        double gain = gain(FilterChain.forEcg(SAMPLE_RATE_HZ, 50), frequencyHz);
+        assertTrue(label + " gain at " + frequencyHz + " Hz was " + gain, gain >= min && gain <= max);
+    }
+
+    /** Steady-state amplitude of a unit sine after the chain, measured after the filters settle. */
+    private static double gain(FilterChain chain, double frequencyHz) {
+        int settle = (int) Math.max(20 * SAMPLE_RATE_HZ, 5 * SAMPLE_RATE_HZ / frequencyHz);
+        int measure = (int) Math.max(SAMPLE_RATE_HZ, 3 * SAMPLE_RATE_HZ / frequencyHz);
+        float[] block = new float[settle + measure];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (float) Math.sin(2 * Math.PI * frequencyHz * i / SAMPLE_RATE_HZ);
+        }
+        chain.process(block, 0, block.length);
+
+        double peak = 0;
+        for (int i = settle; i < block.length; i++) {
+            peak = Math.max(peak, Math.abs(block[i]));
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HrvCalculatorTest {
+
+    private static final long FIVE_MINUTES = 5 * 60 * 1000L;
+
+    @Test
+    public void computesKnownValues() {
+        HrvCalculator hrv = new HrvCalculator(FIVE_MINUTES);
+        for (int rr : new int[]{800, 860, 780, 800}) {
+            hrv.addInterval(rr);
+        }
+
+        // Successive differences: 60, -80, 20
+        assertEquals(4, hrv.getIntervalCount());
+        assertEquals(810, hrv.getMeanRr(), 1e-9);
+        assertEquals(Math.sqrt((60 * 60 + 80 * 80 + 20 * 20) / 3.0), hrv.getRmssd(), 1e-9);
+        assertEquals(100.0 * 2 / 3, hrv.getPnn50(), 1e-9);
+        assertEquals(Math.sqrt((10 * 10 + 50 * 50 + 30 * 30 + 10 * 10) / 3.0), hrv.getSdnn(), 1e-9);
+    }
+
+    @Test
+    public void slidingWindowMatchesFullRecomputation() {
+        Random random = new Random(42);
+        HrvCalculator hrv = new HrvCalculator(60_000);
+        ArrayDeque<int[]> window = new ArrayDeque<>();
+        long windowTime = 0;
+        boolean lastAccepted = false;
+
+        for (int beat = 0; beat < 5000; beat++) {
+            int rr = 600 + random.nextInt(600);
+            if (random.nextInt(50) == 0) {
+                rr = 100; // artifact
+            }
+
+            boolean accepted = hrv.addInterval(rr);
+            assertEquals(rr >= HrvCalculator.MIN_RR_MS, accepted);
+            if (!accepted) {
+                lastAccepted = false;
+                continue;
+            }
+            window.addLast(new int[]{rr, lastAccepted && !window.isEmpty() ? 1 : 0});
+            lastAccepted = true;
+            windowTime += rr;
+            while (windowTime > 60_000 && window.size() > 1) {
+                windowTime -= window.removeFirst()[0];
+                window.peekFirst()[1] = 0;
+            }
+
+            if (beat % 97 == 0) {
+                assertMatches(window, hrv);
+            }
+        }
+    }
+
+    @Test
+    public void dayLongWindowStaysWithinFixedCapacity() {
+        HrvCalculator hrv = new HrvCalculator(24 * 60 * 60 * 1000L);
+        // Two days of beats at 200 BPM, the ring must wrap instead of growing
+        for (int i = 0; i < 2 * 24 * 60 * 200; i++) {
+            hrv.addInterval(300 + (i & 1) * 10);
+        }
+        assertEquals(24 * 60 * 60 * 1000 / 305, hrv.getIntervalCount(), 1);
+        assertEquals(10, hrv.getRmssd(), 1e-9);
+        assertEquals(0, hrv.getPnn50(), 1e-9);
+    }
+
+    private static void assertMatches(ArrayDeque<int[]> window, HrvCalculator hrv) {
+        List<int[]> entries = new ArrayList<>(window);
+        double mean = 0;
+        for (int[] e : entries) {
+            mean += e[0];
+        }
+        mean /= entries.size();
+        double variance = 0;
+        for (int[] e : entries) {
+            variance += (e[0] - mean) * (e[0] - mean);
+        }
+        double sdnn = entries.size() > 1 ? Math.sqrt(variance / (entries.size() - 1)) : 0;
+
+        double squaredDiffs = 0;
+        int pairs = 0;
+        int nn50 = 0;
+        for (int i = 1; i < entries.size(); i++) {
+            if (entries.get(i)[1] == 1) {
+                int diff = entries.get(i)[0] - entries.get(i - 1)[0];
+                squaredDiffs += (double) diff * diff;
+                pairs++;
+                if (Math.abs(diff) > 50) {
+                    nn50++;
+                }
+            }
+        }
+
+        assertEquals(entries.size(), hrv.getIntervalCount());
+        assertEquals(mean, hrv.getMeanRr(), 1e-6);
+        assertEquals(sdnn, hrv.getSdnn(), 1e-6);
+        assertEquals(pairs == 0 ? 0 : Math.sqrt(squaredDiffs / pairs), hrv.getRmssd(), 1e-6);
+        assertEquals(pairs == 0 ? 0 : 100.0 * nn50 / pairs, hrv.getPnn50(), 1e-6);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.medicarenow.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fake {@link StreamTransport} backed by a bounded in-memory byte pipe. The test plays the
+ * device by calling {@link #write}; the pipeline under test reads from the input stream.
+ */
+public class InMemoryTransport implements StreamTransport {
+
+    private final byte[] pipe;
+    private int readPos = 0;
+    private int size = 0;
+    private boolean connected = false;
+    private boolean closed = false;
+    private boolean failConnect = false;
+
+    public InMemoryTransport(int capacity) {
+        this.pipe = new byte[capacity];
+    }
+
+    public synchronized void setFailConnect(boolean failConnect) {
+        this.failConnect = failConnect;
+    }
+
+    @Override
+    public synchronized void connect() throws IOException {
+        if (closed || failConnect) {
+            throw new IOException("Connection refused");
+        }
+        connected = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isConnected() {
+        return connected && !closed;
+    }
+
+    /** Device side. Blocks while the pipe is full, like a socket with a full window. */
+    public synchronized void write(byte[] data, int off, int len) throws IOException {
+        while (len > 0) {
+            while (size == pipe.length && !closed) {
+                waitUninterruptibly();
+            }
+            if (closed) {
+                throw new IOException("Transport closed");
+            }
+            int writePos = (readPos + size) % pipe.length;
+            int chunk = Math.min(len, Math.min(pipe.length - size, pipe.length - writePos));
+            System.arraycopy(data, off, pipe, writePos, chunk);
+            size += chunk;
+            off += chunk;
+            len -= chunk;
+            notifyAll();
+        }
+    }
+
+    /** Simulates the link dropping: pending and future reads fail. */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                synchronized (InMemoryTransport.this) {
+                    while (size == 0 && !closed) {
+                        waitUninterruptibly();
+                    }
+                    if (size == 0) {
+                        throw new IOException("Transport closed");
+                    }
+                    int chunk = Math.min(len, Math.min(size, pipe.length - readPos));
+                    System.arraycopy(pipe, readPos, b, off, chunk);
+                    readPos = (readPos + chunk) % pipe.length;
+                    size -= chunk;
+                    InMemoryTransport.this.notifyAll();
+                    return chunk;
+                }
+            }
+        };
+    }
+
+    private void waitUninterruptibly() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class LegacyTimestampsTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Test
+    public void parsesWesternDigits() {
+        assertEquals(1_700_006_400_000L, LegacyTimestamps.parseMillis("2023-11-15 00:00:00", UTC));
+        assertEquals(1_700_006_400_000L + 13 * 3_600_000L + 5 * 60_000L + 9_000L,
+                LegacyTimestamps.parseMillis(" 2023-11-15 13:05:09 ", UTC));
+    }
+
+    @Test
+    public void parsesDigitsOfOtherLocales() {
+        // Arabic-Indic and Devanagari digits, as formatted under ar and hi default locales
+        assertEquals(1_700_006_400_000L,
+                LegacyTimestamps.parseMillis(withDigits("2023-11-15 00:00:00", '\u0660'), UTC));
+        assertEquals(1_700_006_400_000L + 23 * 3_600_000L,
+                LegacyTimestamps.parseMillis(withDigits("2023-11-15 23:00:00", '\u0966'), UTC));
+    }
+
+    @Test
+    public void usesGivenTimeZone() {
+        TimeZone bucharest = TimeZone.getTimeZone("Europe/Bucharest");
+        assertEquals(1_700_006_400_000L - 2 * 3_600_000L,
+                LegacyTimestamps.parseMillis("2023-11-15 00:00:00", bucharest));
+    }
+
+    @Test
+    public void rejectsOtherStrings() {
+        assertEquals(-1, LegacyTimestamps.parseMillis("", UTC));
+        assertEquals(-1, LegacyTimestamps.parseMillis("2023-11-15T00:00:00", UTC));
+        assertEquals(-1, LegacyTimestamps.parseMillis("2023-13-15 00:00:00", UTC));
+        assertEquals(-1, LegacyTimestamps.parseMillis("2023-02-30 00:00:00", UTC));
+        assertEquals(-1, LegacyTimestamps.parseMillis("15/11/2023 00:00", UTC));
+    }
+
+    private static String withDigits(String text, char zero) {
+        StringBuilder localized = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            localized.append(c >= '0' && c <= '9' ? (char) (zero + c - '0') : c);
+        }
+        return localized.toString();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.medicarenow.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MinMaxPyramidTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private File session;
+
+    @Before
+    public void setUp() throws IOException {
+        session = new File(Files.createTempDirectory("min-max-pyramid").toFile(), "session");
+    }
+
+    @After
+    public void tearDown() {
+        File root = session.getParentFile();
+        File[] files = session.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        session.delete();
+        root.delete();
+    }
+
+    @Test
+    public void alignedColumnsMatchBruteForceAtEveryLevel() throws IOException {
+        short[] signal = randomSignalWithGaps(300_000);
+        try (EcgRecorder recorder = new EcgRecorder(session, "levels", START, 500, 1000, 50_000)) {
+            // Odd batch sizes so buckets straddle appends
+            for (int off = 0; off < signal.length; off += 777) {
+                EcgRecorderTest.appendWithGaps(recorder, signal, off, Math.min(777, signal.length - off));
+            }
+        }
+
+        try (EcgRecording recording = EcgRecording.open(session);
+             MinMaxPyramid pyramid = new MinMaxPyramid(recording)) {
+            int columns = 64;
+            short[] min = new short[columns];
+            short[] max = new short[columns];
+            for (long samplesPerColumn : new long[]{4, 16, 64, 1024, 4096}) {
+                long start = 4096;
+                long end = start + samplesPerColumn * columns;
+                pyramid.render(start, end, columns, min, max);
+                for (int c = 0; c < columns; c++) {
+                    short[] expected = bruteForce(signal, start + c * samplesPerColumn,
+                            start + (c + 1) * samplesPerColumn);
+                    assertEquals("min of column " + c + " at " + samplesPerColumn, expected[0], min[c]);
+                    assertEquals("max of column " + c + " at " + samplesPerColumn, expected[1], max[c]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void newestSamplesOfALiveRecordingAreDrawn() throws IOException {
+        EcgRecorder recorder = new EcgRecorder(session, "live", START, 500, 1000, 1 << 16);
+        short[] signal = new short[10_005];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = (short) (i % 100);
+        }
+        recorder.append(signal, 0, signal.length);
+
+        try (EcgRecording recording = EcgRecording.open(session);
+             MinMaxPyramid pyramid = new MinMaxPyramid(recording)) {
+            short[] min = new short[10];
+            short[] max = new short[10];
+            // Nothing is flushed yet, the whole range comes from the samples
+            pyramid.render(0, 10_005, 10, min, max);
+            for (int c = 0; c < 10; c++) {
+                assertEquals(0, min[c]);
+                assertEquals(99, max[c]);
+            }
+
+            // Past the end of the recording
+            pyramid.render(10_000, 20_000, 10, min, max);
+            assertEquals(0, min[0]);
+            assertEquals(EcgRecording.GAP, min[1]);
+            assertEquals(EcgRecording.GAP, max[9]);
+        }
+        recorder.close();
+    }
+
+    @Test
+    public void framesReadABoundedNumberOfBuckets() throws IOException {
+        // The bound does not depend on the length, see MinMaxPyramidBenchmark for a whole day
+        final int sampleRateHz = 500;
+        final long samples = 10L * 60 * sampleRateHz;
+        short[] batch = new short[10_000];
+        try (EcgRecorder recorder = new EcgRecorder(session, "holter", START, sampleRateHz, 1000)) {
+            for (long written = 0; written < samples; written += batch.length) {
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = (short) ((written + i) % 100);
+                }
+                recorder.append(batch, 0, batch.length);
+            }
+        }
+
+        int columns = 1080;
+        short[] min = new short[columns];
+        short[] max = new short[columns];
+        try (EcgRecording recording = EcgRecording.open(session);
+             MinMaxPyramid pyramid = new MinMaxPyramid(recording)) {
+            // Zoom from the whole recording down to one second, panning as we go
+            long span = samples;
+            long worstReads = 0;
+            while (span >= sampleRateHz) {
+                for (long from = 0; from + span <= samples; from += Math.max(span / 3, samples / 8)) {
+                    long before = pyramid.getBucketsRead();
+                    pyramid.render(from, from + span, columns, min, max);
+                    worstReads = Math.max(worstReads, pyramid.getBucketsRead() - before);
+                    if (span >= 100L * columns) {
+                        // Every column spans at least one full ramp of the signal
+                        assertEquals(0, min[columns / 2]);
+                        assertEquals(99, max[columns / 2]);
+                    }
+                }
+                span /= 2;
+            }
+            assertTrue("Read " + worstReads + " buckets in one frame",
+                    worstReads <= (long) MinMaxPyramid.FANOUT * columns + MinMaxPyramid.LEVELS * MinMaxPyramid.FANOUT);
+        }
+    }
+
+    private static short[] randomSignalWithGaps(int length) {
+        Random random = new Random(11);
+        short[] signal = new short[length];
+        for (int i = 0; i < length; i++) {
+            signal[i] = (short) (random.nextInt(4000) - 2000);
+        }
+        // A disconnection spanning several whole buckets at every level up to 1024 samples
+        for (int i = 20_000; i < 25_000; i++) {
+            signal[i] = EcgRecording.GAP;
+        }
+        return signal;
+    }
+
+    private static short[] bruteForce(short[] signal, long from, long to) {
+        short min = Short.MAX_VALUE;
+        short max = EcgRecording.GAP;
+        for (long i = from; i < to; i++) {
+            short sample = signal[(int) i];
+            if (sample != EcgRecording.GAP) {
+                min = (short) Math.min(min, sample);
+                max = (short) Math.max(max, sample);
+            }
+        }
+        return max == EcgRecording.GAP ? new short[]{EcgRecording.GAP, EcgRecording.GAP} : new short[]{min, max};
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QrsDetectorTest {
+
+    private static final int SAMPLE_RATE_HZ = 200;
+    private static final int SECONDS = 60;
+
+    @Test
+    public void detectsHeartRateOfCleanSignal() {
+        for (int bpm : new int[]{45, 60, 72, 100, 140, 180}) {
+            assertDetects(bpm, 0f, SAMPLE_RATE_HZ);
+        }
+    }
+
+    @Test
+    public void detectsHeartRateOfNoisySignal() {
+        for (int bpm : new int[]{50, 72, 120}) {
+            assertDetects(bpm, 0.05f, SAMPLE_RATE_HZ);
+            assertDetects(bpm, 0.15f, SAMPLE_RATE_HZ);
+        }
+    }
+
+    @Test
+    public void worksAtDeviceSampleRate() {
+        assertDetects(72, 0.1f, 500);
+    }
+
+    @Test
+    public void rrIntervalsMatchBeatLength() {
+        List<Integer> rr = new ArrayList<>();
+        QrsDetector detector = new QrsDetector(SAMPLE_RATE_HZ, (index, rrMillis) -> {
+            if (rrMillis > 0) {
+                rr.add(rrMillis);
+            }
+        });
+        // 75 BPM is exactly 160 samples per beat at 200 Hz
+        feed(detector, 75, 0f, SAMPLE_RATE_HZ, new Random(1));
+
+        // The first interval can start on a partial complex at the end of the learning phase
+        assertTrue(rr.size() > 50);
+        for (int interval : rr.subList(1, rr.size())) {
+            assertEquals(800, interval, 10);
+        }
+    }
+
+    private static void assertDetects(int bpm, float noise, int sampleRateHz) {
+        int[] beats = new int[1];
+        QrsDetector detector = new QrsDetector(sampleRateHz, (index, rrMillis) -> beats[0]++);
+        feed(detector, bpm, noise, sampleRateHz, new Random(bpm));
+
+        // No detection during the two second learning phase
+        int expectedBeats = bpm * (SECONDS - 2) / 60;
+        String label = bpm + " BPM, noise " + noise;
+        assertEquals(label + " heart rate", bpm, detector.getHeartRate(), 2);
+        assertEquals(label + " beat count", expectedBeats, beats[0], 2);
+    }
+
+    private static void feed(QrsDetector detector, int bpm, float noise, int sampleRateHz, Random random) {
+        int samplesPerBeat = 60 * sampleRateHz / bpm;
+        for (int i = 0; i < sampleRateHz * SECONDS; i++) {
+            float sample = EcgWaveform.point(i % samplesPerBeat, samplesPerBeat);
+            detector.process(sample + noise * (float) random.nextGaussian());
+        }
+    }
+}
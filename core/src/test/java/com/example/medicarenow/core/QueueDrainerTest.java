@@ -0,0 +1,133 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QueueDrainerTest {
+
+    // The Firestore limit of 500 writes per batch, one rollup document each, see VitalsBatchWriter
+    private static final int BATCH_SIZE = 500;
+
+    @Test
+    public void drainsEverythingInOrderOfQueueing() throws Exception {
+        FakeQueue queue = new FakeQueue(100_000);
+        FakeStore store = new FakeStore();
+
+        assertEquals(100_000, QueueDrainer.drain(queue, store, BATCH_SIZE));
+
+        assertTrue(queue.items.isEmpty());
+        assertEquals(100_000, store.documents.size());
+        assertEquals((100_000 + BATCH_SIZE - 1) / BATCH_SIZE, store.batches);
+        assertEquals(0, store.overwrites);
+        assertEquals(0, QueueDrainer.drain(queue, store, BATCH_SIZE));
+    }
+
+    @Test
+    public void failedBatchStaysQueuedAndIsRetried() throws Exception {
+        FakeQueue queue = new FakeQueue(2000);
+        FakeStore store = new FakeStore();
+        store.failBatch = 2;
+
+        try {
+            QueueDrainer.drain(queue, store, BATCH_SIZE);
+            fail("Expected the store failure");
+        } catch (IOException expected) {
+            // Offline, the job would be retried later
+        }
+        assertEquals(2000 - BATCH_SIZE, queue.items.size());
+        assertEquals("item-" + BATCH_SIZE, queue.items.get(0).key);
+
+        assertEquals(2000 - BATCH_SIZE, QueueDrainer.drain(queue, store, BATCH_SIZE));
+        assertEquals(2000, store.documents.size());
+        assertEquals(0, store.overwrites);
+    }
+
+    @Test
+    public void crashAfterWriteStoresEachItemOnce() throws Exception {
+        FakeQueue queue = new FakeQueue(2000);
+        FakeStore store = new FakeStore();
+        // Acknowledged by the store, but the process dies before removing the batch
+        queue.failRemove = 3;
+
+        try {
+            QueueDrainer.drain(queue, store, BATCH_SIZE);
+            fail("Expected the simulated crash");
+        } catch (IOException expected) {
+            // The batch is still queued
+        }
+        assertEquals(3 * BATCH_SIZE, store.documents.size());
+        assertEquals(2000 - 2 * BATCH_SIZE, queue.items.size());
+
+        QueueDrainer.drain(queue, store, BATCH_SIZE);
+        assertTrue(queue.items.isEmpty());
+        // The third batch is written twice, under the same keys
+        assertEquals(2000, store.documents.size());
+        assertEquals(BATCH_SIZE, store.overwrites);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i, (int) store.documents.get("item-" + i));
+        }
+    }
+
+    private static class Item {
+        final String key;
+        final int value;
+
+        Item(String key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static class FakeQueue implements QueueDrainer.Queue<Item> {
+        final List<Item> items = new ArrayList<>();
+        int removes = 0;
+        int failRemove = 0;
+
+        FakeQueue(int count) {
+            for (int i = 0; i < count; i++) {
+                items.add(new Item("item-" + i, i));
+            }
+        }
+
+        @Override
+        public List<Item> peek(int max) {
+            return new ArrayList<>(items.subList(0, Math.min(max, items.size())));
+        }
+
+        @Override
+        public void remove(List<Item> batch) throws IOException {
+            if (++removes == failRemove) {
+                throw new IOException("killed");
+            }
+            assertSame(items.get(0), batch.get(0));
+            items.subList(0, batch.size()).clear();
+        }
+    }
+
+    /** Documents by key, like Firestore set() on an id derived from the item. */
+    private static class FakeStore implements QueueDrainer.Sink<Item> {
+        final Map<String, Integer> documents = new HashMap<>();
+        int batches = 0;
+        int overwrites = 0;
+        int failBatch = 0;
+
+        @Override
+        public void write(List<Item> batch) throws IOException {
+            if (++batches == failBatch) {
+                throw new IOException("offline");
+            }
+            for (Item item : batch) {
+                if (documents.put(item.key, item.value) != null) {
+                    overwrites++;
+                }
+            }
+        }
+    }
+}
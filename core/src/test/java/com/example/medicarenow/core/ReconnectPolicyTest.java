@@ -0,0 +1,34 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReconnectPolicyTest {
+
+    @Test
+    public void delaysGrowExponentiallyWithJitterUpToTheCap() {
+        ReconnectPolicy policy = new ReconnectPolicy(100, 5000, 2.0, new Random(7));
+        for (int attempt = 0; attempt < 100; attempt++) {
+            long ceiling = (long) Math.min(5000, 100 * Math.pow(2, attempt));
+            long delay = policy.delayMillis(attempt);
+            assertTrue("attempt " + attempt + ": " + delay, delay >= ceiling / 2 && delay <= ceiling);
+        }
+    }
+
+    @Test
+    public void jitterSpreadsSimultaneousRetries() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 1000, 2.0, new Random(1));
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 1000; i++) {
+            long delay = policy.delayMillis(0);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        assertTrue(min < 600);
+        assertTrue(max > 900);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SampleRingBufferTest {
+
+    @Test
+    public void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(1024, new SampleRingBuffer(1000).capacity());
+        assertEquals(64, new SampleRingBuffer(64).capacity());
+    }
+
+    @Test
+    public void readsBackInOrderAcrossWrapAround() {
+        SampleRingBuffer ring = new SampleRingBuffer(8);
+        short[] out = new short[8];
+        short next = 0;
+        short expected = 0;
+
+        for (int round = 0; round < 20; round++) {
+            short[] in = {next++, next++, next++, next++, next++};
+            ring.write(in, 0, in.length);
+            int n = ring.read(out, 0, out.length);
+            assertEquals(5, n);
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected++, out[i]);
+            }
+        }
+        assertEquals(0, ring.getDroppedCount());
+        assertEquals(100, ring.getWrittenCount());
+    }
+
+    @Test
+    public void dropsOldestWhenFull() {
+        SampleRingBuffer ring = new SampleRingBuffer(16);
+        short[] in = new short[40];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = (short) i;
+        }
+        ring.write(in, 0, 10);
+        ring.write(in, 10, 10);
+        ring.write(in, 20, 20);
+
+        short[] out = new short[16];
+        int n = ring.read(out, 0, out.length);
+
+        assertEquals(16, n);
+        assertEquals(24, ring.getDroppedCount());
+        assertEquals(24, ring.getLastReadPosition());
+        for (int i = 0; i < n; i++) {
+            assertEquals(24 + i, out[i]);
+        }
+    }
+
+    @Test
+    public void concurrentProducerAndConsumerNeverReorderOrLoseTrackOfSamples() throws Exception {
+        final int total = 2_000_000;
+        final SampleRingBuffer ring = new SampleRingBuffer(256);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(() -> {
+            short[] chunk = new short[37];
+            for (int written = 0; written < total; written += chunk.length) {
+                for (int i = 0; i < chunk.length; i++) {
+                    chunk[i] = (short) (written + i);
+                }
+                ring.write(chunk, 0, chunk.length);
+            }
+        });
+
+        long received = 0;
+        long lastPosition = -1;
+        short[] out = new short[64];
+        producer.start();
+        while (producer.isAlive() || ring.size() > 0) {
+            int n = ring.read(out, 0, out.length);
+            if (n == 0) {
+                continue;
+            }
+            long position = ring.getLastReadPosition();
+            assertTrue("positions must move forward", position > lastPosition);
+            for (int i = 0; i < n; i++) {
+                // Every sample carries its own position, so torn reads would show up here
+                if (out[i] != (short) (position + i) && failure.get() == null) {
+                    failure.set(new AssertionError("Sample at " + (position + i) + " was " + out[i]));
+                }
+            }
+            lastPosition = position + n - 1;
+            received += n;
+        }
+        producer.join();
+
+        assertNull(failure.get());
+        assertEquals(ring.getWrittenCount(), received + ring.getDroppedCount());
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class SampleStreamTest {
+
+    @Test
+    public void sustainedOneKilohertzIngestKeepsAtMostOneQueuedDrain() throws Exception {
+        final int sampleRateHz = 1000;
+        final int samplesPerFrame = 10;
+        final int seconds = 3;
+
+        // Stands in for the main Looper: one thread, unbounded queue we can observe
+        ThreadPoolExecutor mainThread = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        AtomicLong received = new AtomicLong();
+        AtomicLong expectedNext = new AtomicLong();
+        AtomicLong outOfOrder = new AtomicLong();
+
+        SampleStream stream = new SampleStream(2048, 256, mainThread, (buf, off, len, position) -> {
+            for (int i = off; i < off + len; i++) {
+                if (buf[i] != (short) expectedNext.getAndIncrement()) {
+                    outOfOrder.incrementAndGet();
+                }
+            }
+            received.addAndGet(len);
+        });
+
+        short[] frame = new short[samplesPerFrame];
+        int frames = sampleRateHz * seconds / samplesPerFrame;
+        long frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) * samplesPerFrame / sampleRateHz;
+        int maxQueued = 0;
+        long start = System.nanoTime();
+
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < samplesPerFrame; i++) {
+                frame[i] = (short) (f * samplesPerFrame + i);
+            }
+            stream.write(frame, 0, samplesPerFrame);
+            maxQueued = Math.max(maxQueued, mainThread.getQueue().size());
+
+            long due = start + (f + 1) * frameIntervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+
+        mainThread.shutdown();
+        assertTrue(mainThread.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertTrue("Message queue grew to " + maxQueued, maxQueued <= 1);
+        assertEquals(frames * samplesPerFrame, received.get());
+        assertEquals(0, stream.getDroppedCount());
+        assertEquals(0, outOfOrder.get());
+    }
+
+    @Test
+    public void stalledConsumerDropsOldestAndCountsThem() {
+        List<Runnable> pending = new ArrayList<>();
+        List<Long> positions = new ArrayList<>();
+        short[] firstSample = new short[1];
+
+        SampleStream stream = new SampleStream(64, 64, pending::add, (buf, off, len, position) -> {
+            if (positions.isEmpty()) {
+                firstSample[0] = buf[off];
+            }
+            positions.add(position);
+        });
+
+        short[] frame = new short[10];
+        for (int f = 0; f < 100; f++) {
+            for (int i = 0; i < frame.length; i++) {
+                frame[i] = (short) (f * frame.length + i);
+            }
+            stream.write(frame, 0, frame.length);
+        }
+
+        // The UI never ran, yet only one drain was ever posted
+        assertEquals(1, pending.size());
+        assertEquals(1000 - 64, stream.getDroppedCount());
+
+        pending.get(0).run();
+        assertEquals(Long.valueOf(1000 - 64), positions.get(0));
+        assertEquals(1000 - 64, firstSample[0]);
+        assertEquals(0, stream.getBacklog());
+    }
+
+    @Test
+    public void gapsAreReportedInOrderAndShiftPositions() {
+        List<Runnable> pending = new ArrayList<>();
+        List<String> events = new ArrayList<>();
+        SampleStream stream = new SampleStream(256, 8, pending::add, new SampleStream.Consumer() {
+            @Override
+            public void onSamples(short[] buf, int off, int len, long position) {
+                for (int i = 0; i < len; i++) {
+                    // Sample values are their position on the device clock
+                    assertEquals((short) (position + i), buf[off + i]);
+                }
+                events.add("samples@" + position + "+" + len);
+            }
+
+            @Override
+            public void onGap(long position, long lostSamples) {
+                events.add("gap@" + position + "+" + lostSamples);
+            }
+        });
+
+        stream.write(values(0, 5), 0, 5);
+        stream.writeGap(20);
+        stream.write(values(25, 6), 0, 6);
+        stream.writeGap(3);
+        pending.get(0).run();
+
+        assertEquals(1, pending.size());
+        assertEquals(java.util.Arrays.asList("samples@0+5", "gap@5+20", "samples@25+3", "samples@28+3",
+                "gap@31+3"), events);
+        assertEquals(2, stream.getGapsReported());
+    }
+
+    @Test
+    public void gapsThatDidNotFitAreReportedWithTheNextSamples() {
+        List<Runnable> pending = new ArrayList<>();
+        List<Long> gaps = new ArrayList<>();
+        SampleStream stream = new SampleStream(1024, 64, pending::add, new SampleStream.Consumer() {
+            @Override
+            public void onSamples(short[] buf, int off, int len, long position) {
+            }
+
+            @Override
+            public void onGap(long position, long lostSamples) {
+                gaps.add(lostSamples);
+            }
+        });
+
+        // The consumer is stalled while 16 gaps fill the queue and two more arrive
+        for (int i = 0; i < 18; i++) {
+            stream.write(values(0, 1), 0, 1);
+            stream.writeGap(i < 16 ? 1 : 5);
+        }
+        pending.remove(0).run();
+        assertEquals(16, gaps.size());
+
+        // No further gap comes, the link is clean again
+        stream.write(values(0, 1), 0, 1);
+        pending.remove(0).run();
+        assertEquals(17, gaps.size());
+        assertEquals(Long.valueOf(10), gaps.get(16));
+        assertTrue(pending.isEmpty());
+    }
+
+    private static short[] values(int first, int count) {
+        short[] values = new short[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (short) (first + i);
+        }
+        return values;
+    }
+}
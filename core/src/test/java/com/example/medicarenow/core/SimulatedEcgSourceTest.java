@@ -0,0 +1,56 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SimulatedEcgSourceTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void producesSamplesAtTheSampleRateRegardlessOfPollingRate() {
+        SimulatedEcgSource frequent = new SimulatedEcgSource(250, 72);
+        SimulatedEcgSource rare = new SimulatedEcgSource(250, 72);
+        float[] out = new float[1000];
+
+        long total = 0;
+        frequent.read(0, out, 0, out.length);
+        for (long t = 7 * MS; t <= 2000 * MS; t += 7 * MS) {
+            total += frequent.read(t, out, 0, out.length);
+        }
+        rare.read(0, out, 0, out.length);
+        long rareTotal = rare.read(2000 * MS, out, 0, out.length);
+
+        assertEquals(500, rareTotal);
+        assertTrue("got " + total, Math.abs(total - 498) <= 2);
+    }
+
+    @Test
+    public void skipsBacklogLongerThanTheCallerBuffer() {
+        SimulatedEcgSource source = new SimulatedEcgSource(200, 60);
+        float[] out = new float[100];
+
+        source.read(0, out, 0, out.length);
+        assertEquals(100, source.read(10_000 * MS, out, 0, out.length));
+        assertEquals(2000 - 100, source.getSamplesSkipped());
+        // Back in step: 100 ms later only 20 new samples are due
+        assertEquals(20, source.read(10_100 * MS, out, 0, out.length));
+    }
+
+    @Test
+    public void waveformPeaksOncePerBeat() {
+        SimulatedEcgSource source = new SimulatedEcgSource(200, 60);
+        float[] out = new float[2000];
+        source.read(0, out, 0, out.length);
+        int n = source.read(10_000 * MS, out, 0, out.length);
+
+        int peaks = 0;
+        for (int i = 1; i < n; i++) {
+            if (out[i] > 2.0f && out[i - 1] <= 2.0f) {
+                peaks++;
+            }
+        }
+        assertEquals(10, peaks);
+    }
+}
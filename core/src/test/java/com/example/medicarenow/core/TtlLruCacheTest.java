@@ -0,0 +1,54 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TtlLruCacheTest {
+
+    @Test
+    public void valuesExpireAfterTheTtlButStayAvailableAsStale() {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(4, 1000);
+        cache.put("a", "first", 0);
+
+        assertEquals("first", cache.get("a", 999));
+        assertNull(cache.get("a", 1000));
+        assertEquals("first", cache.getStale("a"));
+
+        cache.put("a", "second", 1000);
+        assertEquals("second", cache.get("a", 1500));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3, cache.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntryWhenFull() {
+        TtlLruCache<Integer, Integer> cache = new TtlLruCache<>(3, 1000);
+        for (int i = 0; i < 3; i++) {
+            cache.put(i, i * 10, 0);
+        }
+        // Reading 0 makes 1 the least recently used
+        assertEquals(Integer.valueOf(0), cache.get(0, 1));
+        cache.put(3, 30, 2);
+
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.getStale(1));
+        assertEquals(Integer.valueOf(0), cache.getStale(0));
+        assertEquals(Integer.valueOf(20), cache.getStale(2));
+        assertEquals(Integer.valueOf(30), cache.getStale(3));
+    }
+
+    @Test
+    public void invalidatedEntriesAreMisses() {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(4, 1000);
+        assertTrue(Double.isNaN(cache.hitRate()));
+        cache.put("a", "value", 0);
+        cache.invalidate("a");
+
+        assertNull(cache.get("a", 1));
+        assertNull(cache.getStale("a"));
+        assertEquals(0, cache.size());
+    }
+}
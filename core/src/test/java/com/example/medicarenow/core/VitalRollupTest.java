@@ -0,0 +1,127 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class VitalRollupTest {
+
+    private static final long DAY = 1_700_006_400_000L; // Midnight UTC
+
+    @Test
+    public void keepsStatisticsAndLatestValue() {
+        VitalRollup rollup = VitalRollup.forTime(DAY + 30_000, VitalRollup.MINUTE_MILLIS);
+        assertEquals(DAY, rollup.getStartMillis());
+        assertTrue(Float.isNaN(rollup.getMin()));
+        assertTrue(Double.isNaN(rollup.getMean()));
+
+        rollup.add(DAY + 10_000, 72);
+        rollup.add(DAY + 50_000, 80);
+        // Queued late, older than the last reading
+        rollup.add(DAY + 20_000, 60);
+
+        assertEquals(3, rollup.getCount());
+        assertEquals(60, rollup.getMin(), 0);
+        assertEquals(80, rollup.getMax(), 0);
+        assertEquals(212 / 3.0, rollup.getMean(), 1e-9);
+        assertEquals(80, rollup.getLast(), 0);
+        assertEquals(DAY + 50_000, rollup.getLastTimeMillis());
+        assertEquals(3, rollup.getSampleCount());
+        assertEquals(DAY + 20_000, rollup.sampleTime(2));
+        assertEquals(60, rollup.sampleValue(2), 0);
+    }
+
+    @Test
+    public void bucketsAreAlignedAndRejectOtherTimes() {
+        assertEquals(DAY, VitalRollup.bucketStart(DAY + VitalRollup.HOUR_MILLIS - 1, VitalRollup.HOUR_MILLIS));
+        assertEquals(-VitalRollup.MINUTE_MILLIS, VitalRollup.bucketStart(-1, VitalRollup.MINUTE_MILLIS));
+
+        VitalRollup rollup = VitalRollup.forTime(DAY, VitalRollup.MINUTE_MILLIS);
+        try {
+            rollup.add(DAY + VitalRollup.MINUTE_MILLIS, 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Belongs to the next minute
+        }
+        assertEquals(0, rollup.getCount());
+    }
+
+    @Test
+    public void roundTripsThroughBytes() {
+        VitalRollup rollup = VitalRollup.forTime(DAY, VitalRollup.MINUTE_MILLIS);
+        for (int i = 0; i < 60; i++) {
+            rollup.add(DAY + i * 1000L, 36.5f + i / 100f);
+        }
+        VitalRollup copy = VitalRollup.fromBytes(rollup.toBytes());
+        assertEquals(rollup.getStartMillis(), copy.getStartMillis());
+        assertEquals(rollup.getCount(), copy.getCount());
+        assertEquals(rollup.getMean(), copy.getMean(), 0);
+        assertEquals(rollup.getLast(), copy.getLast(), 0);
+        copy.add(DAY + 59_500, 40);
+        assertEquals(40, copy.getMax(), 0);
+        assertEquals(61, copy.getSampleCount());
+
+        byte[] samples = rollup.samplesToBytes();
+        assertEquals(60 * 8, samples.length);
+        long[] times = new long[60];
+        float[] values = new float[60];
+        assertEquals(60, VitalRollup.decodeSamples(samples, DAY, times, values));
+        assertEquals(DAY + 59_000, times[59]);
+        assertEquals(36.5f + 59 / 100f, values[59], 0);
+    }
+
+    @Test
+    public void capsRawSamplesButCountsEveryReading() {
+        VitalRollup minute = VitalRollup.forTime(DAY, VitalRollup.MINUTE_MILLIS);
+        VitalRollup hour = VitalRollup.forTime(DAY, VitalRollup.HOUR_MILLIS);
+        for (int i = 0; i < 12_000; i++) {
+            minute.add(DAY + i * 5L, i);
+            hour.add(DAY + i * 5L, i);
+        }
+        assertEquals(12_000, minute.getCount());
+        assertEquals(VitalRollup.MAX_SAMPLES, minute.getSampleCount());
+        assertEquals(11_999, minute.getMax(), 0);
+        assertFalse(hour.keepsSamples());
+        assertEquals(0, hour.getSampleCount());
+        assertTrue(hour.toBytes().length < 64);
+    }
+
+    @Test
+    public void dayOfReadingsFitsInFewHundredBuckets() {
+        // A reading per second for a day, folded like the local queue does
+        Map<Long, VitalRollup> minutes = new HashMap<>();
+        Map<Long, VitalRollup> hours = new HashMap<>();
+        Random random = new Random(18);
+        for (long t = DAY; t < DAY + 24 * VitalRollup.HOUR_MILLIS; t += 1000) {
+            float pulse = 60 + random.nextInt(40);
+            minutes.computeIfAbsent(VitalRollup.bucketStart(t, VitalRollup.MINUTE_MILLIS),
+                    start -> new VitalRollup(start, VitalRollup.MINUTE_MILLIS, true)).add(t, pulse);
+            hours.computeIfAbsent(VitalRollup.bucketStart(t, VitalRollup.HOUR_MILLIS),
+                    start -> new VitalRollup(start, VitalRollup.HOUR_MILLIS, false)).add(t, pulse);
+        }
+        assertEquals(1440, minutes.size());
+        assertEquals(24, hours.size());
+
+        // Each hour agrees with its minutes
+        for (VitalRollup hour : hours.values()) {
+            int count = 0;
+            float max = Float.NEGATIVE_INFINITY;
+            double sum = 0;
+            for (long m = hour.getStartMillis(); m < hour.getStartMillis() + VitalRollup.HOUR_MILLIS;
+                 m += VitalRollup.MINUTE_MILLIS) {
+                VitalRollup minute = minutes.get(m);
+                count += minute.getCount();
+                max = Math.max(max, minute.getMax());
+                sum += minute.getMean() * minute.getCount();
+            }
+            assertEquals(3600, hour.getCount());
+            assertEquals(count, hour.getCount());
+            assertEquals(max, hour.getMax(), 0);
+            assertEquals(sum / count, hour.getMean(), 1e-6);
+        }
+    }
+}
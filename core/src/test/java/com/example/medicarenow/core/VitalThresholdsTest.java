@@ -0,0 +1,27 @@
+package com.example.medicarenow.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VitalThresholdsTest {
+
+    @Test
+    public void normalValuesRaiseNoAlert() {
+        assertEquals(0, VitalThresholds.check(72, 36.6f, 45f));
+        assertEquals(0, VitalThresholds.check(VitalThresholds.MAX_PULSE, VitalThresholds.MIN_TEMP,
+                VitalThresholds.MAX_HUMIDITY));
+        assertEquals("", VitalThresholds.describe(0));
+    }
+
+    @Test
+    public void outOfRangeValuesAreReportedInOrder() {
+        int alerts = VitalThresholds.check(120, 35.0f, 80f);
+        assertEquals(VitalThresholds.HIGH_PULSE | VitalThresholds.LOW_TEMPERATURE | VitalThresholds.HIGH_HUMIDITY,
+                alerts);
+        assertEquals("High pulse! Low temperature! High humidity! ", VitalThresholds.describe(alerts));
+
+        assertEquals("Low pulse! High temperature! Low humidity! ",
+                VitalThresholds.describe(VitalThresholds.check(50, 38.2f, 20f)));
+    }
+}